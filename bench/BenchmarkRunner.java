@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Минимальный замер пропускной способности в духе JMH: прогрев, затем несколько итераций
+ * фиксированной длительности; результат каждой операции копится в sink, чтобы JIT не выбросил вызов.
+ * Результаты дописываются в файл JSON Lines — по строке на бенчмарк и размер доски,
+ * поэтому прогоны разных версий можно сравнивать построчно.
+ */
+public class BenchmarkRunner {
+    /**
+     * Замеряемая операция; invocation — порядковый номер вызова.
+     */
+    public interface Operation {
+        long run(long invocation) throws Exception;
+    }
+
+    private static volatile long sink;
+
+    private final Path output;
+    private final String run = Instant.now().toString();
+    private final long warmupMillis;
+    private final long iterationMillis;
+    private final int iterations;
+
+    public BenchmarkRunner(Path output, long warmupMillis, long iterationMillis, int iterations) {
+        this.output = output;
+        this.warmupMillis = warmupMillis;
+        this.iterationMillis = iterationMillis;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Замеряет операцию и записывает строку результата: среднее число операций в секунду,
+     * минимум и максимум по итерациям.
+     */
+    public void measure(String benchmark, int size, Operation operation) throws Exception {
+        long invocation = 0;
+        invocation = runFor(operation, invocation, warmupMillis, null);
+        List<Double> scores = new ArrayList<>(iterations);
+        long[] count = new long[1];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            invocation = runFor(operation, invocation, iterationMillis, count);
+            scores.add(count[0] * 1e9 / (System.nanoTime() - start));
+        }
+        double mean = scores.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double min = scores.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        double max = scores.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        write(String.format(Locale.ROOT, "{\"run\":\"%s\",\"benchmark\":\"%s\",\"size\":%d,"
+                        + "\"mode\":\"thrpt\",\"unit\":\"ops/s\",\"score\":%.3f,\"min\":%.3f,\"max\":%.3f,"
+                        + "\"iterations\":%d}",
+                run, benchmark, size, mean, min, max, iterations));
+        System.out.printf(Locale.ROOT, "%-28s %10d %16.1f ops/s%n", benchmark, size, mean);
+    }
+
+    /**
+     * Записывает однократно измеренное значение, например занятую память, в том же формате строки.
+     */
+    public void record(String benchmark, int size, String mode, String unit, double value) {
+        write(String.format(Locale.ROOT, "{\"run\":\"%s\",\"benchmark\":\"%s\",\"size\":%d,"
+                        + "\"mode\":\"%s\",\"unit\":\"%s\",\"score\":%.3f}",
+                run, benchmark, size, mode, unit, value));
+        System.out.printf(Locale.ROOT, "%-28s %10d %16.1f %s%n", benchmark, size, value, unit);
+    }
+
+    private void write(String line) {
+        try {
+            Files.writeString(output, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Вызывает операцию, пока не истечёт время; хотя бы один вызов выполняется всегда
+    private static long runFor(Operation operation, long invocation, long millis, long[] count) throws Exception {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        long calls = 0;
+        long result = 0;
+        do {
+            result += operation.run(invocation++);
+            calls++;
+        } while (System.nanoTime() < deadline);
+        sink += result;
+        if (count != null) {
+            count[0] = calls;
+        }
+        return invocation;
+    }
+}
@@ -0,0 +1,292 @@
+import history.ConcurrentHistoryManager;
+import history.HistoryManager;
+import history.InMemoryHistoryManager;
+import managers.Change;
+import managers.ColumnarTaskManager;
+import managers.FileBackedTaskManager;
+import managers.InMemoryTaskManager;
+import managers.Managers;
+import managers.SnapshotFormat;
+import managers.TaskManager;
+import managers.TaskType;
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Набор бенчмарков горячих путей менеджера, истории и сохранения.
+ * Запуск: java -cp out:bench-out KanbanBenchmarks [размеры через запятую] [файл результатов]
+ * По умолчанию доски из 1 000, 10 000, 100 000 и 1 000 000 задач, результаты — в bench-results.jsonl.
+ */
+public class KanbanBenchmarks {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Duration SLOT = Duration.ofMinutes(30);
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000, 1_000_000};
+        Path output = Path.of(args.length > 1 ? args[1] : "bench-results.jsonl");
+        BenchmarkRunner runner = new BenchmarkRunner(output, 1_000, 1_000, 3);
+        for (int size : sizes) {
+            managerBenchmarks(runner, size, InMemoryTaskManager::new, "");
+            managerBenchmarks(runner, size, ColumnarTaskManager::new, "Columnar");
+            managerBenchmarks(runner, size, Managers::getOffHeap, "OffHeap");
+            queryBenchmarks(runner, size);
+            footprintBenchmarks(runner, size);
+            epicBenchmarks(runner, size);
+            historyBenchmarks(runner, size);
+            persistenceBenchmarks(runner, size);
+        }
+        historyContentionBenchmarks(runner);
+        System.out.println("Результаты записаны в " + output.toAbsolutePath());
+    }
+
+    // Доска из size задач, стоящих в расписании друг за другом: каждая занимает свой час
+    private static TaskManager board(Supplier<TaskManager> factory, int size) {
+        TaskManager manager = factory.get();
+        List<Change> changes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            changes.add(Change.add(new Task("Задача " + i, "Описание", SLOT, START.plusHours(i))));
+        }
+        manager.applyBatch(changes);
+        return manager;
+    }
+
+    private static void managerBenchmarks(BenchmarkRunner runner, int size, Supplier<TaskManager> factory,
+                                          String suffix) throws Exception {
+        TaskManager manager = board(factory, size);
+        SplittableRandom random = new SplittableRandom(42);
+
+        // Добавление с проверкой пересечения в свободную половину часа и удаление, чтобы размер не рос
+        runner.measure("addTaskWithOverlapCheck" + suffix, size, invocation -> {
+            int hour = random.nextInt(size);
+            Task task = manager.addTask(new Task("Новая", "Описание", SLOT, START.plusHours(hour).plus(SLOT)));
+            manager.deleteTask(task.getId());
+            return task.getId();
+        });
+        runner.measure("getTaskById" + suffix, size, invocation ->
+                manager.getTask(1 + random.nextInt(size)).map(Task::getId).orElse(0));
+        runner.measure("getPrioritizedTasks" + suffix, size, invocation -> manager.getPrioritizedTasks().size());
+        runner.measure("getTasksStartingBetweenDay" + suffix, size, invocation -> {
+            LocalDateTime from = START.plusHours(random.nextInt(size));
+            return manager.getTasksStartingBetween(from, from.plusDays(1)).size();
+        });
+    }
+
+    // Свёртка всех задач (минуты по статусам) в одном потоке и в общем пуле fork-join
+    private static void queryBenchmarks(BenchmarkRunner runner, int size) throws Exception {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (TaskManager manager : List.of(board(InMemoryTaskManager::new, size),
+                    board(ColumnarTaskManager::new, size))) {
+                String suffix = manager instanceof ColumnarTaskManager ? "Columnar" : "";
+                runner.measure("queryMinutesByStatusSingle" + suffix, size, invocation ->
+                        minutesByStatus(manager, single).size());
+                runner.measure("queryMinutesByStatusParallel" + suffix, size, invocation ->
+                        minutesByStatus(manager, ForkJoinPool.commonPool()).size());
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    private static Map<Status, Long> minutesByStatus(TaskManager manager, ForkJoinPool pool) {
+        return manager.query(TaskType.TASK, task -> task.getDuration() != null,
+                Collectors.groupingBy(Task::getStatus, () -> new EnumMap<>(Status.class),
+                        Collectors.summingLong(task -> task.getDuration().toMinutes())), pool);
+    }
+
+    // Занятая кучей память на задачу и длительность полной сборки мусора при живой доске
+    // для обычного, колоночного и внекучевого хранилища
+    private static void footprintBenchmarks(BenchmarkRunner runner, int size) {
+        footprint(runner, size, InMemoryTaskManager::new, "");
+        footprint(runner, size, ColumnarTaskManager::new, "Columnar");
+        footprint(runner, size, Managers::getOffHeap, "OffHeap");
+    }
+
+    private static void footprint(BenchmarkRunner runner, int size, Supplier<TaskManager> factory, String suffix) {
+        long before = usedHeap();
+        TaskManager manager = board(factory, size);
+        runner.record("heapBytesPerTask" + suffix, size, "footprint", "bytes",
+                (double) (usedHeap() - before) / size);
+        long start = System.nanoTime();
+        System.gc();
+        runner.record("fullGcMillis" + suffix, size, "pause", "ms", (System.nanoTime() - start) / 1e6);
+        manager.clearTasks();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void epicBenchmarks(BenchmarkRunner runner, int size) throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Epic epic = manager.addEpic(new Epic("Эпик", "Описание"));
+        List<Change> changes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            changes.add(Change.add(new Subtask("Подзадача " + i, "Описание", epic.getId(), SLOT,
+                    START.plusHours(i))));
+        }
+        manager.applyBatch(changes);
+        List<Subtask> subtasks = manager.getSubtasks();
+        SplittableRandom random = new SplittableRandom(42);
+
+        // Смена статуса случайной подзадачи: пересчёт статуса и времени эпика
+        runner.measure("epicSubtaskChurn", size, invocation -> {
+            Subtask current = subtasks.get(random.nextInt(size));
+            Status status = Status.values()[(int) (invocation % Status.values().length)];
+            manager.updateSubtask(new Subtask(current.getId(), current.getName(), current.getDescription(), status,
+                    epic.getId(), current.getDuration(), current.getStartTime()));
+            return epic.getStatus().ordinal();
+        });
+    }
+
+    private static void historyBenchmarks(BenchmarkRunner runner, int size) throws Exception {
+        Task[] tasks = new Task[size];
+        for (int i = 0; i < size; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание", i + 1, Status.NEW);
+        }
+        InMemoryHistoryManager history = new InMemoryHistoryManager();
+        SplittableRandom random = new SplittableRandom(42);
+
+        runner.measure("historyAdd", size, invocation -> {
+            history.add(tasks[random.nextInt(size)]);
+            return 1;
+        });
+        runner.measure("historyRemoveAdd", size, invocation -> {
+            Task task = tasks[random.nextInt(size)];
+            history.remove(task.getId());
+            history.add(task);
+            return 1;
+        });
+        // Каждое чтение после просмотра, чтобы кэш снимка истории не отдавался повторно
+        runner.measure("historyAddGet", size, invocation -> {
+            history.add(tasks[random.nextInt(size)]);
+            return history.getHistory().size();
+        });
+    }
+
+    // История под общей блокировкой против истории с потоковыми буферами при 1, 8 и 32 потоках;
+    // size в результатах — число потоков, счёт — просмотры в секунду
+    private static void historyContentionBenchmarks(BenchmarkRunner runner) throws Exception {
+        int taskCount = InMemoryHistoryManager.DEFAULT_CAPACITY;
+        int viewsPerThread = 200_000;
+        Task[] tasks = new Task[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание", i + 1, Status.NEW);
+        }
+        for (int threads : new int[]{1, 8, 32}) {
+            InMemoryHistoryManager plain = new InMemoryHistoryManager(taskCount);
+            HistoryManager locked = new HistoryManager() {
+                @Override
+                public synchronized void add(Task task) {
+                    plain.add(task);
+                }
+
+                @Override
+                public synchronized void remove(int id) {
+                    plain.remove(id);
+                }
+
+                @Override
+                public synchronized List<Task> getHistory() {
+                    return plain.getHistory();
+                }
+
+                @Override
+                public synchronized List<Task> getHistory(int offset, int limit) {
+                    return plain.getHistory(offset, limit);
+                }
+
+                @Override
+                public int getHistorySize() {
+                    return plain.getHistorySize();
+                }
+            };
+            long views = (long) threads * viewsPerThread;
+            runner.record("historyContentionLocked", threads, "thrpt", "views/s",
+                    views * 1e9 / viewNanos(locked, tasks, threads, viewsPerThread));
+            runner.record("historyContentionBuffered", threads, "thrpt", "views/s",
+                    views * 1e9 / viewNanos(new ConcurrentHistoryManager(), tasks, threads, viewsPerThread));
+        }
+    }
+
+    private static long viewNanos(HistoryManager history, Task[] tasks, int threads, int viewsPerThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    SplittableRandom random = new SplittableRandom(thread);
+                    for (int view = 0; view < viewsPerThread; view++) {
+                        history.add(tasks[random.nextInt(tasks.length)]);
+                    }
+                    return null;
+                }));
+            }
+            long startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            if (history.getHistory().size() != tasks.length) {
+                throw new IllegalStateException("Просмотры потеряны: " + history.getHistory().size());
+            }
+            return elapsed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void persistenceBenchmarks(BenchmarkRunner runner, int size) throws Exception {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            File file = File.createTempFile("kanban-bench", ".snapshot");
+            file.deleteOnExit();
+            new File(file.getPath() + ".history").deleteOnExit();
+            FileBackedTaskManager manager = new FileBackedTaskManager(file, format);
+            List<Change> changes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                changes.add(Change.add(new Task("Задача " + i, "Описание", SLOT, START.plusHours(i))));
+            }
+            manager.applyBatch(changes);
+
+            String suffix = format == SnapshotFormat.TEXT ? "Text" : "Binary";
+            runner.measure("save" + suffix, size, invocation -> {
+                manager.save();
+                return file.length();
+            });
+            runner.measure("loadFromFile" + suffix, size, invocation ->
+                    FileBackedTaskManager.loadFromFile(file).getTasks().size());
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package history;
+
+import tasks.Task;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Отдельная ограниченная история для каждого пользователя или сессии.
+ * Менеджер задач работает с этим объектом как с обычным HistoryManager: просмотры записываются
+ * в историю вызывающего, заданного через withCaller(), а без него — в общую историю DEFAULT_CALLER.
+ * Число хранимых историй тоже ограничено: история, к которой дольше всех не обращались, вытесняется,
+ * поэтому память не растёт с числом пользователей.
+ * getHistorySize() — суммарное число записей во всех историях, читается без блокировки.
+ */
+public class CallerHistories implements HistoryManager {
+    public static final String DEFAULT_CALLER = "";
+    public static final int DEFAULT_MAX_CALLERS = 10_000;
+
+    private final int capacityPerCaller;
+    private final EvictionPolicy policy;
+    private final Map<String, InMemoryHistoryManager> histories;
+    private final ThreadLocal<String> currentCaller = ThreadLocal.withInitial(() -> DEFAULT_CALLER);
+    // Сумма размеров всех историй; меняется под монитором объекта
+    private volatile int entries;
+
+    public CallerHistories(int capacityPerCaller) {
+        this(capacityPerCaller, EvictionPolicy.LRU, DEFAULT_MAX_CALLERS);
+    }
+
+    public CallerHistories(int capacityPerCaller, EvictionPolicy policy, int maxCallers) {
+        if (maxCallers <= 0) {
+            throw new IllegalArgumentException("Caller limit must be positive: " + maxCallers);
+        }
+        this.capacityPerCaller = capacityPerCaller;
+        this.policy = policy;
+        this.histories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, InMemoryHistoryManager> eldest) {
+                if (size() <= maxCallers) {
+                    return false;
+                }
+                entries -= eldest.getValue().getHistorySize();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Выполняет действие от имени caller: просмотры и getHistory() в текущем потоке относятся к его истории.
+     */
+    public <T> T withCaller(String caller, Supplier<T> action) {
+        String previous = currentCaller.get();
+        currentCaller.set(caller);
+        try {
+            return action.get();
+        } finally {
+            currentCaller.set(previous);
+        }
+    }
+
+    public synchronized List<Task> getHistory(String caller) {
+        InMemoryHistoryManager history = histories.get(caller);
+        return history != null ? history.getHistory() : List.of();
+    }
+
+    public synchronized int size() {
+        return histories.size();
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        InMemoryHistoryManager history = histories.computeIfAbsent(currentCaller.get(),
+                caller -> new InMemoryHistoryManager(capacityPerCaller, policy));
+        int before = history.getHistorySize();
+        history.add(task);
+        entries += history.getHistorySize() - before;
+    }
+
+    /**
+     * Удалённая задача исчезает из истории каждого пользователя.
+     */
+    @Override
+    public synchronized void remove(int id) {
+        int removed = 0;
+        for (InMemoryHistoryManager history : histories.values()) {
+            int before = history.getHistorySize();
+            history.remove(id);
+            removed += before - history.getHistorySize();
+        }
+        entries -= removed;
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return getHistory(currentCaller.get());
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return InMemoryHistoryManager.page(getHistory(), offset, limit);
+    }
+
+    @Override
+    public int getHistorySize() {
+        return entries;
+    }
+}
@@ -0,0 +1,170 @@
+package history;
+
+import tasks.Task;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасная история просмотров, не блокирующая читателей.
+ * Каждый поток пишет просмотры в собственный кольцевой буфер (один писатель — без блокировок и CAS),
+ * а упорядоченная история InMemoryHistoryManager обновляется пачками: когда буфер заполнен наполовину,
+ * поток пробует слить все буферы, но если слив уже идёт в другом потоке, просто продолжает работу.
+ * Просмотры упорядочиваются по System.nanoTime(), поэтому порядок по давности тот же,
+ * что у InMemoryHistoryManager; порядок одновременных просмотров из разных потоков не определён.
+ * Чтение истории и удаление сначала сливают все буферы; getHistorySize() не блокируется
+ * и не учитывает ещё не слитые просмотры.
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+    private static final int BUFFER_SIZE = 128;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final InMemoryHistoryManager history;
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final CopyOnWriteArrayList<ViewBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ViewBuffer> localBuffer = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Кольцевой буфер одного потока: tail двигает только владелец, head — только поток,
+     * сливающий буферы под drainLock.
+     */
+    private static final class ViewBuffer {
+        final Thread owner = Thread.currentThread();
+        final long[] stamps = new long[BUFFER_SIZE];
+        final Task[] tasks = new Task[BUFFER_SIZE];
+        final AtomicLong head = new AtomicLong();
+        final AtomicLong tail = new AtomicLong();
+
+        boolean offer(Task task) {
+            long t = tail.get();
+            if (t - head.get() == BUFFER_SIZE) {
+                return false;
+            }
+            int index = (int) (t & (BUFFER_SIZE - 1));
+            stamps[index] = System.nanoTime();
+            tasks[index] = task;
+            // Публикация записи для сливающего потока: запись слота происходит раньше сдвига tail
+            tail.lazySet(t + 1);
+            return true;
+        }
+
+        int pending() {
+            return (int) (tail.get() - head.get());
+        }
+    }
+
+    public ConcurrentHistoryManager() {
+        this(InMemoryHistoryManager.DEFAULT_CAPACITY, EvictionPolicy.LRU);
+    }
+
+    public ConcurrentHistoryManager(int capacity, EvictionPolicy policy) {
+        this.history = new InMemoryHistoryManager(capacity, policy);
+    }
+
+    @Override
+    public void add(Task task) {
+        ViewBuffer buffer = localBuffer.get();
+        while (!buffer.offer(task)) {
+            // Буфер переполнен: сливающий поток отстаёт, ждём его или сливаем сами
+            drainLock.lock();
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+        if (buffer.pending() >= DRAIN_THRESHOLD && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            drain();
+            history.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return InMemoryHistoryManager.page(getHistory(), offset, limit);
+    }
+
+    @Override
+    public int getHistorySize() {
+        return history.getHistorySize();
+    }
+
+    private ViewBuffer register() {
+        ViewBuffer buffer = new ViewBuffer();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    // Вызывается под drainLock: переносит накопленные просмотры всех потоков в историю в порядке времени.
+    // Внутри буфера просмотры уже упорядочены, поэтому буферы сливаются k-путевым слиянием без сортировки
+    private void drain() {
+        ViewBuffer[] all = buffers.toArray(new ViewBuffer[0]);
+        ViewBuffer[] current = new ViewBuffer[all.length];
+        long[] cursors = new long[all.length];
+        long[] ends = new long[all.length];
+        int active = 0;
+        for (ViewBuffer buffer : all) {
+            long head = buffer.head.get();
+            long tail = buffer.tail.get();
+            if (head < tail) {
+                current[active] = buffer;
+                cursors[active] = head;
+                ends[active] = tail;
+                active++;
+            } else if (!buffer.owner.isAlive()) {
+                buffers.remove(buffer);
+            }
+        }
+        while (true) {
+            int next = -1;
+            long nextStamp = Long.MAX_VALUE;
+            for (int i = 0; i < active; i++) {
+                if (cursors[i] < ends[i]) {
+                    long stamp = current[i].stamps[(int) (cursors[i] & (BUFFER_SIZE - 1))];
+                    if (next < 0 || stamp - nextStamp < 0) {
+                        next = i;
+                        nextStamp = stamp;
+                    }
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            ViewBuffer buffer = current[next];
+            int index = (int) (cursors[next] & (BUFFER_SIZE - 1));
+            history.add(buffer.tasks[index]);
+            buffer.tasks[index] = null;
+            cursors[next]++;
+        }
+        for (int i = 0; i < active; i++) {
+            current[i].head.set(ends[i]);
+        }
+    }
+}
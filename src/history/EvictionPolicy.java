@@ -0,0 +1,15 @@
+package history;
+
+/**
+ * Какую запись вытеснять, когда история заполнена.
+ */
+public enum EvictionPolicy {
+    /**
+     * Повторный просмотр переносит задачу в конец; вытесняется задача, которую дольше всех не просматривали.
+     */
+    LRU,
+    /**
+     * Повторный просмотр не меняет порядок; вытесняется задача, просмотренная впервые раньше остальных.
+     */
+    FIFO
+}
@@ -11,4 +11,14 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    /**
+     * Часть истории: не больше limit записей, начиная с offset.
+     */
+    List<Task> getHistory(int offset, int limit);
+
+    /**
+     * Число записей истории без её копирования; можно вызывать из любого потока, например для метрик.
+     */
+    int getHistorySize();
 }
@@ -2,89 +2,176 @@ package history;
 
 import tasks.Task;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * История просмотров ограниченного размера.
+ * Записи лежат в массиве в порядке просмотра: удалённая или перенесённая запись оставляет дыру,
+ * а массив уплотняется, когда новая запись не помещается в конец. Записи хранят задачу в том виде,
+ * в каком её просмотрели; память ограничена ёмкостью истории. При переполнении вытесняется запись по политике.
+ * <p>
+ * getHistory() возвращает неизменяемый список точного размера и отдаёт один и тот же список,
+ * пока история не менялась, поэтому повторные чтения ничего не копируют.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
+    public static final int DEFAULT_CAPACITY = 1_000;
+    private static final int INITIAL_LENGTH = 16;
+
+    private final int capacity;
+    private final EvictionPolicy policy;
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private int[] ids;
+    private Task[] tasks;
+    // Живые записи лежат в [head, end); size — число записей без дыр, читается и из других потоков
+    private int head;
+    private int end;
+    private volatile int size;
+    private List<Task> snapshot;
+
+    public InMemoryHistoryManager() {
+        this(DEFAULT_CAPACITY, EvictionPolicy.LRU);
+    }
 
-    private static class Node {
-        Task task;
-        Node prev;
-        Node next;
+    public InMemoryHistoryManager(int capacity) {
+        this(capacity, EvictionPolicy.LRU);
+    }
 
-        Node(Task task) {
-            this.task = task;
+    public InMemoryHistoryManager(int capacity, EvictionPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
         }
+        this.capacity = capacity;
+        this.policy = policy;
+        allocate(Math.min(INITIAL_LENGTH, 2 * capacity));
     }
 
-    private final Map<Integer, Node> nodeMap = new HashMap<>();
-    private Node head;
-    private Node tail;
-
-
 
     @Override
     public void add(Task task) {
-        remove(task.getId());
-
-        Node newNode = new Node(task);
-        linkLast(newNode);
+        snapshot = null;
+        Integer position = positions.get(task.getId());
+        if (position != null) {
+            if (policy == EvictionPolicy.FIFO) {
+                tasks[position] = task;
+                return;
+            }
+            clearSlot(position);
+        }
 
-        nodeMap.put(task.getId(), newNode);
+        if (end == tasks.length) {
+            relocate();
+        }
+        ids[end] = task.getId();
+        tasks[end] = task;
+        positions.put(task.getId(), end);
+        end++;
+        size++;
+        if (size > capacity) {
+            while (tasks[head] == null) {
+                head++;
+            }
+            remove(ids[head]);
+        }
     }
 
 
     @Override
     public void remove(int id) {
-        Node node = nodeMap.remove(id);
-        if (node != null) {
-            removeNode(node);
+        Integer position = positions.remove(id);
+        if (position != null) {
+            snapshot = null;
+            clearSlot(position);
         }
     }
 
 
     @Override
     public List<Task> getHistory() {
+        if (snapshot == null) {
+            snapshot = getTasks();
+        }
+        return snapshot;
+    }
 
-        return getTasks();
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return page(getHistory(), offset, limit);
     }
 
+    @Override
+    public int getHistorySize() {
+        return size;
+    }
 
+    public int getCapacity() {
+        return capacity;
+    }
 
-    private void linkLast(Node node) {
-        if (tail == null) {
-            head = node;
-        } else {
-            node.prev = tail;
-            tail.next = node;
+    /**
+     * Страница списка: offset и limit неотрицательны, страница за концом списка пуста.
+     */
+    static List<Task> page(List<Task> history, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative: %d, %d"
+                    .formatted(offset, limit));
         }
-        tail = node;
+        int from = Math.min(offset, history.size());
+        int to = (int) Math.min((long) from + limit, history.size());
+        return history.subList(from, to);
     }
 
 
-    private void removeNode(Node node) {
-        if (node.prev != null) {
-            node.prev.next = node.next;
-        } else {
-            head = node.next;
+    private void clearSlot(int position) {
+        tasks[position] = null;
+        size--;
+        if (size == 0) {
+            head = 0;
+            end = 0;
         }
+    }
 
-        if (node.next != null) {
-            node.next.prev = node.prev;
-        } else {
-            tail = node.prev;
+    // Переносит живые записи в начало массива; если дыр мало, массив удваивается (не больше 2 * capacity)
+    private void relocate() {
+        int[] oldIds = ids;
+        Task[] oldTasks = tasks;
+        int oldHead = head;
+        int oldEnd = end;
+        if (size > oldTasks.length / 2) {
+            allocate(Math.min(oldTasks.length * 2, 2 * capacity));
         }
+        int write = 0;
+        for (int read = oldHead; read < oldEnd; read++) {
+            if (oldTasks[read] != null) {
+                ids[write] = oldIds[read];
+                tasks[write] = oldTasks[read];
+                positions.put(oldIds[read], write);
+                write++;
+            }
+        }
+        if (tasks == oldTasks) {
+            Arrays.fill(tasks, write, oldEnd, null);
+        }
+        head = 0;
+        end = write;
+    }
+
+    private void allocate(int length) {
+        ids = new int[length];
+        tasks = new Task[length];
     }
 
     private List<Task> getTasks() {
-        List<Task> tasks = new LinkedList<>();
-        Node current = head;
-        while (current != null) {
-            tasks.add(current.task);
-            current = current.next;
+        Task[] history = new Task[size];
+        int count = 0;
+        for (int i = head; i < end; i++) {
+            if (tasks[i] != null) {
+                history[count++] = tasks[i];
+            }
         }
-        return tasks;
+        return Collections.unmodifiableList(Arrays.asList(history));
     }
 }
@@ -0,0 +1,132 @@
+package managers;
+
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Проверка пакета изменений, общая для менеджеров с разными хранилищами:
+ * задачи ищутся через переданные функции, расписание — через индекс интервалов.
+ */
+final class BatchValidation {
+
+    private BatchValidation() {
+    }
+
+    /**
+     * Проверяет пакет без изменения состояния: существование задач и эпиков,
+     * а затем пересечения итогового расписания — с оставшимися задачами и внутри пакета.
+     */
+    static void validate(List<Change> changes, IntFunction<? extends Task> tasks, IntFunction<? extends Epic> epics,
+                         IntFunction<? extends Subtask> subtasks, TimeSlots timeSlots) {
+        validate(changes, tasks, epics, subtasks, id -> epics.apply(id).getSubtasksView(), timeSlots);
+    }
+
+    /**
+     * Вариант для хранилищ, где эпик хранится отдельно от подзадач: epics нужен только для проверки
+     * существования, а подзадачи удаляемого эпика берутся из subtasksOfEpic.
+     */
+    static void validate(List<Change> changes, IntFunction<? extends Task> tasks, IntFunction<? extends Epic> epics,
+                         IntFunction<? extends Subtask> subtasks,
+                         IntFunction<? extends Collection<? extends Subtask>> subtasksOfEpic, TimeSlots timeSlots) {
+        Set<Integer> deleted = new HashSet<>();
+        Map<Integer, Task> released = new HashMap<>();
+        Map<Integer, Task> updated = new HashMap<>();
+        List<Task> added = new ArrayList<>();
+
+        for (Change change : changes) {
+            Task task = change.getTask();
+            switch (change.getKind()) {
+                case ADD:
+                    if (task instanceof Subtask) {
+                        int epicId = ((Subtask) task).getSubtasksEpicId();
+                        if (epics.apply(epicId) == null || deleted.contains(epicId)) {
+                            throw new IllegalArgumentException("Эпик с ID " + epicId + " не найден.");
+                        }
+                    }
+                    if (!(task instanceof Epic)) {
+                        added.add(task);
+                    }
+                    break;
+                case UPDATE:
+                    Task existing = task instanceof Epic ? epics.apply(task.getId())
+                            : task instanceof Subtask ? subtasks.apply(task.getId())
+                            : tasks.apply(task.getId());
+                    if (existing == null || deleted.contains(task.getId())) {
+                        throw new IllegalArgumentException("Task by id=%s not found".formatted(task.getId()));
+                    }
+                    if (!(task instanceof Epic)) {
+                        released.put(existing.getId(), existing);
+                        updated.put(task.getId(), task);
+                    }
+                    break;
+                case DELETE:
+                    int id = change.getId();
+                    deleted.add(id);
+                    updated.remove(id);
+                    Task deletedTask = tasks.apply(id);
+                    Subtask deletedSubtask = deletedTask == null ? subtasks.apply(id) : null;
+                    Epic deletedEpic = deletedTask == null && deletedSubtask == null ? epics.apply(id) : null;
+                    if (deletedTask != null) {
+                        released.put(id, deletedTask);
+                    } else if (deletedSubtask != null) {
+                        released.put(id, deletedSubtask);
+                    } else if (deletedEpic != null) {
+                        for (Subtask subtask : subtasksOfEpic.apply(id)) {
+                            deleted.add(subtask.getId());
+                            updated.remove(subtask.getId());
+                            released.put(subtask.getId(), subtask);
+                        }
+                        // Подзадачи, добавленные в этом же пакете, удаляются вместе с эпиком
+                        added.removeIf(addedTask -> addedTask instanceof Subtask
+                                && ((Subtask) addedTask).getSubtasksEpicId() == id);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change kind: " + change.getKind());
+            }
+        }
+
+        List<Task> incoming = new ArrayList<>(added.size() + updated.size());
+        for (Task task : added) {
+            if (TimeSlotIndex.isScheduled(task)) {
+                incoming.add(task);
+            }
+        }
+        for (Task task : updated.values()) {
+            if (TimeSlotIndex.isScheduled(task)) {
+                incoming.add(task);
+            }
+        }
+        incoming.sort(Comparator.comparing(Task::getStartTime));
+        for (int i = 1; i < incoming.size(); i++) {
+            if (incoming.get(i - 1).getEndTime().isAfter(incoming.get(i).getStartTime())) {
+                throw new IllegalArgumentException("Задачи пакета пересекаются по времени выполнения.");
+            }
+        }
+
+        for (Task task : released.values()) {
+            timeSlots.remove(task.getId());
+        }
+        try {
+            for (Task task : incoming) {
+                if (timeSlots.overlaps(task)) {
+                    throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+                }
+            }
+        } finally {
+            for (Task task : released.values()) {
+                timeSlots.add(task);
+            }
+        }
+    }
+}
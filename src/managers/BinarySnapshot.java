@@ -0,0 +1,306 @@
+package managers;
+
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+/**
+ * Двоичный формат снимка.
+ * Заголовок: магическое число "KANB" (int), версия (short), с версии 2 — граница выданных id (int).
+ * Запись: тип (byte, ordinal TaskType), id (int), статус (byte, ordinal Status или -1),
+ * имя и описание (int длина + UTF-8, длина -1 для null), длительность в минутах (long),
+ * начало в минутах от эпохи UTC (long), для подзадачи — id эпика (int).
+ * Отсутствующие длительность и начало кодируются как Long.MIN_VALUE.
+ * Записи идут в порядке задачи, эпики, подзадачи, чтобы эпик всегда читался раньше своих подзадач.
+ */
+final class BinarySnapshot {
+    static final int MAGIC = 0x4B414E42;
+    static final short VERSION = 2;
+    private static final short FIRST_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    static boolean isBinary(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // дочитываем заголовок
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Error loading data from file: %s", path.getFileName()));
+        }
+    }
+
+    /**
+     * Записывает снимок во временный файл и атомарно подменяет им целевой.
+     */
+    static void write(Path path, Iterable<? extends Task> tasks, int nextId) {
+        write(path, tasks, nextId, ManagerMetrics.DISABLED);
+    }
+
+    static void write(Path path, Iterable<? extends Task> tasks, int nextId, ManagerMetrics metrics) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putInt(nextId);
+            for (Task task : tasks) {
+                writeTask(channel, buffer, task);
+            }
+            flush(channel, buffer);
+            metrics.recordPersisted(channel.position());
+            long syncStart = metrics.start();
+            channel.force(true);
+            metrics.recordFsync(syncStart);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при сохранении данных в файл: %s", path.getFileName()));
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при сохранении данных в файл: %s", path.getFileName()));
+        }
+    }
+
+    /**
+     * Читает все записи снимка и возвращает сохранённую в нём границу id (0 для снимков версии 1).
+     */
+    static int read(Path path, Consumer<Task> consumer) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            require(channel, buffer, headerSize(FIRST_VERSION));
+            require(channel, buffer, headerSize(buffer.getShort(buffer.position() + Integer.BYTES)));
+            int nextId = checkHeader(buffer, path);
+            while (buffer.hasRemaining() || fill(channel, buffer)) {
+                consumer.accept(readTask(channel, buffer));
+            }
+            return nextId;
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Error loading data from file: %s", path.getFileName()));
+        }
+    }
+
+    private static void writeTask(FileChannel channel, ByteBuffer buffer, Task task) throws IOException {
+        TaskType type = TaskType.of(task);
+        byte[] name = bytesOf(task.getName());
+        byte[] description = bytesOf(task.getDescription());
+
+        ensure(channel, buffer, Byte.BYTES + Integer.BYTES + Byte.BYTES + Integer.BYTES);
+        buffer.put((byte) type.ordinal());
+        buffer.putInt(task.getId());
+        buffer.put(task.getStatus() != null ? (byte) task.getStatus().ordinal() : -1);
+        putBytes(channel, buffer, name);
+        putBytes(channel, buffer, description);
+
+        ensure(channel, buffer, 2 * Long.BYTES + Integer.BYTES);
+        buffer.putLong(task.getDuration() != null ? task.getDuration().toMinutes() : ABSENT);
+        buffer.putLong(task.getStartTime() != null
+                ? Math.floorDiv(task.getStartTime().toEpochSecond(ZoneOffset.UTC), 60)
+                : ABSENT);
+        if (type == TaskType.SUBTASK) {
+            buffer.putInt(((Subtask) task).getSubtasksEpicId());
+        }
+    }
+
+    private static Task readTask(FileChannel channel, ByteBuffer buffer) throws IOException {
+        require(channel, buffer, Byte.BYTES + Integer.BYTES + Byte.BYTES);
+        TaskType type = TYPES[buffer.get()];
+        int id = buffer.getInt();
+        byte statusOrdinal = buffer.get();
+        Status status = statusOrdinal >= 0 ? STATUSES[statusOrdinal] : null;
+        String name = readString(channel, buffer);
+        String description = readString(channel, buffer);
+
+        require(channel, buffer, 2 * Long.BYTES + (type == TaskType.SUBTASK ? Integer.BYTES : 0));
+        return toTask(type, id, status, name, description, buffer);
+    }
+
+    /**
+     * Читает одну запись из буфера, целиком содержащего её (например, отображённого в память файла).
+     */
+    static Task decode(ByteBuffer buffer) {
+        TaskType type = TYPES[buffer.get()];
+        int id = buffer.getInt();
+        byte statusOrdinal = buffer.get();
+        Status status = statusOrdinal >= 0 ? STATUSES[statusOrdinal] : null;
+        String name = decodeString(buffer);
+        String description = decodeString(buffer);
+        return toTask(type, id, status, name, description, buffer);
+    }
+
+    /**
+     * Пропускает запись, начинающуюся с текущей позиции буфера.
+     */
+    static void skip(ByteBuffer buffer) {
+        TaskType type = TYPES[buffer.get()];
+        buffer.position(buffer.position() + Integer.BYTES + Byte.BYTES);
+        for (int i = 0; i < 2; i++) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + Math.max(length, 0));
+        }
+        buffer.position(buffer.position() + 2 * Long.BYTES + (type == TaskType.SUBTASK ? Integer.BYTES : 0));
+    }
+
+    static TaskType typeAt(ByteBuffer buffer, int offset) {
+        return TYPES[buffer.get(offset)];
+    }
+
+    static int idAt(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + Byte.BYTES);
+    }
+
+    private static int headerSize(short version) {
+        return Integer.BYTES + Short.BYTES + (version >= 2 ? Integer.BYTES : 0);
+    }
+
+    /**
+     * Проверяет заголовок, оставляя буфер на первой записи, и возвращает границу id (0 для версии 1).
+     */
+    static int checkHeader(ByteBuffer buffer, Path path) {
+        if (buffer.remaining() < headerSize(FIRST_VERSION) || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary snapshot: " + path.getFileName());
+        }
+        short version = buffer.getShort();
+        if (version < FIRST_VERSION || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+        return version >= 2 ? buffer.getInt() : 0;
+    }
+
+    private static Task toTask(TaskType type, int id, Status status, String name, String description,
+                               ByteBuffer buffer) {
+        long durationMinutes = buffer.getLong();
+        long startMinutes = buffer.getLong();
+        Duration duration = durationMinutes != ABSENT ? Duration.ofMinutes(durationMinutes) : null;
+        LocalDateTime startTime = startMinutes != ABSENT
+                ? LocalDateTime.ofEpochSecond(startMinutes * 60, 0, ZoneOffset.UTC)
+                : null;
+
+        switch (type) {
+            case TASK:
+                return new Task(name, description, id, status, duration, startTime);
+            case EPIC:
+                return new Epic(name, description, status, id);
+            case SUBTASK:
+                return new Subtask(id, name, description, status, buffer.getInt(), duration, startTime);
+            default:
+                throw new IllegalArgumentException("Unknown task type: " + type);
+        }
+    }
+
+    private static String decodeString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        ensure(channel, buffer, Integer.BYTES);
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush(channel, buffer);
+            }
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static String readString(FileChannel channel, ByteBuffer buffer) throws IOException {
+        require(channel, buffer, Integer.BYTES);
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining() && !fill(channel, buffer)) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void require(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (!fill(channel, buffer)) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+    }
+
+    // Дочитывает данные из канала, сохраняя непрочитанный остаток буфера; false — конец файла
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+}
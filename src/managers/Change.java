@@ -0,0 +1,47 @@
+package managers;
+
+import tasks.Task;
+
+/**
+ * Одно изменение в пакете для TaskManager.applyBatch: добавление, обновление или удаление по id.
+ * Тип задачи (Task, Epic, Subtask) определяется классом переданного объекта.
+ */
+public final class Change {
+    public enum Kind {
+        ADD, UPDATE, DELETE
+    }
+
+    private final Kind kind;
+    private final Task task;
+    private final int id;
+
+    private Change(Kind kind, Task task, int id) {
+        this.kind = kind;
+        this.task = task;
+        this.id = id;
+    }
+
+    public static Change add(Task task) {
+        return new Change(Kind.ADD, task, 0);
+    }
+
+    public static Change update(Task task) {
+        return new Change(Kind.UPDATE, task, task.getId());
+    }
+
+    public static Change delete(int id) {
+        return new Change(Kind.DELETE, null, id);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
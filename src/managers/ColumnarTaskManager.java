@@ -0,0 +1,1049 @@
+package managers;
+
+import history.InMemoryHistoryManager;
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+import static managers.TaskStore.NONE;
+import static managers.TaskStore.NO_TIME;
+
+/**
+ * Менеджер задач в памяти для очень больших досок: задачи хранятся по столбцам в ColumnarTaskStore
+ * или вне кучи в OffHeapTaskStore, расписание и занятые интервалы — ключами long в LongSortedSet.
+ * На задачу не приходится ни одного объекта; объекты Task создаются только на границе API,
+ * поэтому возвращаемые задачи — копии, и их изменение не меняет менеджер.
+ * <p>
+ * Время хранится с точностью до минуты: проверяется и сохраняется копия задачи, приведённая к ней
+ * (секунды отбрасываются), а переданная задача получает только id; длительность меньше минуты
+ * отклоняется. Списки по статусу строятся обходом столбца статусов, счётчики count() — O(1).
+ * Как и InMemoryTaskManager, рассчитан на один поток; представления get*View() fail-fast.
+ * История хранит только id и ограничена InMemoryHistoryManager.DEFAULT_CAPACITY записями.
+ */
+public class ColumnarTaskManager implements TaskManager {
+    private static final int HISTORY_CAPACITY = InMemoryHistoryManager.DEFAULT_CAPACITY;
+    // Минута начала задач без времени в ключе расписания: они идут после всех запланированных
+    private static final long UNSCHEDULED = Integer.MAX_VALUE;
+
+    private final IdAllocator idAllocator = new IdAllocator();
+    private final TaskStore store;
+    // Порядок getPrioritizedTasks(): ключ — минута начала и id, как в PRIORITY_ORDER
+    private final LongSortedSet schedule = new LongSortedSet();
+    private final Slots timeSlots = new Slots();
+    private final IntHashMap<EpicState> epicStates = new IntHashMap<>();
+    private final LinkedHashSet<Integer> history = new LinkedHashSet<>();
+    // Размер истории для чтения из других потоков: сам LinkedHashSet читается только потоком менеджера
+    private volatile int historySize;
+    private int modCount;
+
+    /**
+     * Подзадачи эпика (голова и хвост списка в столбцах хранилища) и их агрегаты.
+     * Эпиков на порядки меньше, чем задач, поэтому состояние эпика — обычный объект.
+     */
+    private static final class EpicState {
+        int first = NONE;
+        int last = NONE;
+        int size;
+        final int[] statusCounts = new int[Status.values().length];
+        long totalMinutes;
+        long minStart = Long.MAX_VALUE;
+        // Удалена подзадача с самым ранним началом: минимум пересчитывается обходом подзадач
+        boolean staleStart;
+    }
+
+    public ColumnarTaskManager() {
+        this(new ColumnarTaskStore());
+    }
+
+    ColumnarTaskManager(TaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Task addTask(Task task) {
+        Task stored = normalized(task);
+        if (isOverlapping(stored)) {
+            throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+        }
+        task.setId(idAllocator.next());
+        stored.setId(task.getId());
+        insert(stored);
+        return stored;
+    }
+
+    @Override
+    public Epic addEpic(Epic epic) {
+        epic.setId(idAllocator.next());
+        insert(epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        Subtask stored = normalized(subtask);
+        if (slotOf(stored.getSubtasksEpicId(), TaskType.EPIC) == NONE) {
+            throw new IllegalArgumentException("Эпик с ID " + stored.getSubtasksEpicId() + " не найден.");
+        }
+        if (isOverlapping(stored)) {
+            throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+        }
+        subtask.setId(idAllocator.next());
+        stored.setId(subtask.getId());
+        insert(stored);
+        return stored;
+    }
+
+    @Override
+    public Task updateTask(Task taskToReplace) {
+        Task stored = normalized(taskToReplace);
+        int slot = slotOf(stored.getId(), TaskType.TASK);
+        if (slot != NONE) {
+            unschedule(slot);
+            if (isOverlapping(stored)) {
+                scheduleSlot(slot);
+                throw new IllegalArgumentException("Task time conflicts with existing tasks.");
+            }
+            replace(slot, stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public Epic updateEpic(Epic epicToReplace) {
+        int slot = slotOf(epicToReplace.getId(), TaskType.EPIC);
+        if (slot == NONE) {
+            return epicToReplace;
+        }
+        replace(slot, epicToReplace);
+        return epicAt(slot);
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtaskToReplace) {
+        Subtask stored = normalized(subtaskToReplace);
+        int slot = existingSubtask(stored);
+        unschedule(slot);
+        if (isOverlapping(stored)) {
+            scheduleSlot(slot);
+            throw new IllegalArgumentException("Subtask time conflicts with existing tasks.");
+        }
+        replace(slot, stored);
+        return stored;
+    }
+
+    @Override
+    public void clearTasks() {
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, TaskType.TASK)) {
+                delete(slot);
+            }
+        }
+        compactIfEmpty();
+    }
+
+    @Override
+    public void clearEpics() {
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, TaskType.SUBTASK) || store.is(slot, TaskType.EPIC)) {
+                forget(slot);
+                unschedule(slot);
+                store.delete(slot);
+            }
+        }
+        epicStates.clear();
+        modCount++;
+        compactIfEmpty();
+    }
+
+    @Override
+    public void clearSubtasks() {
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, TaskType.SUBTASK)) {
+                forget(slot);
+                unschedule(slot);
+                store.delete(slot);
+            }
+        }
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, TaskType.EPIC)) {
+                EpicState state = new EpicState();
+                epicStates.put(store.id(slot), state);
+                refresh(slot, state);
+            }
+        }
+        modCount++;
+        compactIfEmpty();
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        int slot = slotOf(id, TaskType.TASK);
+        if (slot != NONE) {
+            delete(slot);
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        int slot = slotOf(id, TaskType.EPIC);
+        if (slot != NONE) {
+            delete(slot);
+        }
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        int slot = slotOf(id, TaskType.SUBTASK);
+        if (slot != NONE) {
+            delete(slot);
+        }
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        return Optional.ofNullable(view(slotOf(id, TaskType.TASK)));
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        return Optional.ofNullable((Epic) view(slotOf(id, TaskType.EPIC)));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        return Optional.ofNullable((Subtask) view(slotOf(id, TaskType.SUBTASK)));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return collect(TaskType.TASK, null);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return collect(TaskType.EPIC, null);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return collect(TaskType.SUBTASK, null);
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        return Collections.unmodifiableCollection(new TypeView<>(TaskType.TASK));
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        return Collections.unmodifiableCollection(new TypeView<>(TaskType.EPIC));
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        return Collections.unmodifiableCollection(new TypeView<>(TaskType.SUBTASK));
+    }
+
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        return Collections.unmodifiableCollection(new AbstractCollection<>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private final int expectedModCount = modCount;
+                    private long next = schedule.higher(LongSortedSet.NONE);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != LongSortedSet.NONE;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (modCount != expectedModCount) {
+                            throw new ConcurrentModificationException();
+                        }
+                        if (next == LongSortedSet.NONE) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = store.materialize(store.slotOf(idOf(next)));
+                        next = schedule.higher(next);
+                        return task;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return schedule.size();
+            }
+        });
+    }
+
+    @Override
+    public List<Task> getTasks(Status status) {
+        return collect(TaskType.TASK, requireStatus(TaskType.TASK, status));
+    }
+
+    @Override
+    public List<Epic> getEpics(Status status) {
+        return collect(TaskType.EPIC, requireStatus(TaskType.EPIC, status));
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(Status status) {
+        return collect(TaskType.SUBTASK, requireStatus(TaskType.SUBTASK, status));
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        return store.count(type, requireStatus(type, status));
+    }
+
+    @Override
+    public void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        requireStatus(type, status);
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, type) && store.hasStatus(slot, status)) {
+                action.accept(materialize(slot));
+            }
+        }
+    }
+
+    /**
+     * Делит диапазон ячеек хранилища; задача создаётся для каждой ячейки нужного типа, но не копируется в список.
+     */
+    @Override
+    public <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                       ForkJoinPool pool) {
+        return ParallelQuery.collect(new TypeView<Task>(type).spliterator(), filter, collector, pool);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(Epic epic) {
+        EpicState state = epicStates.get(epic.getId());
+        return state != null ? subtasksOf(state) : new ArrayList<>();
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        List<Task> tasks = new ArrayList<>(history.size());
+        for (int id : history) {
+            tasks.add(materialize(store.slotOf(id)));
+        }
+        return Collections.unmodifiableList(tasks);
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative: %d, %d"
+                    .formatted(offset, limit));
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, Math.max(0, history.size() - offset)));
+        int position = 0;
+        for (int id : history) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (position++ >= offset) {
+                page.add(materialize(store.slotOf(id)));
+            }
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    @Override
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        List<Task> tasks = new ArrayList<>(schedule.size());
+        schedule.forEach(key -> tasks.add(store.materialize(store.slotOf(idOf(key)))));
+        return tasks;
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid time range: [%s, %s)".formatted(from, to));
+        }
+        return scheduled(ceilingMinute(from), ceilingMinute(to), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        return InMemoryTaskManager.activeAt(timeSlots, instant);
+    }
+
+    @Override
+    public List<Task> getNextTasks(LocalDateTime time, int limit) {
+        if (time == null || limit < 0) {
+            throw new IllegalArgumentException("Invalid query: time=%s, limit=%d".formatted(time, limit));
+        }
+        return scheduled(ceilingMinute(time), UNSCHEDULED, limit);
+    }
+
+    @Override
+    public List<Task> getUnscheduledTasks() {
+        List<Task> tasks = new ArrayList<>();
+        schedule.forEachFrom(key(UNSCHEDULED, 0), key -> tasks.add(store.materialize(store.slotOf(idOf(key)))));
+        return tasks;
+    }
+
+    @Override
+    public boolean isOverlapping(Task newTask) {
+        return timeSlots.overlaps(newTask);
+    }
+
+    /**
+     * Окна начинаются с целой минуты: after округляется вверх, поэтому найденное начало
+     * не сдвигается при сохранении задачи.
+     */
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration) {
+        return timeSlots.findGap(after != null ? ceilingTime(after) : null, duration);
+    }
+
+    @Override
+    public Task addToFirstFreeSlot(Task task, LocalDateTime after) {
+        InMemoryTaskManager.requirePlaceable(task);
+        Task stored = normalized(task);
+        Task copy = InMemoryTaskManager.withStartTime(stored, findFreeSlot(after, stored.getDuration()));
+        Task added = copy instanceof Subtask ? addSubtask((Subtask) copy) : addTask(copy);
+        InMemoryTaskManager.placed(task, added);
+        return added;
+    }
+
+    @Override
+    public List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after) {
+        List<Task> stored = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            stored.add(normalized(task));
+        }
+        List<Change> changes = InMemoryTaskManager.pack(timeSlots, stored, after != null ? ceilingTime(after) : null);
+        applyBatch(changes);
+        return InMemoryTaskManager.placed(tasks, changes);
+    }
+
+    @Override
+    public void applyBatch(List<Change> batch) {
+        List<Change> changes = new ArrayList<>(batch.size());
+        for (Change change : batch) {
+            changes.add(normalized(change));
+        }
+        for (Change change : changes) {
+            if (change.getKind() == Change.Kind.UPDATE && change.getTask() instanceof Subtask) {
+                int slot = slotOf(change.getId(), TaskType.SUBTASK);
+                if (slot != NONE && store.epicId(slot) != ((Subtask) change.getTask()).getSubtasksEpicId()) {
+                    throw new IllegalArgumentException("Subtask with id=%s not found in epic"
+                            .formatted(change.getId()));
+                }
+            }
+        }
+        BatchValidation.validate(changes,
+                id -> bare(slotOf(id, TaskType.TASK)),
+                id -> (Epic) bare(slotOf(id, TaskType.EPIC)),
+                id -> (Subtask) bare(slotOf(id, TaskType.SUBTASK)),
+                id -> subtasksOf(epicStates.get(id)),
+                timeSlots);
+
+        int additions = 0;
+        for (Change change : changes) {
+            if (change.getKind() == Change.Kind.ADD) {
+                additions++;
+            }
+        }
+        IdAllocator.Block ids = idAllocator.reserve(additions);
+        for (int i = 0; i < changes.size(); i++) {
+            Change change = changes.get(i);
+            Task task = change.getTask();
+            switch (change.getKind()) {
+                case ADD:
+                    int id = ids.next();
+                    batch.get(i).getTask().setId(id);
+                    task.setId(id);
+                    insert(task);
+                    break;
+                case UPDATE:
+                    int slot = store.slotOf(task.getId());
+                    if (!(task instanceof Epic)) {
+                        unschedule(slot);
+                    }
+                    replace(slot, task);
+                    break;
+                case DELETE:
+                    int deleted = store.slotOf(change.getId());
+                    if (deleted != NONE) {
+                        delete(deleted);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change kind: " + change.getKind());
+            }
+        }
+    }
+
+    public void resetIdCounter() {
+        idAllocator.reset(1);
+    }
+
+    public void setNextId(int nextId) {
+        idAllocator.reset(nextId);
+    }
+
+    // Новая запись: задача уже прошла проверки и получила id
+    private void insert(Task task) {
+        int slot = store.insert(task);
+        switch (store.type(slot)) {
+            case EPIC:
+                epicStates.put(task.getId(), new EpicState());
+                break;
+            case SUBTASK:
+                int epicSlot = store.slotOf(store.epicId(slot));
+                EpicState state = epicStates.get(store.epicId(slot));
+                attach(state, slot);
+                refresh(epicSlot, state);
+                scheduleSlot(slot);
+                break;
+            default:
+                scheduleSlot(slot);
+        }
+        modCount++;
+    }
+
+    // Замена полей записи; задача или подзадача уже снята с расписания
+    private void replace(int slot, Task task) {
+        switch (store.type(slot)) {
+            case EPIC:
+                store.update(slot, task);
+                refresh(slot, epicStates.get(task.getId()));
+                break;
+            case SUBTASK:
+                int epicSlot = store.slotOf(store.epicId(slot));
+                EpicState state = epicStates.get(store.epicId(slot));
+                account(state, slot, -1);
+                store.update(slot, task);
+                account(state, slot, 1);
+                refresh(epicSlot, state);
+                scheduleSlot(slot);
+                break;
+            default:
+                store.update(slot, task);
+                scheduleSlot(slot);
+        }
+        modCount++;
+    }
+
+    private void delete(int slot) {
+        switch (store.type(slot)) {
+            case EPIC:
+                EpicState epic = epicStates.remove(store.id(slot));
+                for (int subtask = epic.first; subtask != NONE; ) {
+                    int next = store.nextInEpic(subtask);
+                    forget(subtask);
+                    unschedule(subtask);
+                    store.delete(subtask);
+                    subtask = next;
+                }
+                break;
+            case SUBTASK:
+                int epicSlot = store.slotOf(store.epicId(slot));
+                EpicState state = epicStates.get(store.epicId(slot));
+                unschedule(slot);
+                account(state, slot, -1);
+                detach(state, slot);
+                refresh(epicSlot, state);
+                break;
+            default:
+                unschedule(slot);
+        }
+        forget(slot);
+        store.delete(slot);
+        modCount++;
+    }
+
+    private void scheduleSlot(int slot) {
+        int start = store.start(slot);
+        schedule.add(key(start == NO_TIME ? UNSCHEDULED : start, store.id(slot)));
+        if (occupies(slot)) {
+            timeSlots.occupied.add(key(start, store.id(slot)));
+        }
+    }
+
+    private void unschedule(int slot) {
+        int start = store.start(slot);
+        schedule.remove(key(start == NO_TIME ? UNSCHEDULED : start, store.id(slot)));
+        if (start != NO_TIME) {
+            timeSlots.occupied.remove(key(start, store.id(slot)));
+        }
+    }
+
+    private boolean occupies(int slot) {
+        return store.start(slot) != NO_TIME && store.duration(slot) != NO_TIME && store.duration(slot) > 0;
+    }
+
+    private void attach(EpicState state, int slot) {
+        store.setPrevInEpic(slot, state.last);
+        store.setNextInEpic(slot, NONE);
+        if (state.last != NONE) {
+            store.setNextInEpic(state.last, slot);
+        } else {
+            state.first = slot;
+        }
+        state.last = slot;
+        state.size++;
+        account(state, slot, 1);
+    }
+
+    private void detach(EpicState state, int slot) {
+        int prev = store.prevInEpic(slot);
+        int next = store.nextInEpic(slot);
+        if (prev != NONE) {
+            store.setNextInEpic(prev, next);
+        } else {
+            state.first = next;
+        }
+        if (next != NONE) {
+            store.setPrevInEpic(next, prev);
+        } else {
+            state.last = prev;
+        }
+        state.size--;
+    }
+
+    // Вносит (sign = 1) или вычитает (sign = -1) поля подзадачи в агрегатах эпика, как Epic.putSubtask
+    private void account(EpicState state, int slot, int sign) {
+        Status status = store.status(slot);
+        if (status != null) {
+            state.statusCounts[status.ordinal()] += sign;
+        }
+        int duration = store.duration(slot);
+        if (duration != NO_TIME) {
+            state.totalMinutes += (long) sign * duration;
+        }
+        int start = store.start(slot);
+        if (start != NO_TIME) {
+            if (sign > 0) {
+                state.minStart = Math.min(state.minStart, start);
+            } else if (start == state.minStart) {
+                state.staleStart = true;
+            }
+        }
+    }
+
+    // Статус и время эпика по агрегатам подзадач — те же правила, что в Epic.getSubtasksStatus и updateEpicTime
+    private void refresh(int epicSlot, EpicState state) {
+        if (state.staleStart) {
+            state.minStart = Long.MAX_VALUE;
+            for (int slot = state.first; slot != NONE; slot = store.nextInEpic(slot)) {
+                if (store.start(slot) != NO_TIME) {
+                    state.minStart = Math.min(state.minStart, store.start(slot));
+                }
+            }
+            state.staleStart = false;
+        }
+        int[] counts = state.statusCounts;
+        Status status;
+        if (counts[Status.INPROGRESS.ordinal()] > 0) {
+            status = Status.INPROGRESS;
+        } else if (counts[Status.DONE.ordinal()] == state.size) {
+            status = Status.DONE;
+        } else if (counts[Status.NEW.ordinal()] == state.size) {
+            status = Status.NEW;
+        } else {
+            status = Status.INPROGRESS;
+        }
+        store.setStatus(epicSlot, status);
+        // Сумма длительностей подзадач может не поместиться в столбец: он насыщается, а точное время
+        // эпика Epic считает по подзадачам при materialize
+        store.setTime(epicSlot, state.minStart == Long.MAX_VALUE ? NO_TIME : (int) state.minStart,
+                (int) Math.max(NO_TIME + 1, Math.min(state.totalMinutes, Integer.MAX_VALUE)));
+    }
+
+    private int existingSubtask(Subtask subtask) {
+        int slot = slotOf(subtask.getId(), TaskType.SUBTASK);
+        if (slot == NONE) {
+            throw new IllegalArgumentException("Subtask by id=%s not found".formatted(subtask.getId()));
+        }
+        if (store.epicId(slot) != subtask.getSubtasksEpicId()) {
+            throw new IllegalArgumentException("Subtask with id=%s not found in epic".formatted(subtask.getId()));
+        }
+        return slot;
+    }
+
+    private int slotOf(int id, TaskType type) {
+        int slot = store.slotOf(id);
+        return slot != NONE && store.is(slot, type) ? slot : NONE;
+    }
+
+    // Просмотр: задача попадает в историю
+    private Task view(int slot) {
+        if (slot == NONE) {
+            return null;
+        }
+        Integer id = store.id(slot);
+        history.remove(id);
+        history.add(id);
+        if (history.size() > HISTORY_CAPACITY) {
+            Iterator<Integer> eldest = history.iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        historySize = history.size();
+        return materialize(slot);
+    }
+
+    private void forget(int slot) {
+        history.remove(store.id(slot));
+        historySize = history.size();
+    }
+
+    private Task materialize(int slot) {
+        return store.is(slot, TaskType.EPIC) ? epicAt(slot) : store.materialize(slot);
+    }
+
+    // Эпик со всеми подзадачами: его статус и время Epic пересчитывает сам и получает те же значения
+    private Epic epicAt(int slot) {
+        Epic epic = (Epic) store.materialize(slot);
+        EpicState state = epicStates.get(store.id(slot));
+        if (state.size > 0) {
+            epic.applySubtaskChanges(subtasksOf(state), List.of());
+        }
+        return epic;
+    }
+
+    // Задача без подзадач эпика: для проверки пакета достаточно полей записи
+    private Task bare(int slot) {
+        return slot != NONE ? store.materialize(slot) : null;
+    }
+
+    private List<Subtask> subtasksOf(EpicState state) {
+        List<Subtask> subtasks = new ArrayList<>(state.size);
+        for (int slot = state.first; slot != NONE; slot = store.nextInEpic(slot)) {
+            subtasks.add((Subtask) store.materialize(slot));
+        }
+        return subtasks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> List<T> collect(TaskType type, Status status) {
+        List<T> tasks = new ArrayList<>(status == null ? store.size(type) : store.count(type, status));
+        for (int slot = 0; slot < store.limit(); slot++) {
+            if (store.is(slot, type) && (status == null || store.hasStatus(slot, status))) {
+                tasks.add((T) materialize(slot));
+            }
+        }
+        return tasks;
+    }
+
+    // Задачи расписания с минутой начала в [fromMinute, toMinute), не больше limit
+    private List<Task> scheduled(long fromMinute, long toMinute, int limit) {
+        List<Task> tasks = new ArrayList<>(Math.min(limit, 16));
+        long end = key(Math.min(toMinute, UNSCHEDULED), 0);
+        schedule.forEachFrom(key(fromMinute, 0), key -> {
+            if (key >= end || tasks.size() == limit) {
+                return false;
+            }
+            tasks.add(store.materialize(store.slotOf(idOf(key))));
+            return true;
+        });
+        return tasks;
+    }
+
+    private void compactIfEmpty() {
+        if (store.size() == 0) {
+            store.clear();
+        }
+    }
+
+    private static Status requireStatus(TaskType type, Status status) {
+        if (type == null || status == null) {
+            throw new IllegalArgumentException("Type and status must not be null: %s, %s".formatted(type, status));
+        }
+        return status;
+    }
+
+    // Время хранится с точностью до минуты: проверяется и записывается копия задачи, приведённая к ней.
+    // Задача, уже выровненная по минутам, и эпик (его время считается по подзадачам) не копируются
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> T normalized(T task) {
+        if (task instanceof Epic) {
+            return task;
+        }
+        Duration duration = task.getDuration();
+        if (duration != null && !duration.isZero() && duration.toMinutes() == 0) {
+            throw new IllegalArgumentException("Длительность задачи меньше минуты: " + duration);
+        }
+        LocalDateTime start = TaskStore.timeOf(TaskStore.minuteOf(task.getStartTime()));
+        duration = TaskStore.durationOf(TaskStore.minutesOf(duration));
+        if (Objects.equals(start, task.getStartTime()) && Objects.equals(duration, task.getDuration())) {
+            return task;
+        }
+        if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            return (T) new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(), subtask.getStatus(),
+                    subtask.getSubtasksEpicId(), duration, start);
+        }
+        return (T) new Task(task.getId(), task.getName(), task.getDescription(), task.getStatus(), duration, start);
+    }
+
+    private static Change normalized(Change change) {
+        if (change.getTask() == null) {
+            return change;
+        }
+        Task task = normalized(change.getTask());
+        if (task == change.getTask()) {
+            return change;
+        }
+        return change.getKind() == Change.Kind.ADD ? Change.add(task) : Change.update(task);
+    }
+
+    // Ключ расписания: минута начала в старших 32 битах, id — в младших
+    private static long key(long minute, int id) {
+        return minute << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    private static int minuteOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int idOf(long key) {
+        return (int) key;
+    }
+
+    // Минуты для границ запросов: любое время допустимо, значения за пределами хранимых прижимаются к краям
+    private static long floorMinute(LocalDateTime time) {
+        long minute = Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+        return Math.max(Integer.MIN_VALUE, Math.min(minute, Integer.MAX_VALUE - 1));
+    }
+
+    private static long ceilingMinute(LocalDateTime time) {
+        long minute = Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+        if (time.getSecond() != 0 || time.getNano() != 0) {
+            minute++;
+        }
+        return Math.max(Integer.MIN_VALUE, Math.min(minute, Integer.MAX_VALUE));
+    }
+
+    private static LocalDateTime ceilingTime(LocalDateTime time) {
+        return time.getSecond() == 0 && time.getNano() == 0 ? time
+                : time.withSecond(0).withNano(0).plusMinutes(1);
+    }
+
+    /**
+     * Занятые интервалы: ключи (минута начала, id) задач с началом и положительной длительностью.
+     * Окончание интервала читается из хранилища по id.
+     */
+    private final class Slots implements TimeSlots {
+        final LongSortedSet occupied = new LongSortedSet();
+
+        @Override
+        public boolean overlaps(Task task) {
+            if (!TimeSlotIndex.isScheduled(task)) {
+                return false;
+            }
+            LocalDateTime start = task.getStartTime();
+            long floor = key(floorMinute(start), -1);
+            long before = occupied.floor(floor);
+            if (before != LongSortedSet.NONE && endOf(before).isAfter(start)) {
+                return true;
+            }
+            long next = occupied.higher(floor);
+            return next != LongSortedSet.NONE
+                    && TaskStore.timeOf(minuteOf(next)).isBefore(task.getEndTime());
+        }
+
+        @Override
+        public Task activeAt(LocalDateTime instant) {
+            long before = occupied.floor(key(floorMinute(instant), -1));
+            return before != LongSortedSet.NONE && endOf(before).isAfter(instant)
+                    ? store.materialize(store.slotOf(idOf(before))) : null;
+        }
+
+        @Override
+        public LocalDateTime findGap(LocalDateTime after, Duration duration) {
+            if (after == null || duration == null || duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Invalid slot request: after=%s, duration=%s"
+                        .formatted(after, duration));
+            }
+            LocalDateTime[] candidate = {after};
+            long before = occupied.floor(key(floorMinute(after), -1));
+            if (before != LongSortedSet.NONE && endOf(before).isAfter(after)) {
+                candidate[0] = endOf(before);
+            }
+            occupied.forEachFrom(key(ceilingMinute(candidate[0]), 0), key -> {
+                if (!TaskStore.timeOf(minuteOf(key)).isBefore(candidate[0].plus(duration))) {
+                    return false;
+                }
+                candidate[0] = endOf(key);
+                return true;
+            });
+            return candidate[0];
+        }
+
+        @Override
+        public void add(Task task) {
+            if (TimeSlotIndex.isScheduled(task)) {
+                occupied.add(key(TaskStore.minuteOf(task.getStartTime()), task.getId()));
+            }
+        }
+
+        @Override
+        public void remove(int id) {
+            int slot = store.slotOf(id);
+            if (slot != NONE && store.start(slot) != NO_TIME) {
+                occupied.remove(key(store.start(slot), id));
+            }
+        }
+
+        private LocalDateTime endOf(long key) {
+            int slot = store.slotOf(idOf(key));
+            return LocalDateTime.ofEpochSecond(((long) minuteOf(key) + store.duration(slot)) * 60, 0,
+                    ZoneOffset.UTC);
+        }
+    }
+
+    // Живое представление записей одного типа: объекты создаются при обходе
+    private final class TypeView<T extends Task> extends AbstractCollection<T> {
+        private final TaskType type;
+
+        TypeView(TaskType type) {
+            this.type = type;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<>() {
+                private final int expectedModCount = modCount;
+                private int slot = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return slot < store.limit();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T task = (T) materialize(slot);
+                    slot = advance(slot + 1);
+                    return task;
+                }
+
+                private int advance(int from) {
+                    int next = from;
+                    while (next < store.limit() && !store.is(next, type)) {
+                        next++;
+                    }
+                    return next;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return store.size(type);
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return new SlotSpliterator<>(type, 0, store.limit(), modCount);
+        }
+    }
+
+    // Диапазон ячеек хранилища, делится пополам; задачи создаются по одной при обходе
+    private final class SlotSpliterator<T extends Task> implements Spliterator<T> {
+        private final TaskType type;
+        private final int fence;
+        private final int expectedModCount;
+        private int slot;
+
+        SlotSpliterator(TaskType type, int slot, int fence, int expectedModCount) {
+            this.type = type;
+            this.slot = slot;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (slot < fence) {
+                int current = slot++;
+                if (store.is(current, type)) {
+                    action.accept((T) materialize(current));
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (; slot < fence; slot++) {
+                if (store.is(slot, type)) {
+                    action.accept((T) materialize(slot));
+                }
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (slot + fence) >>> 1;
+            if (middle <= slot) {
+                return null;
+            }
+            SlotSpliterator<T> prefix = new SlotSpliterator<>(type, slot, middle, expectedModCount);
+            slot = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return store.limit() == 0 ? 0 : (long) (fence - slot) * store.size(type) / store.limit();
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package managers;
+
+import status.Status;
+import tasks.Subtask;
+import tasks.Task;
+import java.util.Arrays;
+
+/**
+ * Хранилище задач в куче по столбцам: каждое поле задачи — отдельный массив примитивов,
+ * запись задачи — номер ячейки в этих массивах. Объектов на задачу нет:
+ * названия и описания лежат в общем StringPool, время — в минутах от эпохи,
+ * id ищется по открытой таблице номеров ячеек. Освобождённые ячейки переиспользуются.
+ */
+final class ColumnarTaskStore implements TaskStore {
+    private static final byte FREE = -1;
+    private static final byte NO_STATUS = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final StringPool strings = new StringPool();
+    private int[] ids;
+    private byte[] types;
+    private byte[] statuses;
+    private int[] epicIds;
+    private int[] starts;
+    private int[] durations;
+    private int[] names;
+    private int[] descriptions;
+    private int[] nextInEpic;
+    private int[] prevInEpic;
+    // Номер ячейки + 1 в позиции хеша id; 0 — пустая позиция
+    private int[] index;
+    private int[] free;
+    private int freeCount;
+    private int limit;
+    private final int[] sizes = new int[TYPES.length];
+    private final int[][] counts = new int[TYPES.length][STATUSES.length];
+
+    ColumnarTaskStore() {
+        reset();
+    }
+
+    @Override
+    public int slotOf(int id) {
+        int mask = index.length - 1;
+        for (int i = TaskStore.mix(id) & mask; index[i] != 0; i = (i + 1) & mask) {
+            if (ids[index[i] - 1] == id) {
+                return index[i] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    @Override
+    public int insert(Task task) {
+        int slot = freeCount > 0 ? free[--freeCount] : limit++;
+        if (slot == ids.length) {
+            grow(slot + (slot >> 1));
+        }
+        TaskType type = TaskType.of(task);
+        ids[slot] = task.getId();
+        types[slot] = (byte) type.ordinal();
+        statuses[slot] = NO_STATUS;
+        names[slot] = StringPool.NULL;
+        descriptions[slot] = StringPool.NULL;
+        nextInEpic[slot] = NONE;
+        prevInEpic[slot] = NONE;
+        sizes[type.ordinal()]++;
+        write(slot, task);
+        if ((size() << 1) > index.length) {
+            rehash(index.length << 1);
+        } else {
+            link(slot);
+        }
+        return slot;
+    }
+
+    @Override
+    public void update(int slot, Task task) {
+        write(slot, task);
+    }
+
+    @Override
+    public void delete(int slot) {
+        unlink(slot);
+        setStatus(slot, null);
+        strings.release(names[slot]);
+        strings.release(descriptions[slot]);
+        sizes[types[slot]]--;
+        types[slot] = FREE;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount << 1);
+        }
+        free[freeCount++] = slot;
+    }
+
+    @Override
+    public void clear() {
+        strings.clear();
+        reset();
+        Arrays.fill(sizes, 0);
+        for (int[] byStatus : counts) {
+            Arrays.fill(byStatus, 0);
+        }
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public boolean isUsed(int slot) {
+        return types[slot] != FREE;
+    }
+
+    @Override
+    public TaskType type(int slot) {
+        return types[slot] == FREE ? null : TYPES[types[slot]];
+    }
+
+    @Override
+    public boolean is(int slot, TaskType type) {
+        return types[slot] == type.ordinal();
+    }
+
+    @Override
+    public int id(int slot) {
+        return ids[slot];
+    }
+
+    @Override
+    public Status status(int slot) {
+        return statuses[slot] == NO_STATUS ? null : STATUSES[statuses[slot]];
+    }
+
+    @Override
+    public boolean hasStatus(int slot, Status status) {
+        return statuses[slot] == status.ordinal();
+    }
+
+    @Override
+    public void setStatus(int slot, Status status) {
+        byte type = types[slot];
+        if (statuses[slot] != NO_STATUS) {
+            counts[type][statuses[slot]]--;
+        }
+        statuses[slot] = status == null ? NO_STATUS : (byte) status.ordinal();
+        if (status != null) {
+            counts[type][status.ordinal()]++;
+        }
+    }
+
+    @Override
+    public int epicId(int slot) {
+        return epicIds[slot];
+    }
+
+    @Override
+    public int start(int slot) {
+        return starts[slot];
+    }
+
+    @Override
+    public int duration(int slot) {
+        return durations[slot];
+    }
+
+    @Override
+    public void setTime(int slot, int start, int duration) {
+        starts[slot] = start;
+        durations[slot] = duration;
+    }
+
+    @Override
+    public String name(int slot) {
+        return strings.get(names[slot]);
+    }
+
+    @Override
+    public String description(int slot) {
+        return strings.get(descriptions[slot]);
+    }
+
+    @Override
+    public int nextInEpic(int slot) {
+        return nextInEpic[slot];
+    }
+
+    @Override
+    public int prevInEpic(int slot) {
+        return prevInEpic[slot];
+    }
+
+    @Override
+    public void setNextInEpic(int slot, int next) {
+        nextInEpic[slot] = next;
+    }
+
+    @Override
+    public void setPrevInEpic(int slot, int prev) {
+        prevInEpic[slot] = prev;
+    }
+
+    @Override
+    public int size() {
+        return sizes[0] + sizes[1] + sizes[2];
+    }
+
+    @Override
+    public int size(TaskType type) {
+        return sizes[type.ordinal()];
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        return counts[type.ordinal()][status.ordinal()];
+    }
+
+    private void write(int slot, Task task) {
+        int start = TaskStore.minuteOf(task.getStartTime());
+        int duration = TaskStore.minutesOf(task.getDuration());
+        int name = strings.intern(task.getName());
+        int description = strings.intern(task.getDescription());
+        strings.release(names[slot]);
+        strings.release(descriptions[slot]);
+        names[slot] = name;
+        descriptions[slot] = description;
+        setStatus(slot, task.getStatus());
+        epicIds[slot] = task instanceof Subtask ? ((Subtask) task).getSubtasksEpicId() : 0;
+        starts[slot] = start;
+        durations[slot] = duration;
+    }
+
+    private void reset() {
+        ids = new int[16];
+        types = new byte[16];
+        statuses = new byte[16];
+        epicIds = new int[16];
+        starts = new int[16];
+        durations = new int[16];
+        names = new int[16];
+        descriptions = new int[16];
+        nextInEpic = new int[16];
+        prevInEpic = new int[16];
+        Arrays.fill(types, FREE);
+        index = new int[32];
+        free = new int[16];
+        freeCount = 0;
+        limit = 0;
+    }
+
+    private void grow(int length) {
+        int from = ids.length;
+        ids = Arrays.copyOf(ids, length);
+        types = Arrays.copyOf(types, length);
+        statuses = Arrays.copyOf(statuses, length);
+        epicIds = Arrays.copyOf(epicIds, length);
+        starts = Arrays.copyOf(starts, length);
+        durations = Arrays.copyOf(durations, length);
+        names = Arrays.copyOf(names, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+        nextInEpic = Arrays.copyOf(nextInEpic, length);
+        prevInEpic = Arrays.copyOf(prevInEpic, length);
+        Arrays.fill(types, from, length, FREE);
+    }
+
+    private void link(int slot) {
+        int mask = index.length - 1;
+        int i = TaskStore.mix(ids[slot]) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    // Удаление из таблицы со сдвигом цепочки назад, как в IntHashMap
+    private void unlink(int slot) {
+        int mask = index.length - 1;
+        int i = TaskStore.mix(ids[slot]) & mask;
+        while (index[i] != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = TaskStore.mix(ids[index[j] - 1]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                index[gap] = index[j];
+                gap = j;
+            }
+        }
+        index[gap] = 0;
+    }
+
+    private void rehash(int length) {
+        index = new int[length];
+        for (int slot = 0; slot < limit; slot++) {
+            if (types[slot] != FREE) {
+                link(slot);
+            }
+        }
+    }
+}
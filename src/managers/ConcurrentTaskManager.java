@@ -0,0 +1,714 @@
+package managers;
+
+import history.HistoryManager;
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Потокобезопасный менеджер задач для многопоточных серверов.
+ * Хранилища — ConcurrentHashMap, id выдаются из диапазонов, зарезервированных каждым потоком,
+ * чтение задач идёт без блокировок.
+ * Подзадачи одного эпика и сам эпик изменяются под блокировкой этого эпика.
+ * Проверка пересечения и вставка в расписание выполняются атомарно под общей блокировкой расписания:
+ * пересечение проверяется по всем задачам, поэтому изменения задач и подзадач со временем
+ * ждут друг друга и в разных эпиках. Изменения подзадач без времени расписание не берут,
+ * и в разных эпиках такие изменения не конкурируют; массовые операции (clear*, applyBatch)
+ * захватывают менеджер целиком.
+ * Порядок захвата блокировок: structureLock → блокировка эпика → scheduleLock.
+ * Представления get*View() слабо согласованы, как представления ConcurrentHashMap:
+ * обход не бросает ConcurrentModificationException и может как увидеть, так и не увидеть
+ * изменения, сделанные во время обхода.
+ */
+public class ConcurrentTaskManager implements TaskManager {
+    private final HistoryManager historyManager;
+    private static final int ID_BLOCK_SIZE = 64;
+
+    private final IdAllocator idAllocator = new IdAllocator();
+    // Каждый поток раздаёт id из своего зарезервированного диапазона и не конкурирует за общий счётчик
+    private final ThreadLocal<IdAllocator.Block> idBlocks = new ThreadLocal<>();
+    private final ConcurrentHashMap<Integer, Task> tasksMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Epic> epicsMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Subtask> subtasksMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Object> epicLocks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Task> prioritizedTasks =
+            new ConcurrentSkipListSet<>(InMemoryTaskManager.PRIORITY_ORDER);
+    private final TimeSlotIndex timeSlots = new TimeSlotIndex();
+    private final ReentrantReadWriteLock scheduleLock = new ReentrantReadWriteLock();
+    // Обычные изменения берут блокировку на чтение, массовые — на запись
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+    public ConcurrentTaskManager() {
+        this(Managers.getConcurrentHistory());
+    }
+
+    /**
+     * @param historyManager потокобезопасная история, например ConcurrentHistoryManager или CallerHistories
+     */
+    public ConcurrentTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public Task addTask(Task task) {
+        return shared(() -> {
+            if (!TimeSlotIndex.isScheduled(task)) {
+                // Без времени задача не может пересечься с другими, блокировка расписания не нужна
+                task.setId(nextId());
+                tasksMap.put(task.getId(), task);
+                prioritizedTasks.add(task);
+                return task;
+            }
+            return inSchedule(() -> {
+                if (timeSlots.overlaps(task)) {
+                    throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+                }
+                task.setId(nextId());
+                tasksMap.put(task.getId(), task);
+                addToSchedule(task);
+                return task;
+            });
+        });
+    }
+
+    @Override
+    public Epic addEpic(Epic epic) {
+        return shared(() -> {
+            epic.setId(nextId());
+            epicsMap.put(epic.getId(), epic);
+            return epic;
+        });
+    }
+
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        int epicId = subtask.getSubtasksEpicId();
+        return inEpic(epicId, () -> {
+            Epic epic = epicsMap.get(epicId);
+            if (epic == null) {
+                throw new IllegalArgumentException("Эпик с ID " + epicId + " не найден.");
+            }
+            if (!TimeSlotIndex.isScheduled(subtask)) {
+                subtask.setId(nextId());
+                subtasksMap.put(subtask.getId(), subtask);
+                prioritizedTasks.add(subtask);
+                epic.addSubtask(subtask);
+                return subtask;
+            }
+            inSchedule(() -> {
+                if (timeSlots.overlaps(subtask)) {
+                    throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+                }
+                subtask.setId(nextId());
+                subtasksMap.put(subtask.getId(), subtask);
+                addToSchedule(subtask);
+                return subtask;
+            });
+            epic.addSubtask(subtask);
+            return subtask;
+        });
+    }
+
+    @Override
+    public Task updateTask(Task taskToReplace) {
+        return shared(() -> inSchedule(() -> {
+            Task existingTask = tasksMap.get(taskToReplace.getId());
+            if (existingTask != null) {
+                replaceInSchedule(existingTask, taskToReplace, "Task time conflicts with existing tasks.");
+                tasksMap.put(taskToReplace.getId(), taskToReplace);
+            }
+            return taskToReplace;
+        }));
+    }
+
+    @Override
+    public Epic updateEpic(Epic epicToReplace) {
+        return inEpic(epicToReplace.getId(), () -> {
+            Epic existingEpic = epicsMap.get(epicToReplace.getId());
+            if (existingEpic != null) {
+                epicToReplace.applySubtaskChanges(existingEpic.getSubtasksView(), List.of());
+                epicsMap.put(epicToReplace.getId(), epicToReplace);
+            }
+            return epicToReplace;
+        });
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtaskToReplace) {
+        int updatingSubtaskId = subtaskToReplace.getId();
+        int epicId = subtaskToReplace.getSubtasksEpicId();
+        return inEpic(epicId, () -> {
+            Subtask existingSubtask = subtasksMap.get(updatingSubtaskId);
+            if (existingSubtask == null) {
+                throw new IllegalArgumentException("Subtask by id=%s not found".formatted(updatingSubtaskId));
+            }
+            if (!TimeSlotIndex.isScheduled(existingSubtask) && !TimeSlotIndex.isScheduled(subtaskToReplace)) {
+                // Подзадача этого эпика меняется только под его блокировкой, расписание не затрагивается
+                prioritizedTasks.remove(existingSubtask);
+                subtasksMap.put(updatingSubtaskId, subtaskToReplace);
+                prioritizedTasks.add(subtaskToReplace);
+            } else {
+                inSchedule(() -> {
+                    replaceInSchedule(existingSubtask, subtaskToReplace,
+                            "Subtask time conflicts with existing tasks.");
+                    subtasksMap.put(updatingSubtaskId, subtaskToReplace);
+                    return existingSubtask;
+                });
+            }
+            Epic epic = epicsMap.get(epicId);
+            if (epic != null) {
+                epic.updateSubtask(subtaskToReplace);
+            }
+            return subtaskToReplace;
+        });
+    }
+
+    @Override
+    public void clearTasks() {
+        exclusive(() -> {
+            for (Task task : tasksMap.values()) {
+                removeFromHistory(task.getId());
+                removeFromSchedule(task);
+            }
+            tasksMap.clear();
+        });
+    }
+
+    @Override
+    public void clearEpics() {
+        exclusive(() -> {
+            for (Epic epic : epicsMap.values()) {
+                removeFromHistory(epic.getId());
+                synchronized (epicLock(epic.getId())) {
+                    epic.clear();
+                }
+            }
+            for (Subtask subtask : subtasksMap.values()) {
+                removeFromHistory(subtask.getId());
+                removeFromSchedule(subtask);
+            }
+            epicsMap.clear();
+            subtasksMap.clear();
+            epicLocks.clear();
+        });
+    }
+
+    @Override
+    public void clearSubtasks() {
+        exclusive(() -> {
+            for (Subtask subtask : subtasksMap.values()) {
+                removeFromHistory(subtask.getId());
+                removeFromSchedule(subtask);
+            }
+            subtasksMap.clear();
+            for (Epic epic : epicsMap.values()) {
+                synchronized (epicLock(epic.getId())) {
+                    epic.clear();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        shared(() -> inSchedule(() -> {
+            removeFromHistory(id);
+            Task task = tasksMap.remove(id);
+            if (task != null) {
+                removeFromSchedule(task);
+            }
+            return task;
+        }));
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        inEpic(id, () -> {
+            Epic epic = epicsMap.remove(id);
+            if (epic != null) {
+                for (Subtask subtask : epic.getSubtasksView()) {
+                    removeFromHistory(subtask.getId());
+                    subtasksMap.remove(subtask.getId());
+                    unschedule(subtask);
+                }
+                removeFromHistory(id);
+                epicLocks.remove(id);
+            }
+            return epic;
+        });
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        Subtask subtask = subtasksMap.get(id);
+        if (subtask == null) {
+            return;
+        }
+        int epicId = subtask.getSubtasksEpicId();
+        inEpic(epicId, () -> {
+            // Подзадачу могли удалить, пока ждали блокировку эпика
+            Subtask removed = subtasksMap.remove(id);
+            if (removed != null) {
+                unschedule(removed);
+                removeFromHistory(id);
+                Epic epic = epicsMap.get(epicId);
+                if (epic != null) {
+                    epic.removeSubtask(id);
+                }
+            }
+            return removed;
+        });
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        return recordView(tasksMap.get(id));
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        return recordView(epicsMap.get(id));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        return recordView(subtasksMap.get(id));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return new ArrayList<>(tasksMap.values());
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return new ArrayList<>(epicsMap.values());
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return new ArrayList<>(subtasksMap.values());
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        return Collections.unmodifiableCollection(tasksMap.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        return Collections.unmodifiableCollection(epicsMap.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        return Collections.unmodifiableCollection(subtasksMap.values());
+    }
+
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        return Collections.unmodifiableSortedSet(prioritizedTasks);
+    }
+
+    // Выборки по статусу обходят хранилище: отдельный индекс пришлось бы согласовывать
+    // с блокировками эпиков, а чтение здесь и так идёт без блокировок
+    @Override
+    public List<Task> getTasks(Status status) {
+        return withStatus(tasksMap, status);
+    }
+
+    @Override
+    public List<Epic> getEpics(Status status) {
+        return withStatus(epicsMap, status);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(Status status) {
+        return withStatus(subtasksMap, status);
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        int count = 0;
+        for (Task task : storage(type).values()) {
+            if (task.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        for (Task task : storage(type).values()) {
+            if (task.getStatus() == status) {
+                action.accept(task);
+            }
+        }
+    }
+
+    /**
+     * Делит таблицу ConcurrentHashMap без блокировок; обход слабо согласован, как у представлений.
+     */
+    @Override
+    public <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                       ForkJoinPool pool) {
+        return ParallelQuery.collect(storage(type).values().spliterator(), filter, collector, pool);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(Epic epic) {
+        synchronized (epicLock(epic.getId())) {
+            return epic.getSubtasks();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return historyManager.getHistory(offset, limit);
+    }
+
+    @Override
+    public int getHistorySize() {
+        return historyManager.getHistorySize();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return new ArrayList<>(prioritizedTasks);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return InMemoryTaskManager.startingBetween(prioritizedTasks, from, to);
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        Lock lock = scheduleLock.readLock();
+        lock.lock();
+        try {
+            return InMemoryTaskManager.activeAt(timeSlots, instant);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getNextTasks(LocalDateTime time, int limit) {
+        return InMemoryTaskManager.nextTasks(prioritizedTasks, time, limit);
+    }
+
+    @Override
+    public List<Task> getUnscheduledTasks() {
+        return new ArrayList<>(prioritizedTasks.tailSet(InMemoryTaskManager.probe(null), true));
+    }
+
+    @Override
+    public boolean isOverlapping(Task newTask) {
+        Lock lock = scheduleLock.readLock();
+        lock.lock();
+        try {
+            return timeSlots.overlaps(newTask);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration) {
+        Lock lock = scheduleLock.readLock();
+        lock.lock();
+        try {
+            return timeSlots.findGap(after, duration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task addToFirstFreeSlot(Task task, LocalDateTime after) {
+        InMemoryTaskManager.requirePlaceable(task);
+        while (true) {
+            Task copy = InMemoryTaskManager.withStartTime(task, findFreeSlot(after, task.getDuration()));
+            try {
+                Task added = copy instanceof Subtask ? addSubtask((Subtask) copy) : addTask(copy);
+                InMemoryTaskManager.placed(task, added);
+                return added;
+            } catch (IllegalArgumentException e) {
+                // Окно успел занять другой поток — ищем следующее; остальные ошибки пробрасываются
+                if (!isOverlapping(copy)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after) {
+        // Поиск окон и вставка под одной монопольной блокировкой: окна не займут между ними
+        List<Change> changes = exclusive(() -> {
+            List<Change> packed = InMemoryTaskManager.pack(timeSlots, tasks, after);
+            validateAndApply(packed);
+            return packed;
+        });
+        return InMemoryTaskManager.placed(tasks, changes);
+    }
+
+    @Override
+    public void applyBatch(List<Change> changes) {
+        exclusive(() -> validateAndApply(changes));
+    }
+
+    // Вызывается под монопольной блокировкой
+    private void validateAndApply(List<Change> changes) {
+        BatchValidation.validate(changes, tasksMap::get, epicsMap::get, subtasksMap::get, timeSlots);
+        applyValidated(changes, idAllocator.reserve((int) changes.stream()
+                .filter(change -> change.getKind() == Change.Kind.ADD)
+                .count()));
+    }
+
+    // Вызывается под монопольной блокировкой: другие изменения не выполняются, читатели видят задачи по одной
+    private void applyValidated(List<Change> changes, IdAllocator.Block ids) {
+        Map<Integer, Map<Integer, Subtask>> upsertsByEpic = new HashMap<>();
+        Map<Integer, Set<Integer>> removedByEpic = new HashMap<>();
+        for (Change change : changes) {
+            Task task = change.getTask();
+            switch (change.getKind()) {
+                case ADD:
+                    task.setId(ids.next());
+                    if (task instanceof Epic) {
+                        epicsMap.put(task.getId(), (Epic) task);
+                    } else if (task instanceof Subtask) {
+                        Subtask subtask = (Subtask) task;
+                        subtasksMap.put(subtask.getId(), subtask);
+                        addToSchedule(subtask);
+                        upsertsByEpic.computeIfAbsent(subtask.getSubtasksEpicId(), epicId -> new LinkedHashMap<>())
+                                .put(subtask.getId(), subtask);
+                    } else {
+                        tasksMap.put(task.getId(), task);
+                        addToSchedule(task);
+                    }
+                    break;
+                case UPDATE:
+                    if (task instanceof Epic) {
+                        Epic epic = (Epic) task;
+                        epic.applySubtaskChanges(epicsMap.get(epic.getId()).getSubtasksView(), List.of());
+                        epicsMap.put(epic.getId(), epic);
+                    } else if (task instanceof Subtask) {
+                        Subtask subtask = (Subtask) task;
+                        removeFromSchedule(subtasksMap.put(subtask.getId(), subtask));
+                        addToSchedule(subtask);
+                        upsertsByEpic.computeIfAbsent(subtask.getSubtasksEpicId(), epicId -> new LinkedHashMap<>())
+                                .put(subtask.getId(), subtask);
+                    } else {
+                        removeFromSchedule(tasksMap.put(task.getId(), task));
+                        addToSchedule(task);
+                    }
+                    break;
+                case DELETE:
+                    int id = change.getId();
+                    removeFromHistory(id);
+                    Task removedTask = tasksMap.remove(id);
+                    Subtask removedSubtask = removedTask == null ? subtasksMap.remove(id) : null;
+                    if (removedTask != null) {
+                        removeFromSchedule(removedTask);
+                    } else if (removedSubtask != null) {
+                        removeFromSchedule(removedSubtask);
+                        int epicId = removedSubtask.getSubtasksEpicId();
+                        Map<Integer, Subtask> upserts = upsertsByEpic.get(epicId);
+                        if (upserts != null) {
+                            upserts.remove(id);
+                        }
+                        removedByEpic.computeIfAbsent(epicId, key -> new HashSet<>()).add(id);
+                    } else if (epicsMap.containsKey(id)) {
+                        Epic epic = epicsMap.remove(id);
+                        List<Subtask> epicSubtasks = epic.getSubtasks();
+                        Map<Integer, Subtask> upserts = upsertsByEpic.remove(id);
+                        if (upserts != null) {
+                            // Подзадачи, изменённые в пакете раньше, ещё не перенесены в эпик
+                            epicSubtasks.addAll(upserts.values());
+                        }
+                        removedByEpic.remove(id);
+                        for (Subtask subtask : epicSubtasks) {
+                            removeFromHistory(subtask.getId());
+                            Subtask removed = subtasksMap.remove(subtask.getId());
+                            if (removed != null) {
+                                removeFromSchedule(removed);
+                            }
+                        }
+                        epicLocks.remove(id);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change kind: " + change.getKind());
+            }
+        }
+
+        Set<Integer> touchedEpics = new HashSet<>(upsertsByEpic.keySet());
+        touchedEpics.addAll(removedByEpic.keySet());
+        for (Integer epicId : touchedEpics) {
+            Epic epic = epicsMap.get(epicId);
+            if (epic != null) {
+                synchronized (epicLock(epicId)) {
+                    epic.applySubtaskChanges(upsertsByEpic.getOrDefault(epicId, Map.of()).values(),
+                            removedByEpic.getOrDefault(epicId, Set.of()));
+                }
+            }
+        }
+    }
+
+    private static <T extends Task> List<T> withStatus(Map<Integer, T> storage, Status status) {
+        List<T> result = new ArrayList<>();
+        for (T task : storage.values()) {
+            if (task.getStatus() == status) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    private Map<Integer, ? extends Task> storage(TaskType type) {
+        switch (type) {
+            case EPIC:
+                return epicsMap;
+            case SUBTASK:
+                return subtasksMap;
+            default:
+                return tasksMap;
+        }
+    }
+
+    private <T extends Task> Optional<T> recordView(T task) {
+        if (task == null) {
+            return Optional.empty();
+        }
+        historyManager.add(task);
+        return Optional.of(task);
+    }
+
+    private void removeFromHistory(int id) {
+        historyManager.remove(id);
+    }
+
+    private int nextId() {
+        IdAllocator.Block block = idBlocks.get();
+        if (block == null || !block.hasNext()) {
+            block = idAllocator.reserve(ID_BLOCK_SIZE);
+            idBlocks.set(block);
+        }
+        return block.next();
+    }
+
+    private Object epicLock(int epicId) {
+        return epicLocks.computeIfAbsent(epicId, id -> new Object());
+    }
+
+    /**
+     * Заменяет задачу в расписании; при пересечении возвращает прежнюю и бросает исключение.
+     * Вызывается под блокировкой расписания на запись.
+     */
+    private void replaceInSchedule(Task existing, Task replacement, String conflictMessage) {
+        timeSlots.remove(existing.getId());
+        if (timeSlots.overlaps(replacement)) {
+            timeSlots.add(existing);
+            throw new IllegalArgumentException(conflictMessage);
+        }
+        prioritizedTasks.remove(existing);
+        addToSchedule(replacement);
+    }
+
+    private void addToSchedule(Task task) {
+        prioritizedTasks.add(task);
+        timeSlots.add(task);
+    }
+
+    private void removeFromSchedule(Task task) {
+        prioritizedTasks.remove(task);
+        timeSlots.remove(task.getId());
+    }
+
+    // Вызывается без блокировки расписания: берёт её, только если задача занимает интервал
+    private void unschedule(Task task) {
+        prioritizedTasks.remove(task);
+        if (TimeSlotIndex.isScheduled(task)) {
+            inSchedule(() -> {
+                timeSlots.remove(task.getId());
+                return task;
+            });
+        }
+    }
+
+    private <T> T shared(Supplier<T> action) {
+        Lock lock = structureLock.readLock();
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Монопольный доступ: ни одно другое изменение не выполняется, проверки пересечений ждут
+    private void exclusive(Runnable action) {
+        exclusive(() -> {
+            action.run();
+            return action;
+        });
+    }
+
+    private <T> T exclusive(Supplier<T> action) {
+        Lock lock = structureLock.writeLock();
+        lock.lock();
+        try {
+            return inSchedule(action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T inEpic(int epicId, Supplier<T> action) {
+        return shared(() -> {
+            synchronized (epicLock(epicId)) {
+                return action.get();
+            }
+        });
+    }
+
+    private <T> T inSchedule(Supplier<T> action) {
+        Lock lock = scheduleLock.writeLock();
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package managers;
+
+/**
+ * Уровень надёжности записи журнала FileBackedTaskManager.
+ */
+public enum Durability {
+    /** Запись и fsync в потоке вызывающего при каждом изменении. */
+    IMMEDIATE,
+    /** Изменения копятся в очереди и сбрасываются пачкой с одним fsync раз в заданный интервал. */
+    GROUP_COMMIT,
+    /** Изменения пишутся пачками в фоновом потоке без fsync — сброс на диск остаётся за ОС. */
+    BUFFERED
+}
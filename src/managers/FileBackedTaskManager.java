@@ -1,29 +1,161 @@
 package managers;
 
+import history.InMemoryHistoryManager;
 import status.Status;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+
+public class FileBackedTaskManager extends InMemoryTaskManager implements TaskManager, AutoCloseable {
+    private static final String NULL = "null";
 
-public class FileBackedTaskManager extends InMemoryTaskManager implements TaskManager {
     private final File file;
+    private final TaskJournal journal;
+    private final HistoryLog historyLog;
+    private SnapshotFormat format = SnapshotFormat.TEXT;
+    private MappedSnapshot mapped;
+    private volatile ManagerMetrics metrics = ManagerMetrics.DISABLED;
 
     public FileBackedTaskManager(File file) {
+        this(file, false);
+    }
+
+    public FileBackedTaskManager(File file, SnapshotFormat format) {
+        this(file, false);
+        this.format = format;
+    }
+
+    /**
+     * @param journaled если true, изменения дописываются в журнал "<file>.journal" с fsync каждой записи,
+     *                  а полный снимок файла пересобирается фоновой свёрткой журнала
+     */
+    public FileBackedTaskManager(File file, boolean journaled) {
+        this(file, journaled, TaskJournal.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public FileBackedTaskManager(File file, boolean journaled, int compactionThreshold) {
+        this(file, journaled ? Durability.IMMEDIATE : null, TaskJournal.DEFAULT_GROUP_COMMIT_MILLIS,
+                compactionThreshold);
+    }
+
+    public FileBackedTaskManager(File file, Durability durability) {
+        this(file, durability, TaskJournal.DEFAULT_GROUP_COMMIT_MILLIS, TaskJournal.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param durability        уровень надёжности журнала; null — без журнала, файл перезаписывается целиком
+     * @param groupCommitMillis окно, в течение которого изменения копятся перед общим fsync (GROUP_COMMIT)
+     */
+    public FileBackedTaskManager(File file, Durability durability, long groupCommitMillis, int compactionThreshold) {
         this.file = file;
+        this.journal = durability != null
+                ? new TaskJournal(file, durability, groupCommitMillis, compactionThreshold)
+                : null;
+        this.historyLog = new HistoryLog(HistoryLog.historyPath(file.toPath()),
+                InMemoryHistoryManager.DEFAULT_CAPACITY);
     }
 
     public void save() {
-        try (Writer writer = new FileWriter(file)) {
-            writer.write("Список сохраненных задач:\n");
+        long start = metrics.start();
+        materializeAll();
+        if (journal != null) {
+            journal.quiesce();
+        }
+        if (format == SnapshotFormat.BINARY) {
+            BinarySnapshot.write(file.toPath(), allTasks(), idAllocator.peek(), metrics);
+        } else {
+            saveText();
+            if (metrics.isEnabled()) {
+                metrics.recordPersisted(file.length());
+            }
+        }
+        if (journal != null) {
+            journal.reset();
+        }
+        metrics.record("save", start);
+    }
+
+    /**
+     * Метрики записи на диск: время save(), записанные байты и время fsync снимков и журнала.
+     */
+    public void setMetrics(ManagerMetrics metrics) {
+        this.metrics = metrics;
+        if (journal != null) {
+            journal.setMetrics(metrics);
+        }
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return format;
+    }
+
+    /**
+     * Формат, в котором save() и свёртка журнала пишут снимок.
+     */
+    public void setSnapshotFormat(SnapshotFormat format) {
+        this.format = format;
+        if (journal != null) {
+            journal.setSnapshotFormat(format);
+        }
+    }
+
+    /**
+     * Переписывает снимок в текстовом формате (вместе с его журналом, если он есть) в двоичный формат.
+     */
+    public static void convertToBinary(File textFile, File binaryFile) {
+        TaskJournal.Replay replay = TaskJournal.replay(textFile);
+        List<Task> tasks = new ArrayList<>();
+        for (String line : replay.lines()) {
+            tasks.add(fromString(line));
+        }
+        tasks.sort(Comparator.comparing(TaskType::of));
+        BinarySnapshot.write(binaryFile.toPath(), tasks, replay.nextId());
+    }
+
+    private Iterable<Task> allTasks() {
+        List<Task> tasks = new ArrayList<>(tasksMap.size() + epicsMap.size() + subtasksMap.size());
+        tasks.addAll(tasksMap.values());
+        tasks.addAll(epicsMap.values());
+        tasks.addAll(subtasksMap.values());
+        return tasks;
+    }
+
+    private void saveText() {
+        int maxId = 0;
+        for (Task task : allTasks()) {
+            maxId = Math.max(maxId, task.getId());
+        }
+        // Снимок пишется во временный файл и атомарно подменяет старый: после сбоя остаётся целый снимок
+        Path tmp = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+            writer.write(TaskJournal.header(idAllocator.peek(), maxId) + "\n");
             for (Task task : tasksMap.values()) {
                 writer.write(task.toString() + "\n");
             }
@@ -33,11 +165,55 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
             for (Subtask subtask : subtasksMap.values()) {
                 writer.write(subtask.toString() + "\n");
             }
+            writer.flush();
+            long syncStart = metrics.start();
+            channel.force(true);
+            metrics.recordFsync(syncStart);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при сохранении данных в файл: %s", file.getName()));
+        }
+        try {
+            Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             throw new ManagerSaveException(String.format("Ошибка при сохранении данных в файл: %s", file.getName()));
         }
     }
 
+    /**
+     * Сворачивает журнал в снимок и дожидается окончания свёртки.
+     */
+    public void compact() {
+        if (journal != null) {
+            journal.compact();
+        }
+    }
+
+    /**
+     * Подтверждение надёжности: future завершается, когда все уже сделанные изменения
+     * записаны журналом с выбранным уровнем надёжности, а просмотры — в файл истории.
+     */
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> history = historyLog.flush();
+        return journal != null ? CompletableFuture.allOf(journal.sync(), history) : history;
+    }
+
+    @Override
+    public void close() {
+        historyLog.close();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    // Запись журнала строится, только если журнал есть; без него файл перезаписывается целиком
+    private void persist(Supplier<String> record) {
+        if (journal != null) {
+            journal.append(record.get());
+        } else {
+            save();
+        }
+    }
+
     public static Task fromString(String value) {
         String[] fields = value.split(",");
         TaskType taskType = TaskType.valueOf(fields[1]);
@@ -57,32 +233,28 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
     private static Task parseTask(String[] fields) {
         int id = Integer.parseInt(fields[0]);
         String name = fields[2];
-        Status status = Status.valueOf(fields[3]);
+        Status status = parseStatus(fields[3]);
         String description = fields[4];
-        long durationMinutes = Long.parseLong(fields[5]);
-        Duration duration = Duration.ofMinutes(durationMinutes);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Task.getFormat());
-        LocalDateTime startTime = LocalDateTime.parse(fields[6], formatter);
+        Duration duration = parseDuration(fields[5]);
+        LocalDateTime startTime = parseTime(fields[6]);
         return new Task(name, description, id, status, duration, startTime);
     }
 
     private static Subtask parseSubtask(String[] fields) {
         int id = Integer.parseInt(fields[0]);
         String name = fields[2];
-        Status status = Status.valueOf(fields[3]);
+        Status status = parseStatus(fields[3]);
         String description = fields[4];
         int epicId = Integer.parseInt(fields[5]);
-        long durationMinutes = Long.parseLong(fields[6]);
-        Duration duration = Duration.ofMinutes(durationMinutes);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Task.getFormat());
-        LocalDateTime startTime = LocalDateTime.parse(fields[7], formatter);
+        Duration duration = parseDuration(fields[6]);
+        LocalDateTime startTime = parseTime(fields[7]);
         return new Subtask(id, name, description, status, epicId, duration, startTime);
     }
 
     private static Epic parseEpic(String[] fields) {
         int id = Integer.parseInt(fields[0]);
         String name = fields[2];
-        Status status = Status.valueOf(fields[3]);
+        Status status = parseStatus(fields[3]);
         String description = fields[4];
         Epic epic = new Epic(name, description);
         epic.setId(id);
@@ -90,108 +262,485 @@ public class FileBackedTaskManager extends InMemoryTaskManager implements TaskMa
         return epic;
     }
 
+    // Отсутствующие статус, длительность и время записываются как null
+    private static Status parseStatus(String value) {
+        return NULL.equals(value) ? null : Status.valueOf(value);
+    }
+
+    private static Duration parseDuration(String value) {
+        return NULL.equals(value) ? null : Duration.ofMinutes(Long.parseLong(value));
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        return NULL.equals(value) ? null : LocalDateTime.parse(value, Task.getFormatter());
+    }
+
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
-        try {
-            List<String> lines = Files.readAllLines(file.toPath());
-
-            for (String line : lines.subList(1, lines.size())) {
-                Task task = fromString(line);
-                if (task instanceof Epic) {
-                    manager.addEpic((Epic) task);
-                } else if (!(task instanceof Subtask)) {
-                    manager.addTask(task);
-                }
+        return loadFromFile(file, false);
+    }
+
+    /**
+     * Загружает снимок и дописанные после него записи журнала, если они есть.
+     * Без журнального режима остаток журнала сразу сворачивается в файл.
+     */
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled) {
+        return loadFromFile(file, journaled ? Durability.IMMEDIATE : null);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, Durability durability) {
+        boolean journaled = durability != null;
+        boolean hadJournal = TaskJournal.hasJournal(file);
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, durability);
+        boolean binary = BinarySnapshot.isBinary(file.toPath());
+        if (binary) {
+            manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        }
+
+        // Один проход: каждая строка разбирается один раз, подзадачи, чей эпик ещё не встречался,
+        // откладываются до конца файла, расписание строится один раз после загрузки
+        List<Subtask> orphans = new ArrayList<>();
+        Consumer<Task> sink = task -> {
+            if (task instanceof Subtask && !manager.epicsMap.containsKey(((Subtask) task).getSubtasksEpicId())) {
+                orphans.add((Subtask) task);
+            } else {
+                manager.restore(task);
+            }
+        };
+        manager.beginRestore();
+        int nextId;
+        if (hadJournal) {
+            TaskJournal.Replay replay = TaskJournal.replay(file);
+            for (String line : replay.lines()) {
+                sink.accept(fromString(line));
             }
+            nextId = replay.nextId();
+        } else if (binary) {
+            nextId = BinarySnapshot.read(file.toPath(), sink);
+        } else {
+            nextId = readText(file, line -> sink.accept(fromString(line)));
+        }
+        for (Subtask subtask : orphans) {
+            manager.restoreSubtask(subtask);
+        }
+        manager.finishRestore();
+        // id удалённых до перезапуска задач не выдаются повторно
+        manager.idAllocator.advanceTo(nextId);
+        manager.restoreHistory();
+
+        if (hadJournal && !journaled) {
+            manager.save();
+            TaskJournal.deleteJournal(file);
+        }
+        return manager;
+    }
 
-            for (String line : lines.subList(1, lines.size())) {
-                Task task = fromString(line);
-                if (task instanceof Subtask) {
-                    manager.addSubtask((Subtask) task);
+    // Возвращает границу id из заголовка снимка
+    private static int readText(File file, Consumer<String> consumer) {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            int nextId = TaskJournal.nextIdOf(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    consumer.accept(line);
                 }
             }
-
+            return nextId;
         } catch (IOException e) {
             throw new ManagerSaveException(String.format("Error loading data from file: %s", file.getName()));
         }
+    }
+
+    /**
+     * Отображает двоичный снимок в память и строит только индекс id → смещение.
+     * Задачи создаются при первом обращении через getTask/getEpic/getSubtaskById;
+     * операции над всей доской (списки, добавление, изменение, удаление, сохранение)
+     * один раз загружают оставшиеся записи. Текстовый снимок и снимок с журналом
+     * загружаются обычным способом.
+     */
+    public static FileBackedTaskManager loadMapped(File file) {
+        if (!BinarySnapshot.isBinary(file.toPath()) || TaskJournal.hasJournal(file)) {
+            return loadFromFile(file);
+        }
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        manager.mapped = new MappedSnapshot(file.toPath());
+        manager.reserveId(manager.mapped.maxId());
+        manager.idAllocator.advanceTo(manager.mapped.nextId());
+        manager.restoreHistory();
         return manager;
     }
 
+    // История из файла "<file>.history": просмотры уже удалённых задач пропускаются
+    private void restoreHistory() {
+        for (int id : historyLog.restore()) {
+            if (mapped != null) {
+                materialize(id);
+            }
+            Task task = tasksMap.get(id);
+            if (task == null) {
+                task = epicsMap.get(id);
+            }
+            if (task == null) {
+                task = subtasksMap.get(id);
+            }
+            if (task != null) {
+                restoreView(task);
+            }
+        }
+    }
+
+    // Загружает из отображённого снимка запись с данным id любого типа, если она ещё не загружена
+    private void materialize(int id) {
+        if (tasksMap.containsKey(id) || epicsMap.containsKey(id) || subtasksMap.containsKey(id)) {
+            return;
+        }
+        Task task = mapped.read(id, TaskType.TASK);
+        if (task != null) {
+            restoreTask(task);
+        } else if (mapped.read(id, TaskType.EPIC) != null) {
+            materializeEpic(id);
+        } else {
+            Subtask subtask = (Subtask) mapped.read(id, TaskType.SUBTASK);
+            if (subtask != null) {
+                materializeEpic(subtask.getSubtasksEpicId());
+            }
+        }
+    }
+
+    private void materializeAll() {
+        if (mapped == null) {
+            return;
+        }
+        MappedSnapshot snapshot = mapped;
+        mapped = null;
+        snapshot.forEach(task -> {
+            if (!tasksMap.containsKey(task.getId()) && !epicsMap.containsKey(task.getId())
+                    && !subtasksMap.containsKey(task.getId())) {
+                restore(task);
+            }
+        });
+    }
+
+    private void materializeEpic(int id) {
+        Epic epic = (Epic) mapped.read(id, TaskType.EPIC);
+        if (epic != null) {
+            restoreEpic(epic);
+            mapped.forEachSubtaskOf(id, this::restoreSubtask);
+        }
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        if (mapped != null && !tasksMap.containsKey(id)) {
+            Task task = mapped.read(id, TaskType.TASK);
+            if (task != null) {
+                restoreTask(task);
+            }
+        }
+        return logView(super.getTask(id));
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        if (mapped != null && !epicsMap.containsKey(id)) {
+            materializeEpic(id);
+        }
+        return logView(super.getEpic(id));
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        if (mapped != null && !subtasksMap.containsKey(id)) {
+            Subtask subtask = (Subtask) mapped.read(id, TaskType.SUBTASK);
+            if (subtask != null && !epicsMap.containsKey(subtask.getSubtasksEpicId())) {
+                materializeEpic(subtask.getSubtasksEpicId());
+            }
+        }
+        return logView(super.getSubtaskById(id));
+    }
+
+    // Просмотр попадает в файл истории асинхронно, чтение не ждёт диска
+    private <T extends Task> Optional<T> logView(Optional<T> task) {
+        task.ifPresent(viewed -> historyLog.view(viewed.getId()));
+        return task;
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        materializeAll();
+        return super.getTasks();
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        materializeAll();
+        return super.getEpics();
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        materializeAll();
+        return super.getSubtasks();
+    }
+
+    @Override
+    public ManagerSnapshot getSnapshot() {
+        materializeAll();
+        return super.getSnapshot();
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        materializeAll();
+        return super.getTasksView();
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        materializeAll();
+        return super.getEpicsView();
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        materializeAll();
+        return super.getSubtasksView();
+    }
+
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        materializeAll();
+        return super.getPrioritizedTasksView();
+    }
+
+    @Override
+    public List<Task> getTasks(Status status) {
+        materializeAll();
+        return super.getTasks(status);
+    }
+
+    @Override
+    public List<Epic> getEpics(Status status) {
+        materializeAll();
+        return super.getEpics(status);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(Status status) {
+        materializeAll();
+        return super.getSubtasks(status);
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        materializeAll();
+        return super.count(type, status);
+    }
+
+    @Override
+    public void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        materializeAll();
+        super.forEach(type, status, action);
+    }
+
+    @Override
+    public <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                       ForkJoinPool pool) {
+        materializeAll();
+        return super.query(type, filter, collector, pool);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        materializeAll();
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        materializeAll();
+        return super.getTasksStartingBetween(from, to);
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        materializeAll();
+        return super.getTasksActiveAt(instant);
+    }
+
+    @Override
+    public List<Task> getNextTasks(LocalDateTime time, int limit) {
+        materializeAll();
+        return super.getNextTasks(time, limit);
+    }
+
+    @Override
+    public List<Task> getUnscheduledTasks() {
+        materializeAll();
+        return super.getUnscheduledTasks();
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration) {
+        materializeAll();
+        return super.findFreeSlot(after, duration);
+    }
+
+    @Override
+    public List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after) {
+        materializeAll();
+        return super.packTasks(tasks, after);
+    }
+
+    @Override
+    public boolean isOverlapping(Task newTask) {
+        materializeAll();
+        return super.isOverlapping(newTask);
+    }
+
+    @Override
+    public void applyBatch(List<Change> changes) {
+        materializeAll();
+        super.applyBatch(changes);
+        if (journal == null) {
+            save();
+            return;
+        }
+        List<String> records = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            records.add(change.getKind() == Change.Kind.DELETE
+                    ? TaskJournal.delete(change.getId())
+                    : TaskJournal.put(change.getTask()));
+        }
+        journal.appendAll(records);
+    }
+
+    private void restore(Task task) {
+        if (task instanceof Epic) {
+            restoreEpic((Epic) task);
+        } else if (task instanceof Subtask) {
+            restoreSubtask((Subtask) task);
+        } else {
+            restoreTask(task);
+        }
+    }
+
     @Override
     public Task addTask(Task task) {
+        materializeAll();
         Task newTask = super.addTask(task);
-        save();
+        persist(() -> TaskJournal.put(newTask));
         return newTask;
     }
 
     @Override
     public Epic addEpic(Epic epic) {
+        materializeAll();
         Epic newEpic = super.addEpic(epic);
-        save();
+        persist(() -> TaskJournal.put(newEpic));
         return newEpic;
     }
 
     @Override
     public Subtask addSubtask(Subtask subtask) {
+        materializeAll();
         Subtask newSubtask = super.addSubtask(subtask);
-        save();
+        persist(() -> TaskJournal.put(newSubtask));
         return newSubtask;
     }
 
     @Override
     public Task updateTask(Task task) {
+        materializeAll();
         Task updatedTask = super.updateTask(task);
-        save();
+        if (tasksMap.get(updatedTask.getId()) == updatedTask) {
+            persist(() -> TaskJournal.put(updatedTask));
+        }
         return updatedTask;
     }
 
     @Override
     public Epic updateEpic(Epic epic) {
+        materializeAll();
         Epic updatedEpic = super.updateEpic(epic);
-        save();
+        if (epicsMap.get(updatedEpic.getId()) == updatedEpic) {
+            persist(() -> TaskJournal.put(updatedEpic));
+        }
         return updatedEpic;
     }
 
     @Override
     public Subtask updateSubtask(Subtask subtask) {
+        materializeAll();
         Subtask updatedSubtask = super.updateSubtask(subtask);
-        save();
+        persist(() -> TaskJournal.put(updatedSubtask));
         return updatedSubtask;
     }
 
+    // Запись изменения идёт первой: история не критична и не может его сорвать
     @Override
     public void deleteTask(int id) {
+        materializeAll();
         super.deleteTask(id);
-        save();
+        persist(() -> TaskJournal.delete(id));
+        historyLog.remove(id);
     }
 
     @Override
     public void deleteEpic(int id) {
+        materializeAll();
+        Epic epic = epicsMap.get(id);
+        Collection<Subtask> subtasks = epic != null ? epic.getSubtasksView() : List.of();
         super.deleteEpic(id);
-        save();
+        for (Subtask subtask : subtasks) {
+            if (journal != null) {
+                journal.append(TaskJournal.delete(subtask.getId()));
+            }
+        }
+        persist(() -> TaskJournal.delete(id));
+        for (Subtask subtask : subtasks) {
+            historyLog.remove(subtask.getId());
+        }
+        historyLog.remove(id);
     }
 
     @Override
     public void deleteSubtask(int id) {
+        materializeAll();
         super.deleteSubtask(id);
-        save();
+        persist(() -> TaskJournal.delete(id));
+        historyLog.remove(id);
     }
 
     @Override
     public void clearTasks() {
+        materializeAll();
         super.clearTasks();
-        save();
+        persist(() -> TaskJournal.clear(TaskType.TASK));
+        forgetDeletedViews();
     }
 
     @Override
     public void clearSubtasks() {
+        materializeAll();
         super.clearSubtasks();
-        save();
+        persist(() -> TaskJournal.clear(TaskType.SUBTASK));
+        forgetDeletedViews();
     }
 
     @Override
     public void clearEpics() {
+        materializeAll();
         super.clearEpics();
-        save();
+        if (journal != null) {
+            journal.append(TaskJournal.clear(TaskType.SUBTASK));
+        }
+        persist(() -> TaskJournal.clear(TaskType.EPIC));
+        forgetDeletedViews();
+    }
+
+    // Одно событие истории на всю очистку: обходятся только просмотренные задачи, а не удалённые
+    private void forgetDeletedViews() {
+        historyLog.removeAll(id -> !tasksMap.containsKey(id) && !epicsMap.containsKey(id)
+                && !subtasksMap.containsKey(id));
     }
 }
@@ -0,0 +1,364 @@
+package managers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+/**
+ * Журнал истории просмотров FileBackedTaskManager: файл "<снимок>.history",
+ * по строке на событие — id просмотренной задачи или "-id", если задача удалена из истории.
+ * События попадают в ограниченную очередь и дописываются фоновым потоком пачками, поэтому
+ * чтение и изменение задач не ждут диска; если очередь переполнена, событие отбрасывается.
+ * Удаление пишется только для задач, которые есть в истории, а removeAll() — одно событие,
+ * после которого файл переписывается. Поток ведёт ту же историю в памяти (LRU, не больше
+ * capacity записей) и, когда файл разрастается до compactionThreshold строк, переписывает его этой историей.
+ * <p>
+ * Файл открывается и поток запускается при первом событии. Простояв без событий IDLE_MILLIS,
+ * поток закрывает файл и завершается, а следующее событие запускает новый: менеджеры, которые
+ * забыли закрыть, не держат потоков. Поток не демон, поэтому при выходе из JVM очередь дописывается.
+ * Ошибка записи запоминается: поток останавливается, просмотры и удаления дальше отбрасываются,
+ * а flush() и close() сообщают её, не дожидаясь очереди. История не критична: view() и remove()
+ * не бросают исключений, потерянное удаление безвредно — при загрузке просмотры удалённых задач пропускаются.
+ */
+class HistoryLog implements AutoCloseable {
+    static final int QUEUE_CAPACITY = 4_096;
+    static final long IDLE_MILLIS = 1_000;
+
+    private static final Event STOP = new Event(0, null, null);
+
+    private final Path path;
+    private final int capacity;
+    private final int compactionThreshold;
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Меняется только фоновым потоком; потоки сменяют друг друга под блокировкой HistoryLog
+    private final LinkedHashSet<Integer> recent = new LinkedHashSet<>();
+    // Та же история на стороне менеджера: по ней решается, нужно ли писать удаление
+    private final LinkedHashSet<Integer> viewed = new LinkedHashSet<>();
+    // Новый менеджер начинает историю заново, загруженный — продолжает файл
+    private boolean append;
+    private int lines;
+    private volatile Thread writer;
+    private volatile boolean closed;
+    private volatile ManagerSaveException failure;
+
+    // id > 0 — просмотр, id < 0 — удаление, id == 0 — отметка flush() с ack или удаление пачки removed
+    private record Event(int id, CompletableFuture<Void> ack, List<Integer> removed) {
+    }
+
+    HistoryLog(Path path, int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+        this.compactionThreshold = 4 * capacity;
+    }
+
+    /**
+     * Читает историю из файла перед первой записью; дальнейшие события дописываются к нему.
+     *
+     * @return id просмотренных задач от старых просмотров к новым
+     */
+    List<Integer> restore() {
+        List<Integer> restored = replay(path, capacity);
+        recent.addAll(restored);
+        viewed.addAll(restored);
+        lines = countLines(path);
+        append = true;
+        return restored;
+    }
+
+    static Path historyPath(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".history");
+    }
+
+    void view(int id) {
+        apply(viewed, id, capacity);
+        offer(new Event(id, null, null));
+    }
+
+    void remove(int id) {
+        if (viewed.remove(id)) {
+            offer(new Event(-id, null, null));
+        }
+    }
+
+    /**
+     * Удаляет из истории все задачи, для которых removed истинен: одно событие вместо события на задачу.
+     */
+    void removeAll(IntPredicate removed) {
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> iterator = viewed.iterator(); iterator.hasNext(); ) {
+            int id = iterator.next();
+            if (removed.test(id)) {
+                ids.add(id);
+                iterator.remove();
+            }
+        }
+        if (!ids.isEmpty()) {
+            offer(new Event(0, null, ids));
+        }
+    }
+
+    /**
+     * Future завершается, когда все события, поставленные в очередь до вызова, записаны в файл.
+     */
+    CompletableFuture<Void> flush() {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        if (closed || (writer == null && queue.isEmpty())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        try {
+            enqueue(new Event(0, ack, null));
+        } catch (ManagerSaveException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return ack;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (failure == null && (writer != null || !queue.isEmpty())) {
+            enqueue(STOP);
+        }
+        Thread stopping = writer;
+        if (stopping != null) {
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException("Ожидание записи истории прервано");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static List<Integer> replay(Path path, int capacity) {
+        LinkedHashSet<Integer> recent = new LinkedHashSet<>();
+        if (Files.exists(path)) {
+            try {
+                String content = Files.readString(path, StandardCharsets.UTF_8);
+                // Строка без перевода строки оборвана сбоем и отбрасывается
+                int start = 0;
+                int end = content.indexOf('\n');
+                while (end >= 0) {
+                    if (end > start) {
+                        apply(recent, Integer.parseInt(content.substring(start, end)), capacity);
+                    }
+                    start = end + 1;
+                    end = content.indexOf('\n', start);
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new ManagerSaveException(String.format("Ошибка при загрузке истории из файла: %s",
+                        path.getFileName()));
+            }
+        }
+        return new ArrayList<>(recent);
+    }
+
+    private static void apply(LinkedHashSet<Integer> recent, int event, int capacity) {
+        if (event < 0) {
+            recent.remove(-event);
+            return;
+        }
+        recent.remove(event);
+        recent.add(event);
+        if (recent.size() > capacity) {
+            Iterator<Integer> eldest = recent.iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private void offer(Event event) {
+        if (!closed && failure == null && queue.offer(event)) {
+            start();
+        }
+    }
+
+    private void start() {
+        if (writer == null) {
+            startWriter();
+        }
+    }
+
+    // Событие уже стоит в очереди: либо текущий поток его увидит, либо он завершился и запускается новый
+    private synchronized void startWriter() {
+        if (writer == null && failure == null) {
+            writer = new Thread(this::writeLoop, "history-writer-" + path.getFileName());
+            writer.start();
+        }
+    }
+
+    // Очередь ограничена: ждём места, пока поток записи жив, и сразу сообщаем его ошибку
+    private void enqueue(Event event) {
+        try {
+            while (true) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (queue.offer(event, IDLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                start();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Запись истории прервана");
+        }
+        start();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>();
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        BufferedWriter out = null;
+        try {
+            boolean running = true;
+            while (running) {
+                Event first = queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    closeQuietly(out);
+                    out = null;
+                    if (stopWhenIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                if (out == null) {
+                    out = open();
+                }
+                boolean rewrite = false;
+                for (Event event : batch) {
+                    if (event == STOP) {
+                        running = false;
+                    } else if (event.ack() != null) {
+                        acks.add(event.ack());
+                    } else if (event.removed() != null) {
+                        recent.removeAll(event.removed());
+                        rewrite = true;
+                    } else {
+                        out.write(Integer.toString(event.id()));
+                        out.write('\n');
+                        apply(recent, event.id(), capacity);
+                        lines++;
+                    }
+                }
+                batch.clear();
+                out.flush();
+                if (rewrite || lines >= compactionThreshold) {
+                    out.close();
+                    compact();
+                    out = open();
+                }
+                for (CompletableFuture<Void> ack : acks) {
+                    ack.complete(null);
+                }
+                acks.clear();
+            }
+            synchronized (this) {
+                writer = null;
+            }
+        } catch (IOException e) {
+            fail(new ManagerSaveException(String.format("Ошибка при записи истории: %s", path.getFileName())),
+                    batch, acks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new ManagerSaveException("Запись истории прервана"), batch, acks);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private synchronized boolean stopWhenIdle() {
+        if (queue.isEmpty()) {
+            writer = null;
+            return true;
+        }
+        return false;
+    }
+
+    // Запоминает ошибку и завершает с ней все ожидающие flush(), в том числе ещё стоящие в очереди
+    private void fail(ManagerSaveException error, List<Event> batch, List<CompletableFuture<Void>> acks) {
+        synchronized (this) {
+            failure = error;
+            writer = null;
+        }
+        queue.drainTo(batch);
+        for (Event event : batch) {
+            if (event.ack() != null) {
+                acks.add(event.ack());
+            }
+        }
+        for (CompletableFuture<Void> ack : acks) {
+            ack.completeExceptionally(error);
+        }
+    }
+
+    private BufferedWriter open() throws IOException {
+        StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        append = true;
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+    }
+
+    // Переписывает файл текущей историей: временный файл атомарно подменяет прежний
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<String> content = new ArrayList<>(recent.size());
+        for (int id : recent) {
+            content.add(Integer.toString(id));
+        }
+        Files.write(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lines = content.size();
+    }
+
+    private static void closeQuietly(BufferedWriter out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // история не критична: недописанный хвост отбрасывается при восстановлении
+            }
+        }
+    }
+
+    private static int countLines(Path path) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (var stream = Files.lines(path, StandardCharsets.UTF_8)) {
+            return (int) stream.count();
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при загрузке истории из файла: %s",
+                    path.getFileName()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package managers;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выдаёт id задач одного менеджера без блокировок.
+ * Отдельные id берутся атомарным инкрементом; потоки и пакетные загрузки могут
+ * зарезервировать целый диапазон одним обращением и дальше раздавать его без общих данных.
+ * Значение next — граница выданных id: все выданные id меньше него.
+ */
+public final class IdAllocator {
+    private final AtomicInteger next;
+
+    public IdAllocator() {
+        this(1);
+    }
+
+    public IdAllocator(int next) {
+        this.next = new AtomicInteger(next);
+    }
+
+    public int next() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Резервирует count подряд идущих id.
+     */
+    public Block reserve(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Block size must not be negative: " + count);
+        }
+        int start = next.getAndAdd(count);
+        return new Block(start, start + count);
+    }
+
+    /**
+     * Гарантирует, что следующие выданные id будут не меньше nextId. Значение никогда не уменьшается.
+     */
+    public void advanceTo(int nextId) {
+        next.accumulateAndGet(nextId, Math::max);
+    }
+
+    public int peek() {
+        return next.get();
+    }
+
+    public void reset(int nextId) {
+        next.set(nextId);
+    }
+
+    /**
+     * Зарезервированный диапазон [start, end). Не потокобезопасен: принадлежит одному владельцу.
+     */
+    public static final class Block {
+        private int next;
+        private final int end;
+
+        private Block(int start, int end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        public int next() {
+            if (next >= end) {
+                throw new NoSuchElementException("Id block is exhausted");
+            }
+            return next++;
+        }
+
+        public int remaining() {
+            return end - next;
+        }
+    }
+}
@@ -1,37 +1,79 @@
 package managers;
 
 import history.HistoryManager;
+import status.Status;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Менеджер задач в памяти для одного потока.
+ * Представления get*View() живые и не копируют данные; изменение менеджера во время их обхода
+ * приводит к ConcurrentModificationException.
+ */
 public class InMemoryTaskManager implements TaskManager {
-    private final HistoryManager inMemoryHistoryManager = Managers.getDefaultHistory();
-    private static int nextId = 1;
-    protected final Map<Integer, Task> tasksMap = new HashMap<>();
-    protected final Map<Integer, Epic> epicsMap = new HashMap<>();
-    protected final Map<Integer, Subtask> subtasksMap = new HashMap<>();
-    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime,
-            Comparator.nullsLast(Comparator.naturalOrder())));
+    private final HistoryManager inMemoryHistoryManager;
+    protected final IdAllocator idAllocator = new IdAllocator();
+    protected final IntHashMap<Task> tasksMap = new IntHashMap<>();
+    protected final IntHashMap<Epic> epicsMap = new IntHashMap<>();
+    protected final IntHashMap<Subtask> subtasksMap = new IntHashMap<>();
+    // Порядок расписания: по времени начала (задачи без времени — в конце), затем по id
+    static final Comparator<Task> PRIORITY_ORDER = Comparator.comparing(Task::getStartTime,
+            Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder())).thenComparingInt(Task::getId);
+    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(PRIORITY_ORDER);
+    private final TimeSlotIndex timeSlots = new TimeSlotIndex();
+    private final StatusIndex statusIndex = new StatusIndex();
+    // Рабочие версии хранилищ для снимков: меняются вместе с хранилищами, публикуются в конце операции
+    private PersistentSortedMap<Integer, Task> tasksVersion = PersistentSortedMap.empty(Comparator.naturalOrder());
+    private PersistentSortedMap<Integer, Epic> epicsVersion = PersistentSortedMap.empty(Comparator.naturalOrder());
+    private PersistentSortedMap<Integer, Subtask> subtasksVersion =
+            PersistentSortedMap.empty(Comparator.naturalOrder());
+    private PersistentSortedMap<Task, Task> scheduleVersion = PersistentSortedMap.empty(PRIORITY_ORDER);
+    // Подзадачи каждого эпика для его замороженной копии в снимке
+    private PersistentSortedMap<Integer, PersistentSortedMap<Integer, Subtask>> epicSubtasksVersion =
+            PersistentSortedMap.empty(Comparator.naturalOrder());
+    // Эпики, изменённые операцией: в конце операции в версию кладутся их замороженные копии
+    private final Set<Integer> changedEpics = new HashSet<>();
+    private volatile ManagerSnapshot snapshot = ManagerSnapshot.EMPTY;
+    private List<Task> pendingSchedule;
+
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    /**
+     * @param historyManager история просмотров, например CallerHistories для отдельной истории каждого пользователя
+     */
+    public InMemoryTaskManager(HistoryManager historyManager) {
+        this.inMemoryHistoryManager = historyManager;
+    }
 
     @Override
     public Task addTask(Task task) {
         if (isOverlapping(task)) {
             throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
         }
-        task.setId(nextId);
-        nextId++;
+        task.setId(idAllocator.next());
         tasksMap.put(task.getId(), task);
-        prioritizedTasks.add(task);
+        indexed(task);
+        addToSchedule(task);
+        publish();
         return task;
     }
 
     @Override
     public Epic addEpic(Epic epic) {
-        epic.setId(nextId);
-        nextId++;
+        epic.setId(idAllocator.next());
         epicsMap.put(epic.getId(), epic);
+        indexed(epic);
+        publish();
         return epic;
     }
 
@@ -44,11 +86,13 @@ public class InMemoryTaskManager implements TaskManager {
         if (isOverlapping(subtask)) {
             throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
         }
-        subtask.setId(nextId);
-        nextId++;
+        subtask.setId(idAllocator.next());
         subtasksMap.put(subtask.getId(), subtask);
         epic.addSubtask(subtask);
-        prioritizedTasks.add(subtask);
+        indexed(subtask);
+        indexed(epic);
+        addToSchedule(subtask);
+        publish();
         return subtask;
     }
 
@@ -61,21 +105,23 @@ public class InMemoryTaskManager implements TaskManager {
 
             // Временно удаляем задачу из набора приоритетных задач,
             // чтобы предотвратить конфликт при проверке на пересечение со временем самой себя
-            prioritizedTasks.remove(existingTask);
+            removeFromSchedule(existingTask);
 
             // Проверяем, пересекается ли обновляемая задача по времени с другими задачами
             if (isOverlapping(taskToReplace)) {
                 // Если время пересекается, возвращаем оригинальную задачу в набор приоритетных задач
-                prioritizedTasks.add(existingTask);
+                addToSchedule(existingTask);
                 // Выбрасываем исключение с описанием конфликта времени
                 throw new IllegalArgumentException("Task time conflicts with existing tasks.");
             }
 
             // Если конфликтов нет, обновляем задачу в карте задач
             tasksMap.replace(taskToReplace.getId(), taskToReplace);
+            indexed(taskToReplace);
             // Добавляем обновлённую задачу обратно в набор приоритетных задач
-            prioritizedTasks.add(taskToReplace);
+            addToSchedule(taskToReplace);
         }
+        publish();
         // Возвращаем обновлённую задачу
         return taskToReplace;
     }
@@ -98,18 +144,19 @@ public class InMemoryTaskManager implements TaskManager {
         Subtask existingSubtask = subtasksMap.get(updatingSubtaskId);
 
         // Временно удаляем подзадачу из набора приоритетных задач
-        prioritizedTasks.remove(existingSubtask);
+        removeFromSchedule(existingSubtask);
 
         // Проверяем, пересекается ли обновляемая подзадача по времени с другими задачами
         if (isOverlapping(subtaskToReplace)) {
             // Если пересекается, возвращаем оригинальную подзадачу обратно в набор
-            prioritizedTasks.add(existingSubtask);
+            addToSchedule(existingSubtask);
             // Выбрасываем исключение с описанием конфликта времени
             throw new IllegalArgumentException("Subtask time conflicts with existing tasks.");
         }
 
         // Обновляем подзадачу в карте подзадач
         subtasksMap.replace(updatingSubtaskId, subtaskToReplace);
+        indexed(subtaskToReplace);
 
         // Получаем эпик, к которому принадлежит подзадача
         var epic = epicsMap.get(subtaskToReplace.getSubtasksEpicId());
@@ -117,11 +164,13 @@ public class InMemoryTaskManager implements TaskManager {
         // Если эпик существует, обновляем в нём информацию о подзадаче
         if (epic != null) {
             epic.updateSubtask(subtaskToReplace);
+            indexed(epic);
         }
 
         // Добавляем обновлённую подзадачу обратно в набор приоритетных задач
-        prioritizedTasks.add(subtaskToReplace);
+        addToSchedule(subtaskToReplace);
 
+        publish();
         // Возвращаем обновлённую подзадачу
         return subtaskToReplace;
     }
@@ -132,66 +181,85 @@ public class InMemoryTaskManager implements TaskManager {
     public Epic updateEpic(Epic epicToReplace) {
         Epic existingEpic = epicsMap.get(epicToReplace.getId());
         if (existingEpic != null) {
-            for (Subtask subtask : existingEpic.getSubtasks()) {
-                epicToReplace.addSubtask(subtask);
-            }
+            epicToReplace.applySubtaskChanges(existingEpic.getSubtasksView(), List.of());
             epicsMap.replace(epicToReplace.getId(), epicToReplace);
-            epicToReplace.updateEpicTime();
+            indexed(epicToReplace);
         }
+        publish();
         return epicToReplace;
     }
 
     @Override
     public void clearTasks() {
-        for (Integer taskKey : tasksMap.keySet()) {
-            inMemoryHistoryManager.remove(taskKey);
+        for (Task task : tasksMap.values()) {
+            inMemoryHistoryManager.remove(task.getId());
+            removeFromSchedule(task);
         }
         tasksMap.clear();
+        clearIndexed(TaskType.TASK);
+        publish();
     }
 
     @Override
     public void clearEpics() {
-        for (Integer epicKey : epicsMap.keySet()) {
-            inMemoryHistoryManager.remove(epicKey);
+        for (Epic epic : epicsMap.values()) {
+            inMemoryHistoryManager.remove(epic.getId());
         }
-        for (Integer subtaskKey : subtasksMap.keySet()) {
-            inMemoryHistoryManager.remove(subtaskKey);
+        for (Subtask subtask : subtasksMap.values()) {
+            inMemoryHistoryManager.remove(subtask.getId());
+            removeFromSchedule(subtask);
         }
         for (Epic epic : epicsMap.values()) {
             epic.clear();
         }
         epicsMap.clear();
         subtasksMap.clear();
+        clearIndexed(TaskType.EPIC);
+        clearIndexed(TaskType.SUBTASK);
+        publish();
     }
 
     @Override
     public void clearSubtasks() {
-        for (Integer subtaskKey : subtasksMap.keySet()) {
-            inMemoryHistoryManager.remove(subtaskKey);
+        for (Subtask subtask : subtasksMap.values()) {
+            inMemoryHistoryManager.remove(subtask.getId());
+            removeFromSchedule(subtask);
         }
         subtasksMap.clear();
+        clearIndexed(TaskType.SUBTASK);
         for (Epic epic : epicsMap.values()) {
             epic.clear();
+            indexed(epic);
         }
+        publish();
     }
 
     @Override
     public void deleteTask(int id) {
         inMemoryHistoryManager.remove(id);
-        tasksMap.remove(id);
+        Task task = tasksMap.remove(id);
+        if (task != null) {
+            unindexed(id);
+            removeFromSchedule(task);
+        }
+        publish();
     }
 
     @Override
     public void deleteEpic(int id) {
         Epic epic = epicsMap.get(id);
         if (epic != null) {
-            for (Subtask subtask : epic.getSubtasks()) {
+            for (Subtask subtask : epic.getSubtasksView()) {
                 inMemoryHistoryManager.remove(subtask.getId());
                 subtasksMap.remove(subtask.getId());
+                unindexed(subtask.getId());
+                removeFromSchedule(subtask);
             }
             inMemoryHistoryManager.remove(id);
             epicsMap.remove(id);
+            unindexed(id);
         }
+        publish();
     }
 
     @Override
@@ -199,38 +267,45 @@ public class InMemoryTaskManager implements TaskManager {
         Subtask subtask = subtasksMap.remove(id);
         if (subtask != null) {
             inMemoryHistoryManager.remove(id);
+            unindexed(id);
+            removeFromSchedule(subtask);
             Epic epic = epicsMap.get(subtask.getSubtasksEpicId());
             if (epic != null) {
                 epic.removeSubtask(id);
+                indexed(epic);
             }
         }
+        publish();
     }
 
     @Override
     public Optional<Task> getTask(int id) {
-        Optional<Task> findTask = tasksMap.values().stream()
-                .filter(task -> id == task.getId())
-                .findFirst();
-        findTask.ifPresent(task -> inMemoryHistoryManager.add(task));
-        return findTask;
+        Task task = tasksMap.get(id);
+        if (task == null) {
+            return Optional.empty();
+        }
+        inMemoryHistoryManager.add(task);
+        return Optional.of(task);
     }
 
     @Override
     public Optional<Epic> getEpic(int id) {
-        Optional<Epic> findEpic = epicsMap.values().stream()
-                .filter(epic -> id == epic.getId())
-                .findFirst();
-        findEpic.ifPresent(epic -> inMemoryHistoryManager.add(epic));
-        return findEpic;
+        Epic epic = epicsMap.get(id);
+        if (epic == null) {
+            return Optional.empty();
+        }
+        inMemoryHistoryManager.add(epic);
+        return Optional.of(epic);
     }
 
     @Override
     public Optional<Subtask> getSubtaskById(int id) {
-        Optional<Subtask> findSubtask = subtasksMap.values().stream()
-                .filter(subtask -> subtask.getId() == id)
-                .findFirst();
-        findSubtask.ifPresent(subtask -> inMemoryHistoryManager.add(subtask));
-        return findSubtask;
+        Subtask subtask = subtasksMap.get(id);
+        if (subtask == null) {
+            return Optional.empty();
+        }
+        inMemoryHistoryManager.add(subtask);
+        return Optional.of(subtask);
     }
 
     @Override
@@ -248,6 +323,79 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(subtasksMap.values());
     }
 
+    /**
+     * Последняя опубликованная версия состояния. Получение стоит O(1) и безопасно из любого потока,
+     * пока менеджер изменяет один поток-писатель.
+     */
+    public ManagerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        return Collections.unmodifiableCollection(tasksMap.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        return Collections.unmodifiableCollection(epicsMap.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        return Collections.unmodifiableCollection(subtasksMap.values());
+    }
+
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        return Collections.unmodifiableSortedSet(prioritizedTasks);
+    }
+
+    @Override
+    public List<Task> getTasks(Status status) {
+        return statusIndex.list(TaskType.TASK, status);
+    }
+
+    @Override
+    public List<Epic> getEpics(Status status) {
+        return statusIndex.list(TaskType.EPIC, status);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(Status status) {
+        return statusIndex.list(TaskType.SUBTASK, status);
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        return statusIndex.count(type, status);
+    }
+
+    @Override
+    public void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        statusIndex.forEach(type, status, action);
+    }
+
+    /**
+     * Делит внутренние массивы хеш-таблицы задач данного типа без копирования.
+     */
+    @Override
+    public <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                       ForkJoinPool pool) {
+        Collection<? extends Task> tasks;
+        switch (type) {
+            case EPIC:
+                tasks = epicsMap.values();
+                break;
+            case SUBTASK:
+                tasks = subtasksMap.values();
+                break;
+            default:
+                tasks = tasksMap.values();
+        }
+        return ParallelQuery.collect(tasks.spliterator(), filter, collector, pool);
+    }
+
     @Override
     public List<Subtask> getSubtasksOfEpic(Epic epic) {
         return epic.getSubtasks();
@@ -258,27 +406,444 @@ public class InMemoryTaskManager implements TaskManager {
         return inMemoryHistoryManager.getHistory();
     }
 
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return inMemoryHistoryManager.getHistory(offset, limit);
+    }
+
+    @Override
+    public int getHistorySize() {
+        return inMemoryHistoryManager.getHistorySize();
+    }
+
     @Override
     public List<Task> getPrioritizedTasks() {
         return new ArrayList<>(prioritizedTasks);
     }
 
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return startingBetween(prioritizedTasks, from, to);
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        return activeAt(timeSlots, instant);
+    }
+
+    @Override
+    public List<Task> getNextTasks(LocalDateTime time, int limit) {
+        return nextTasks(prioritizedTasks, time, limit);
+    }
+
+    @Override
+    public List<Task> getUnscheduledTasks() {
+        return new ArrayList<>(prioritizedTasks.tailSet(probe(null), true));
+    }
+
+    // Запросы по расписанию, общие с ConcurrentTaskManager: schedule упорядочено по PRIORITY_ORDER,
+    // границы диапазона задаются пробной задачей с наименьшим id
+    static List<Task> startingBetween(NavigableSet<Task> schedule, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid time range: [%s, %s)".formatted(from, to));
+        }
+        return new ArrayList<>(schedule.subSet(probe(from), true, probe(to), false));
+    }
+
+    static List<Task> activeAt(TimeSlots timeSlots, LocalDateTime instant) {
+        if (instant == null) {
+            throw new IllegalArgumentException("Instant must not be null");
+        }
+        // Задачи с длительностью в расписании не пересекаются, поэтому активна не больше чем одна
+        Task active = timeSlots.activeAt(instant);
+        return active != null ? List.of(active) : List.of();
+    }
+
+    static List<Task> nextTasks(NavigableSet<Task> schedule, LocalDateTime time, int limit) {
+        if (time == null || limit < 0) {
+            throw new IllegalArgumentException("Invalid query: time=%s, limit=%d".formatted(time, limit));
+        }
+        List<Task> next = new ArrayList<>(Math.min(limit, 16));
+        for (Task task : schedule.subSet(probe(time), true, probe(null), false)) {
+            if (next.size() == limit) {
+                break;
+            }
+            next.add(task);
+        }
+        return next;
+    }
+
+    static Task probe(LocalDateTime startTime) {
+        return new Task(Integer.MIN_VALUE, "", "", null, null, startTime);
+    }
+
+    @Override
+    public void applyBatch(List<Change> changes) {
+        BatchValidation.validate(changes, tasksMap::get, epicsMap::get, subtasksMap::get, timeSlots);
+
+        int additions = 0;
+        for (Change change : changes) {
+            if (change.getKind() == Change.Kind.ADD) {
+                additions++;
+            }
+        }
+        // id для всех добавлений пакета резервируются одним обращением к счётчику
+        IdAllocator.Block ids = idAllocator.reserve(additions);
+
+        Map<Integer, EpicDelta> epicDeltas = new HashMap<>();
+        for (Change change : changes) {
+            Task task = change.getTask();
+            switch (change.getKind()) {
+                case ADD:
+                    task.setId(ids.next());
+                    indexed(task);
+                    if (task instanceof Epic) {
+                        epicsMap.put(task.getId(), (Epic) task);
+                    } else if (task instanceof Subtask) {
+                        Subtask subtask = (Subtask) task;
+                        subtasksMap.put(subtask.getId(), subtask);
+                        addToSchedule(subtask);
+                        epicDeltas.computeIfAbsent(subtask.getSubtasksEpicId(), id -> new EpicDelta()).upsert(subtask);
+                    } else {
+                        tasksMap.put(task.getId(), task);
+                        addToSchedule(task);
+                    }
+                    break;
+                case UPDATE:
+                    if (task instanceof Epic) {
+                        Epic epic = (Epic) task;
+                        epic.applySubtaskChanges(epicsMap.get(epic.getId()).getSubtasksView(), List.of());
+                        epicsMap.replace(epic.getId(), epic);
+                        indexed(epic);
+                    } else if (task instanceof Subtask) {
+                        Subtask subtask = (Subtask) task;
+                        removeFromSchedule(subtasksMap.get(subtask.getId()));
+                        subtasksMap.replace(subtask.getId(), subtask);
+                        indexed(subtask);
+                        addToSchedule(subtask);
+                        epicDeltas.computeIfAbsent(subtask.getSubtasksEpicId(), id -> new EpicDelta()).upsert(subtask);
+                    } else {
+                        removeFromSchedule(tasksMap.get(task.getId()));
+                        tasksMap.replace(task.getId(), task);
+                        indexed(task);
+                        addToSchedule(task);
+                    }
+                    break;
+                case DELETE:
+                    int id = change.getId();
+                    inMemoryHistoryManager.remove(id);
+                    unindexed(id);
+                    if (tasksMap.containsKey(id)) {
+                        removeFromSchedule(tasksMap.remove(id));
+                    } else if (subtasksMap.containsKey(id)) {
+                        Subtask subtask = subtasksMap.remove(id);
+                        removeFromSchedule(subtask);
+                        epicDeltas.computeIfAbsent(subtask.getSubtasksEpicId(), epicId -> new EpicDelta()).remove(id);
+                    } else if (epicsMap.containsKey(id)) {
+                        Epic epic = epicsMap.remove(id);
+                        List<Subtask> epicSubtasks = epic.getSubtasks();
+                        EpicDelta delta = epicDeltas.remove(id);
+                        if (delta != null) {
+                            // Подзадачи, изменённые в пакете раньше, ещё не перенесены в эпик
+                            epicSubtasks.addAll(delta.upserts.values());
+                        }
+                        for (Subtask subtask : epicSubtasks) {
+                            inMemoryHistoryManager.remove(subtask.getId());
+                            unindexed(subtask.getId());
+                            Subtask removed = subtasksMap.remove(subtask.getId());
+                            if (removed != null) {
+                                removeFromSchedule(removed);
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change kind: " + change.getKind());
+            }
+        }
+
+        for (Map.Entry<Integer, EpicDelta> entry : epicDeltas.entrySet()) {
+            Epic epic = epicsMap.get(entry.getKey());
+            if (epic != null) {
+                epic.applySubtaskChanges(entry.getValue().upserts.values(), entry.getValue().removed);
+                indexed(epic);
+            }
+        }
+        publish();
+    }
+
+    // Накопленные изменения подзадач одного эпика, применяемые к нему один раз в конце пакета
+    private static class EpicDelta {
+        final Map<Integer, Subtask> upserts = new LinkedHashMap<>();
+        final Set<Integer> removed = new HashSet<>();
+
+        void upsert(Subtask subtask) {
+            upserts.put(subtask.getId(), subtask);
+        }
+
+        void remove(int id) {
+            upserts.remove(id);
+            removed.add(id);
+        }
+    }
+
     public void resetIdCounter() {
-        InMemoryTaskManager.nextId = 1;
+        idAllocator.reset(1);
     }
 
 
     public void setNextId(int nextId) {
-        InMemoryTaskManager.nextId = nextId;
+        idAllocator.reset(nextId);
+    }
+
+    /**
+     * Восстановление сохранённых задач: id сохраняются; снимок с пересекающимися задачами
+     * отклоняется так же, как addTask.
+     */
+    protected void restoreTask(Task task) {
+        requireRestorable(task);
+        tasksMap.put(task.getId(), task);
+        indexed(task);
+        scheduleRestored(task);
+        reserveId(task.getId());
+        publish();
+    }
+
+    protected void restoreEpic(Epic epic) {
+        epicsMap.put(epic.getId(), epic);
+        indexed(epic);
+        reserveId(epic.getId());
+        publish();
+    }
+
+    protected void restoreSubtask(Subtask subtask) {
+        Epic epic = epicsMap.get(subtask.getSubtasksEpicId());
+        if (epic == null) {
+            throw new IllegalArgumentException("Эпик с ID " + subtask.getSubtasksEpicId() + " не найден.");
+        }
+        requireRestorable(subtask);
+        subtasksMap.put(subtask.getId(), subtask);
+        epic.addSubtask(subtask);
+        indexed(subtask);
+        indexed(epic);
+        scheduleRestored(subtask);
+        reserveId(subtask.getId());
+        publish();
     }
 
-    private boolean isOverlapping(Task newTask) {
-        return prioritizedTasks.stream()
-                .anyMatch(existingTask ->
-                        existingTask.getStartTime() != null &&
-                                existingTask.getEndTime() != null &&
-                                !(existingTask.getEndTime().isBefore(newTask.getStartTime()) ||
-                                        existingTask.getStartTime().isAfter(newTask.getEndTime()))
-                );
+    /**
+     * Восстановление сохранённой истории: задача добавляется в историю как просмотренная.
+     */
+    protected void restoreView(Task task) {
+        inMemoryHistoryManager.add(task);
+    }
+
+    /**
+     * Массовое восстановление: до finishRestore() задачи не попадают в расписание,
+     * а затем добавляются в него одним проходом в отсортированном порядке.
+     */
+    protected void beginRestore() {
+        pendingSchedule = new ArrayList<>();
+    }
+
+    protected void finishRestore() {
+        List<Task> scheduled = pendingSchedule;
+        pendingSchedule = null;
+        scheduled.sort(prioritizedTasks.comparator());
+        for (Task task : scheduled) {
+            if (timeSlots.overlaps(task)) {
+                throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+            }
+            addToSchedule(task);
+        }
+        publish();
+    }
+
+    // Вне массового восстановления пересечение проверяется до записи задачи; при массовом — в finishRestore()
+    private void requireRestorable(Task task) {
+        if (pendingSchedule == null && timeSlots.overlaps(task)) {
+            throw new IllegalArgumentException("Задачи пересекаются по времени выполнения.");
+        }
+    }
+
+    private void scheduleRestored(Task task) {
+        if (pendingSchedule != null) {
+            pendingSchedule.add(task);
+        } else {
+            addToSchedule(task);
+        }
+    }
+
+    protected void reserveId(int id) {
+        idAllocator.advanceTo(id + 1);
+    }
+
+    @Override
+    public boolean isOverlapping(Task newTask) {
+        return timeSlots.overlaps(newTask);
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration) {
+        return timeSlots.findGap(after, duration);
+    }
+
+    @Override
+    public Task addToFirstFreeSlot(Task task, LocalDateTime after) {
+        requirePlaceable(task);
+        Task copy = withStartTime(task, findFreeSlot(after, task.getDuration()));
+        Task added = copy instanceof Subtask ? addSubtask((Subtask) copy) : addTask(copy);
+        placed(task, added);
+        return added;
+    }
+
+    @Override
+    public List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after) {
+        List<Change> changes = pack(timeSlots, tasks, after);
+        applyBatch(changes);
+        return placed(tasks, changes);
+    }
+
+    /**
+     * Назначает задачам время начала подряд по свободным окнам: поиск каждого следующего окна
+     * начинается с окончания предыдущей задачи, поэтому расписание обходится один раз.
+     * Время записывается в копии задач, объекты вызывающего не меняются.
+     */
+    static List<Change> pack(TimeSlots timeSlots, List<? extends Task> tasks, LocalDateTime after) {
+        List<Change> changes = new ArrayList<>(tasks.size());
+        LocalDateTime cursor = after;
+        for (Task task : tasks) {
+            requirePlaceable(task);
+            Task copy = withStartTime(task, timeSlots.findGap(cursor, task.getDuration()));
+            cursor = copy.getEndTime();
+            changes.add(Change.add(copy));
+        }
+        return changes;
+    }
+
+    /**
+     * Копия задачи или подзадачи с другим временем начала.
+     */
+    static Task withStartTime(Task task, LocalDateTime startTime) {
+        if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            return new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(), subtask.getStatus(),
+                    subtask.getSubtasksEpicId(), subtask.getDuration(), startTime);
+        }
+        return new Task(task.getId(), task.getName(), task.getDescription(), task.getStatus(), task.getDuration(),
+                startTime);
+    }
+
+    // Задача добавлена: вызывающий получает её id и назначенное время начала
+    static void placed(Task task, Task added) {
+        task.setId(added.getId());
+        task.setStartTime(added.getStartTime());
+    }
+
+    // Пакет из pack принят: задачи вызывающего получают id и время начала добавленных копий
+    static List<Task> placed(List<? extends Task> tasks, List<Change> changes) {
+        List<Task> added = new ArrayList<>(changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            Task copy = changes.get(i).getTask();
+            placed(tasks.get(i), copy);
+            added.add(copy);
+        }
+        return added;
+    }
+
+    static void requirePlaceable(Task task) {
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика вычисляется по его подзадачам.");
+        }
+    }
+
+    private void addToSchedule(Task task) {
+        prioritizedTasks.add(task);
+        timeSlots.add(task);
+        scheduleVersion = scheduleVersion.put(task, task);
+    }
+
+    private void removeFromSchedule(Task task) {
+        prioritizedTasks.remove(task);
+        timeSlots.remove(task.getId());
+        scheduleVersion = scheduleVersion.remove(task);
+    }
+
+    // Задача добавлена, заменена или сменила статус
+    private void indexed(Task task) {
+        statusIndex.put(task);
+        switch (TaskType.of(task)) {
+            case EPIC:
+                changedEpics.add(task.getId());
+                break;
+            case SUBTASK:
+                Subtask subtask = (Subtask) task;
+                subtasksVersion = subtasksVersion.put(subtask.getId(), subtask);
+                putEpicSubtask(subtask);
+                break;
+            default:
+                tasksVersion = tasksVersion.put(task.getId(), task);
+        }
+    }
+
+    private void unindexed(int id) {
+        statusIndex.remove(id);
+        tasksVersion = tasksVersion.remove(id);
+        epicsVersion = epicsVersion.remove(id);
+        epicSubtasksVersion = epicSubtasksVersion.remove(id);
+        Subtask subtask = subtasksVersion.get(id);
+        if (subtask != null) {
+            subtasksVersion = subtasksVersion.remove(id);
+            // Подзадачи удалённого эпика уже убраны вместе с ним
+            PersistentSortedMap<Integer, Subtask> subtasks = epicSubtasksVersion.get(subtask.getSubtasksEpicId());
+            if (subtasks != null) {
+                epicSubtasksVersion = epicSubtasksVersion.put(subtask.getSubtasksEpicId(), subtasks.remove(id));
+                changedEpics.add(subtask.getSubtasksEpicId());
+            }
+        }
+    }
+
+    private void clearIndexed(TaskType type) {
+        statusIndex.clear(type);
+        switch (type) {
+            case EPIC:
+                epicsVersion = epicsVersion.clear();
+                epicSubtasksVersion = epicSubtasksVersion.clear();
+                changedEpics.clear();
+                break;
+            case SUBTASK:
+                subtasksVersion = subtasksVersion.clear();
+                epicSubtasksVersion = epicSubtasksVersion.clear();
+                for (Epic epic : epicsMap.values()) {
+                    changedEpics.add(epic.getId());
+                }
+                break;
+            default:
+                tasksVersion = tasksVersion.clear();
+        }
+    }
+
+    private void putEpicSubtask(Subtask subtask) {
+        PersistentSortedMap<Integer, Subtask> subtasks = epicSubtasksVersion.get(subtask.getSubtasksEpicId());
+        if (subtasks == null) {
+            subtasks = PersistentSortedMap.empty(Comparator.naturalOrder());
+        }
+        epicSubtasksVersion = epicSubtasksVersion.put(subtask.getSubtasksEpicId(),
+                subtasks.put(subtask.getId(), subtask));
+        changedEpics.add(subtask.getSubtasksEpicId());
+    }
+
+    // Публикует изменения операции одной новой версией, чтобы читатели не видели промежуточных состояний.
+    // Эпики меняются на месте, поэтому в версию попадают их замороженные копии: O(1) на изменённый эпик
+    private void publish() {
+        for (int epicId : changedEpics) {
+            Epic epic = epicsMap.get(epicId);
+            if (epic != null) {
+                PersistentSortedMap<Integer, Subtask> subtasks = epicSubtasksVersion.get(epicId);
+                epicsVersion = epicsVersion.put(epicId, epic.frozen(subtasks != null ? subtasks.values() : List.of()));
+            }
+        }
+        changedEpics.clear();
+        snapshot = snapshot.with(tasksVersion, epicsVersion, subtasksVersion, scheduleVersion);
     }
 }
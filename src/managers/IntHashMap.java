@@ -0,0 +1,264 @@
+package managers;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Хеш-таблица с ключами типа int без упаковки в Integer.
+ * Открытая адресация с линейным пробированием; удаление сдвигает цепочку назад, поэтому
+ * "надгробий" нет. Ключ перемешивается перед выбором ячейки, поэтому порядок обхода
+ * не совпадает с порядком ключей.
+ */
+public class IntHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int modCount;
+
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return values[indexOf(key)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[indexOf(key)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntHashMap не хранит null-значения");
+        }
+        int index = indexOf(key);
+        V previous = (V) values[index];
+        if (previous == null) {
+            if ((size + 1) > values.length * 3 / 4) {
+                resize();
+                index = indexOf(key);
+            }
+            keys[index] = key;
+            size++;
+            modCount++;
+        }
+        values[index] = value;
+        return previous;
+    }
+
+    public V replace(int key, V value) {
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int index = indexOf(key);
+        V previous = (V) values[index];
+        if (previous == null) {
+            return null;
+        }
+        values[index] = null;
+        size--;
+        modCount++;
+        shiftBack(index);
+        return previous;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                return new ValueSpliterator(values, 0, values.length);
+            }
+        };
+    }
+
+    private int indexOf(int key) {
+        int mask = values.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    // Последовательные id перемешиваются: иначе новые id ложатся на серию занятых ячеек живых младших id,
+    // и поиск проходит её целиком
+    private static int mix(int key) {
+        int mixed = key * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    // Сдвигает назад элементы цепочки, идущие за освободившейся ячейкой
+    private void shiftBack(int freed) {
+        int mask = values.length - 1;
+        int index = (freed + 1) & mask;
+        while (values[index] != null) {
+            int home = mix(keys[index]) & mask;
+            boolean reachable = freed <= index ? (home <= freed || home > index) : (home <= freed && home > index);
+            if (reachable) {
+                keys[freed] = keys[index];
+                values[freed] = values[index];
+                values[index] = null;
+                freed = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length << 1];
+        values = new Object[oldValues.length << 1];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private final int expectedModCount = modCount;
+        private int index = advance(0);
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (index >= values.length) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) values[index];
+            index = advance(index + 1);
+            return value;
+        }
+    }
+
+    // Делится пополам по диапазону ячеек таблицы, поэтому значения обходятся параллельно без копирования
+    private class ValueSpliterator implements Spliterator<V> {
+        private final Object[] table;
+        private final int expectedModCount = modCount;
+        private final int fence;
+        private int index;
+
+        ValueSpliterator(Object[] table, int index, int fence) {
+            this.table = table;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (index < fence) {
+                Object value = table[index++];
+                if (value != null) {
+                    action.accept((V) value);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            for (; index < fence; index++) {
+                if (table[index] != null) {
+                    action.accept((V) table[index]);
+                }
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            ValueSpliterator prefix = new ValueSpliterator(table, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) (fence - index) * size / table.length;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package managers;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Упорядоченное множество long без упаковки: ключи лежат в отсортированных блоках
+ * до BLOCK элементов, блоки упорядочены между собой. Поиск — два бинарных поиска,
+ * вставка и удаление сдвигают не больше одного блока; на миллион ключей приходится
+ * около двух тысяч массивов вместо миллиона узлов TreeSet.
+ * Long.MIN_VALUE зарезервирован как NONE — «ключа нет» в ответах floor/higher.
+ */
+final class LongSortedSet {
+    static final long NONE = Long.MIN_VALUE;
+    private static final int BLOCK = 512;
+
+    private long[][] blocks = {new long[BLOCK]};
+    private int[] sizes = new int[1];
+    private int blockCount = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean add(long key) {
+        if (key == NONE) {
+            throw new IllegalArgumentException("Key is reserved: " + key);
+        }
+        int block = blockOf(key);
+        int position = Arrays.binarySearch(blocks[block], 0, sizes[block], key);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (sizes[block] == BLOCK) {
+            // Ключи, растущие по порядку (новые id, время позже всех), заполняют блоки целиком:
+            // за концом полного блока начинается новый, а не делится старый
+            int moved = position == BLOCK ? 0 : BLOCK / 2;
+            split(block, moved);
+            if (moved == 0 || position > BLOCK - moved) {
+                block++;
+                position -= BLOCK - moved;
+            }
+        }
+        long[] keys = blocks[block];
+        System.arraycopy(keys, position, keys, position + 1, sizes[block] - position);
+        keys[position] = key;
+        sizes[block]++;
+        size++;
+        return true;
+    }
+
+    boolean remove(long key) {
+        int block = blockOf(key);
+        long[] keys = blocks[block];
+        int position = Arrays.binarySearch(keys, 0, sizes[block], key);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(keys, position + 1, keys, position, sizes[block] - position - 1);
+        sizes[block]--;
+        size--;
+        if (sizes[block] == 0 && blockCount > 1) {
+            removeBlock(block);
+        }
+        return true;
+    }
+
+    void clear() {
+        blocks = new long[][]{new long[BLOCK]};
+        sizes = new int[1];
+        blockCount = 1;
+        size = 0;
+    }
+
+    /**
+     * Наибольший ключ <= key или NONE.
+     */
+    long floor(long key) {
+        int block = blockOf(key);
+        int position = Arrays.binarySearch(blocks[block], 0, sizes[block], key);
+        if (position >= 0) {
+            return key;
+        }
+        position = -position - 2;
+        return position >= 0 ? blocks[block][position] : NONE;
+    }
+
+    /**
+     * Наименьший ключ > key или NONE.
+     */
+    long higher(long key) {
+        int block = blockOf(key);
+        int position = upperBound(block, key);
+        if (position < sizes[block]) {
+            return blocks[block][position];
+        }
+        return block + 1 < blockCount ? blocks[block + 1][0] : NONE;
+    }
+
+    /**
+     * Обходит ключи >= from по возрастанию, пока action возвращает true.
+     * Изменять множество во время обхода нельзя.
+     */
+    void forEachFrom(long from, LongPredicate action) {
+        int block = blockOf(from);
+        int position = Arrays.binarySearch(blocks[block], 0, sizes[block], from);
+        position = position >= 0 ? position : -position - 1;
+        for (; block < blockCount; block++, position = 0) {
+            long[] keys = blocks[block];
+            for (int i = position; i < sizes[block]; i++) {
+                if (!action.test(keys[i])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void forEach(LongPredicate action) {
+        forEachFrom(NONE, action);
+    }
+
+    // Последний блок, первый ключ которого <= key; для ключей меньше всех — первый блок
+    private int blockOf(long key) {
+        int low = 1;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blocks[middle][0] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    private int upperBound(int block, long key) {
+        int position = Arrays.binarySearch(blocks[block], 0, sizes[block], key);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    // Переносит последние moved ключей блока в новый блок сразу за ним
+    private void split(int block, int moved) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            sizes = Arrays.copyOf(sizes, blockCount * 2);
+        }
+        System.arraycopy(blocks, block + 1, blocks, block + 2, blockCount - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block + 2, blockCount - block - 1);
+        long[] upper = new long[BLOCK];
+        System.arraycopy(blocks[block], BLOCK - moved, upper, 0, moved);
+        blocks[block + 1] = upper;
+        sizes[block + 1] = moved;
+        sizes[block] = BLOCK - moved;
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block, blockCount - block - 1);
+        blockCount--;
+        blocks[blockCount] = null;
+    }
+}
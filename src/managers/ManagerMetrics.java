@@ -0,0 +1,193 @@
+package managers;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики менеджера задач: число вызовов и гистограмма задержек каждой операции,
+ * объём записанных на диск данных, время fsync и текущие размеры хранилищ.
+ * Метрики собираются, пока включены; выключенные стоят одну проверку volatile-флага на вызов.
+ * Читаются через snapshot() или JMX после registerMBean().
+ */
+public final class ManagerMetrics {
+    /**
+     * Метрики, которые никогда не собираются: значение по умолчанию для компонентов без метрик.
+     */
+    static final ManagerMetrics DISABLED = new ManagerMetrics(false);
+
+    private final ConcurrentHashMap<String, LatencyHistogram> operations = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final LatencyHistogram fsync = new LatencyHistogram();
+    private final LongAdder persistedBytes = new LongAdder();
+    private volatile boolean enabled;
+
+    /**
+     * Статистика одной операции; времена в наносекундах, перцентили — с точностью около 3%.
+     */
+    public record OperationStats(long count, double mean, long p50, long p90, long p99, long max) {
+        static OperationStats of(LatencyHistogram histogram) {
+            return new OperationStats(histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                    histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax());
+        }
+    }
+
+    /**
+     * Снимок всех метрик на момент вызова snapshot().
+     */
+    public record Snapshot(Map<String, OperationStats> operations, long persistedBytes, OperationStats fsync,
+                           Map<String, Long> gauges) {
+    }
+
+    public ManagerMetrics() {
+        this(true);
+    }
+
+    public ManagerMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Время начала операции для record(); 0, если метрики выключены.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(String operation, long start) {
+        if (start != 0 && enabled) {
+            operations.computeIfAbsent(operation, name -> new LatencyHistogram()).record(System.nanoTime() - start);
+        }
+    }
+
+    public void recordPersisted(long bytes) {
+        if (enabled) {
+            persistedBytes.add(bytes);
+        }
+    }
+
+    public void recordFsync(long start) {
+        if (start != 0 && enabled) {
+            fsync.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Показатель, который вычисляется при чтении метрик, например размер хранилища.
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public Snapshot snapshot() {
+        Map<String, OperationStats> stats = new TreeMap<>();
+        operations.forEach((name, histogram) -> stats.put(name, OperationStats.of(histogram)));
+        Map<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return new Snapshot(Collections.unmodifiableMap(stats), persistedBytes.sum(), OperationStats.of(fsync),
+                Collections.unmodifiableMap(values));
+    }
+
+    /**
+     * Регистрирует метрики в платформенном MBeanServer под именем
+     * "java-kanban:type=TaskManager,name=<name>".
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = ObjectName.getInstance("java-kanban:type=TaskManager,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), objectName);
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("Metrics are already registered: " + name);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("Invalid metrics name: " + name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics registration failed: " + name, e);
+        }
+    }
+
+    /**
+     * Атрибуты JMX: словари "операция → значение" и суммарные показатели ввода-вывода.
+     */
+    public interface ManagerMetricsMXBean {
+        Map<String, Long> getOperationCounts();
+
+        Map<String, Long> getOperationP99Nanos();
+
+        Map<String, Long> getGauges();
+
+        long getPersistedBytes();
+
+        long getFsyncCount();
+
+        long getFsyncP99Nanos();
+
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+    }
+
+    private final class MetricsBean implements ManagerMetricsMXBean {
+        @Override
+        public Map<String, Long> getOperationCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            snapshot().operations().forEach((name, stats) -> counts.put(name, stats.count()));
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getOperationP99Nanos() {
+            Map<String, Long> p99 = new LinkedHashMap<>();
+            snapshot().operations().forEach((name, stats) -> p99.put(name, stats.p99()));
+            return p99;
+        }
+
+        @Override
+        public Map<String, Long> getGauges() {
+            return snapshot().gauges();
+        }
+
+        @Override
+        public long getPersistedBytes() {
+            return persistedBytes.sum();
+        }
+
+        @Override
+        public long getFsyncCount() {
+            return fsync.getCount();
+        }
+
+        @Override
+        public long getFsyncP99Nanos() {
+            return fsync.getPercentile(99);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(boolean value) {
+            enabled = value;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package managers;
+
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * Неизменяемая версия состояния менеджера: задачи, эпики, подзадачи и расписание на один момент.
+ * Менеджер публикует новую версию после каждой изменяющей операции, а старые версии не меняются,
+ * поэтому читатель из любого потока получает согласованное состояние за O(1) и обходит его без блокировок.
+ * Версии делят узлы PersistentSortedMap, так что изменение стоит писателю O(log n).
+ * <p>
+ * Задачи и подзадачи менеджер не меняет на месте, а заменяет, поэтому они входят в версию как есть.
+ * Эпик меняется на месте при изменении подзадач, поэтому в версии лежит его замороженная копия
+ * (Epic.frozen): статус, время и подзадачи эпика на момент версии; изменить её нельзя.
+ */
+public final class ManagerSnapshot {
+    static final ManagerSnapshot EMPTY = new ManagerSnapshot(0,
+            PersistentSortedMap.empty(Comparator.naturalOrder()),
+            PersistentSortedMap.empty(Comparator.naturalOrder()),
+            PersistentSortedMap.empty(Comparator.naturalOrder()),
+            PersistentSortedMap.empty(InMemoryTaskManager.PRIORITY_ORDER));
+
+    private final long version;
+    private final PersistentSortedMap<Integer, Task> tasks;
+    private final PersistentSortedMap<Integer, Epic> epics;
+    private final PersistentSortedMap<Integer, Subtask> subtasks;
+    private final PersistentSortedMap<Task, Task> schedule;
+
+    ManagerSnapshot(long version, PersistentSortedMap<Integer, Task> tasks, PersistentSortedMap<Integer, Epic> epics,
+                    PersistentSortedMap<Integer, Subtask> subtasks, PersistentSortedMap<Task, Task> schedule) {
+        this.version = version;
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        this.schedule = schedule;
+    }
+
+    /**
+     * Номер версии: растёт с каждой опубликованной изменяющей операцией.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Optional<Task> getTask(int id) {
+        return Optional.ofNullable(tasks.get(id));
+    }
+
+    public Optional<Epic> getEpic(int id) {
+        return Optional.ofNullable(epics.get(id));
+    }
+
+    public Optional<Subtask> getSubtask(int id) {
+        return Optional.ofNullable(subtasks.get(id));
+    }
+
+    /**
+     * Задачи по возрастанию id.
+     */
+    public Collection<Task> getTasks() {
+        return tasks.values();
+    }
+
+    public Collection<Epic> getEpics() {
+        return epics.values();
+    }
+
+    public Collection<Subtask> getSubtasks() {
+        return subtasks.values();
+    }
+
+    /**
+     * Расписание в порядке getPrioritizedTasks().
+     */
+    public Collection<Task> getPrioritizedTasks() {
+        return schedule.values();
+    }
+
+    // Следующая версия; если ни одно хранилище не изменилось, остаётся эта же
+    ManagerSnapshot with(PersistentSortedMap<Integer, Task> tasks, PersistentSortedMap<Integer, Epic> epics,
+                         PersistentSortedMap<Integer, Subtask> subtasks, PersistentSortedMap<Task, Task> schedule) {
+        if (tasks == this.tasks && epics == this.epics && subtasks == this.subtasks && schedule == this.schedule) {
+            return this;
+        }
+        return new ManagerSnapshot(version + 1, tasks, epics, subtasks, schedule);
+    }
+}
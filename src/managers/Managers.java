@@ -1,8 +1,11 @@
 package managers;
 
+import history.ConcurrentHistoryManager;
 import history.HistoryManager;
 import history.InMemoryHistoryManager;
 
+import java.io.File;
+
 public final class Managers {
 
     private Managers() {
@@ -12,7 +15,53 @@ public final class Managers {
         return new InMemoryHistoryManager();
     }
 
+    /**
+     * История для многопоточного доступа: просмотры записываются без блокировок.
+     */
+    public static HistoryManager getConcurrentHistory() {
+        return new ConcurrentHistoryManager();
+    }
+
     public static TaskManager getDefault() {
         return new InMemoryTaskManager();
     }
+
+    /**
+     * Менеджер для очень больших досок: задачи хранятся по столбцам примитивов, время — с точностью до минуты.
+     */
+    public static TaskManager getColumnar() {
+        return new ColumnarTaskManager();
+    }
+
+    /**
+     * Колоночный менеджер, записи и тексты задач которого лежат вне кучи: паузы сборки мусора
+     * не растут с размером доски. Объём ограничен параметром JVM -XX:MaxDirectMemorySize.
+     */
+    public static TaskManager getOffHeap() {
+        return new ColumnarTaskManager(new OffHeapTaskStore());
+    }
+
+    /**
+     * Менеджер для многопоточных серверов: безопасен при одновременных вызовах из разных потоков.
+     */
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    /**
+     * Менеджер с метриками вызовов; для FileBackedTaskManager метрики включают и запись на диск.
+     */
+    public static TaskManager getMetered(TaskManager manager, ManagerMetrics metrics) {
+        return new MeteredTaskManager(manager, metrics);
+    }
+
+    /**
+     * Загружает менеджер из файла, записывая время загрузки в метрики как операцию loadFromFile.
+     */
+    public static TaskManager loadMetered(File file, ManagerMetrics metrics) {
+        long start = metrics.start();
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file);
+        metrics.record("loadFromFile", start);
+        return getMetered(manager, metrics);
+    }
 }
@@ -0,0 +1,148 @@
+package managers;
+
+import tasks.Subtask;
+import tasks.Task;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Двоичный снимок, отображённый в память.
+ * При открытии строится только индекс id → смещение записи: отсортированный массив long,
+ * где старшие 32 бита — id, младшие — смещение. Для подзадач отдельно хранится индекс
+ * id эпика → смещение, чтобы эпик можно было собрать вместе со своими подзадачами.
+ * Сами объекты задач создаются только по запросу.
+ */
+class MappedSnapshot {
+    private static final long OFFSET_MASK = 0xFFFF_FFFFL;
+
+    private final MappedByteBuffer buffer;
+    private final long[] offsetsById;
+    private final long[] subtaskOffsetsByEpic;
+    private final int maxId;
+    private final int nextId;
+    private final int firstRecord;
+
+    MappedSnapshot(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Snapshot is too large to map: " + path.getFileName());
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Error loading data from file: %s", path.getFileName()));
+        }
+
+        ByteBuffer scan = buffer.duplicate();
+        nextId = BinarySnapshot.checkHeader(scan, path);
+        firstRecord = scan.position();
+        long[] offsets = new long[64];
+        long[] subtaskOffsets = new long[16];
+        int count = 0;
+        int subtaskCount = 0;
+        int max = 0;
+        while (scan.hasRemaining()) {
+            int offset = scan.position();
+            int id = BinarySnapshot.idAt(scan, offset);
+            boolean subtask = BinarySnapshot.typeAt(scan, offset) == TaskType.SUBTASK;
+            BinarySnapshot.skip(scan);
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = pack(id, offset);
+            if (subtask) {
+                if (subtaskCount == subtaskOffsets.length) {
+                    subtaskOffsets = Arrays.copyOf(subtaskOffsets, subtaskCount * 2);
+                }
+                // id эпика — последние четыре байта записи подзадачи
+                subtaskOffsets[subtaskCount++] = pack(scan.getInt(scan.position() - Integer.BYTES), offset);
+            }
+            max = Math.max(max, id);
+        }
+        offsetsById = Arrays.copyOf(offsets, count);
+        Arrays.sort(offsetsById);
+        subtaskOffsetsByEpic = Arrays.copyOf(subtaskOffsets, subtaskCount);
+        Arrays.sort(subtaskOffsetsByEpic);
+        maxId = max;
+    }
+
+    int size() {
+        return offsetsById.length;
+    }
+
+    int maxId() {
+        return maxId;
+    }
+
+    /**
+     * Граница выданных id, сохранённая в снимке (0, если её нет).
+     */
+    int nextId() {
+        return nextId;
+    }
+
+    /**
+     * Возвращает запись с данным id, если она есть и имеет указанный тип, иначе null.
+     */
+    Task read(int id, TaskType type) {
+        int index = firstIndexOf(offsetsById, id);
+        if (index < 0) {
+            return null;
+        }
+        int offset = offsetOf(offsetsById[index]);
+        return BinarySnapshot.typeAt(buffer, offset) == type ? decodeAt(offset) : null;
+    }
+
+    void forEachSubtaskOf(int epicId, Consumer<Subtask> consumer) {
+        int index = firstIndexOf(subtaskOffsetsByEpic, epicId);
+        if (index < 0) {
+            return;
+        }
+        while (index < subtaskOffsetsByEpic.length && idOf(subtaskOffsetsByEpic[index]) == epicId) {
+            consumer.accept((Subtask) decodeAt(offsetOf(subtaskOffsetsByEpic[index])));
+            index++;
+        }
+    }
+
+    /**
+     * Обходит все записи в порядке файла: задачи, эпики, подзадачи.
+     */
+    void forEach(Consumer<Task> consumer) {
+        ByteBuffer scan = buffer.duplicate();
+        scan.position(firstRecord);
+        while (scan.hasRemaining()) {
+            consumer.accept(BinarySnapshot.decode(scan));
+        }
+    }
+
+    private Task decodeAt(int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        return BinarySnapshot.decode(view);
+    }
+
+    private static int firstIndexOf(long[] packed, int id) {
+        int index = Arrays.binarySearch(packed, pack(id, 0));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < packed.length && idOf(packed[index]) == id ? index : -1;
+    }
+
+    private static long pack(int id, int offset) {
+        return ((long) id << 32) | (offset & OFFSET_MASK);
+    }
+
+    private static int idOf(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    private static int offsetOf(long packed) {
+        return (int) (packed & OFFSET_MASK);
+    }
+}
@@ -0,0 +1,468 @@
+package managers;
+
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Менеджер задач с метриками: оборачивает другой менеджер и замеряет каждый вызов.
+ * Имя операции в метриках — имя метода; перегрузки различаются суффиксом (getTasksByStatus, getHistoryPage).
+ * Кроме задержек регистрирует показатели tasks, epics, subtasks, schedule и history — текущие размеры.
+ * Когда метрики выключены, вызов стоит одну проверку флага; без метрик используйте менеджер напрямую.
+ */
+public class MeteredTaskManager implements TaskManager {
+    private final TaskManager delegate;
+    private final ManagerMetrics metrics;
+
+    public MeteredTaskManager(TaskManager delegate, ManagerMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        metrics.registerGauge("tasks", () -> delegate.getTasksView().size());
+        metrics.registerGauge("epics", () -> delegate.getEpicsView().size());
+        metrics.registerGauge("subtasks", () -> delegate.getSubtasksView().size());
+        metrics.registerGauge("schedule", () -> delegate.getPrioritizedTasksView().size());
+        metrics.registerGauge("history", delegate::getHistorySize);
+        if (delegate instanceof FileBackedTaskManager) {
+            ((FileBackedTaskManager) delegate).setMetrics(metrics);
+        }
+    }
+
+    public TaskManager getDelegate() {
+        return delegate;
+    }
+
+    public ManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Task addTask(Task task) {
+        long start = metrics.start();
+        try {
+            return delegate.addTask(task);
+        } finally {
+            metrics.record("addTask", start);
+        }
+    }
+
+    @Override
+    public Epic addEpic(Epic epic) {
+        long start = metrics.start();
+        try {
+            return delegate.addEpic(epic);
+        } finally {
+            metrics.record("addEpic", start);
+        }
+    }
+
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        long start = metrics.start();
+        try {
+            return delegate.addSubtask(subtask);
+        } finally {
+            metrics.record("addSubtask", start);
+        }
+    }
+
+    @Override
+    public Task updateTask(Task taskToReplace) {
+        long start = metrics.start();
+        try {
+            return delegate.updateTask(taskToReplace);
+        } finally {
+            metrics.record("updateTask", start);
+        }
+    }
+
+    @Override
+    public Epic updateEpic(Epic epicToReplace) {
+        long start = metrics.start();
+        try {
+            return delegate.updateEpic(epicToReplace);
+        } finally {
+            metrics.record("updateEpic", start);
+        }
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtaskToReplace) {
+        long start = metrics.start();
+        try {
+            return delegate.updateSubtask(subtaskToReplace);
+        } finally {
+            metrics.record("updateSubtask", start);
+        }
+    }
+
+    @Override
+    public void clearTasks() {
+        long start = metrics.start();
+        try {
+            delegate.clearTasks();
+        } finally {
+            metrics.record("clearTasks", start);
+        }
+    }
+
+    @Override
+    public void clearEpics() {
+        long start = metrics.start();
+        try {
+            delegate.clearEpics();
+        } finally {
+            metrics.record("clearEpics", start);
+        }
+    }
+
+    @Override
+    public void clearSubtasks() {
+        long start = metrics.start();
+        try {
+            delegate.clearSubtasks();
+        } finally {
+            metrics.record("clearSubtasks", start);
+        }
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        long start = metrics.start();
+        try {
+            delegate.deleteTask(id);
+        } finally {
+            metrics.record("deleteTask", start);
+        }
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        long start = metrics.start();
+        try {
+            delegate.deleteEpic(id);
+        } finally {
+            metrics.record("deleteEpic", start);
+        }
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        long start = metrics.start();
+        try {
+            delegate.deleteSubtask(id);
+        } finally {
+            metrics.record("deleteSubtask", start);
+        }
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        long start = metrics.start();
+        try {
+            return delegate.getTask(id);
+        } finally {
+            metrics.record("getTask", start);
+        }
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        long start = metrics.start();
+        try {
+            return delegate.getEpic(id);
+        } finally {
+            metrics.record("getEpic", start);
+        }
+    }
+
+    @Override
+    public Optional<Subtask> getSubtaskById(int id) {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtaskById(id);
+        } finally {
+            metrics.record("getSubtaskById", start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getTasks();
+        } finally {
+            metrics.record("getTasks", start);
+        }
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        long start = metrics.start();
+        try {
+            return delegate.getEpics();
+        } finally {
+            metrics.record("getEpics", start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtasks();
+        } finally {
+            metrics.record("getSubtasks", start);
+        }
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        long start = metrics.start();
+        try {
+            return delegate.getTasksView();
+        } finally {
+            metrics.record("getTasksView", start);
+        }
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        long start = metrics.start();
+        try {
+            return delegate.getEpicsView();
+        } finally {
+            metrics.record("getEpicsView", start);
+        }
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtasksView();
+        } finally {
+            metrics.record("getSubtasksView", start);
+        }
+    }
+
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        long start = metrics.start();
+        try {
+            return delegate.getPrioritizedTasksView();
+        } finally {
+            metrics.record("getPrioritizedTasksView", start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasks(Status status) {
+        long start = metrics.start();
+        try {
+            return delegate.getTasks(status);
+        } finally {
+            metrics.record("getTasksByStatus", start);
+        }
+    }
+
+    @Override
+    public List<Epic> getEpics(Status status) {
+        long start = metrics.start();
+        try {
+            return delegate.getEpics(status);
+        } finally {
+            metrics.record("getEpicsByStatus", start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(Status status) {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtasks(status);
+        } finally {
+            metrics.record("getSubtasksByStatus", start);
+        }
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        long start = metrics.start();
+        try {
+            return delegate.count(type, status);
+        } finally {
+            metrics.record("count", start);
+        }
+    }
+
+    @Override
+    public void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        long start = metrics.start();
+        try {
+            delegate.forEach(type, status, action);
+        } finally {
+            metrics.record("forEach", start);
+        }
+    }
+
+    @Override
+    public <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                       ForkJoinPool pool) {
+        long start = metrics.start();
+        try {
+            return delegate.query(type, filter, collector, pool);
+        } finally {
+            metrics.record("query", start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(Epic epic) {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtasksOfEpic(epic);
+        } finally {
+            metrics.record("getSubtasksOfEpic", start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        long start = metrics.start();
+        try {
+            return delegate.getHistory();
+        } finally {
+            metrics.record("getHistory", start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        long start = metrics.start();
+        try {
+            return delegate.getHistory(offset, limit);
+        } finally {
+            metrics.record("getHistoryPage", start);
+        }
+    }
+
+    @Override
+    public int getHistorySize() {
+        long start = metrics.start();
+        try {
+            return delegate.getHistorySize();
+        } finally {
+            metrics.record("getHistorySize", start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getPrioritizedTasks();
+        } finally {
+            metrics.record("getPrioritizedTasks", start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        long start = metrics.start();
+        try {
+            return delegate.getTasksStartingBetween(from, to);
+        } finally {
+            metrics.record("getTasksStartingBetween", start);
+        }
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime instant) {
+        long start = metrics.start();
+        try {
+            return delegate.getTasksActiveAt(instant);
+        } finally {
+            metrics.record("getTasksActiveAt", start);
+        }
+    }
+
+    @Override
+    public List<Task> getNextTasks(LocalDateTime time, int limit) {
+        long start = metrics.start();
+        try {
+            return delegate.getNextTasks(time, limit);
+        } finally {
+            metrics.record("getNextTasks", start);
+        }
+    }
+
+    @Override
+    public List<Task> getUnscheduledTasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getUnscheduledTasks();
+        } finally {
+            metrics.record("getUnscheduledTasks", start);
+        }
+    }
+
+    @Override
+    public boolean isOverlapping(Task newTask) {
+        long start = metrics.start();
+        try {
+            return delegate.isOverlapping(newTask);
+        } finally {
+            metrics.record("isOverlapping", start);
+        }
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration) {
+        long start = metrics.start();
+        try {
+            return delegate.findFreeSlot(after, duration);
+        } finally {
+            metrics.record("findFreeSlot", start);
+        }
+    }
+
+    @Override
+    public Task addToFirstFreeSlot(Task task, LocalDateTime after) {
+        long start = metrics.start();
+        try {
+            return delegate.addToFirstFreeSlot(task, after);
+        } finally {
+            metrics.record("addToFirstFreeSlot", start);
+        }
+    }
+
+    @Override
+    public List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after) {
+        long start = metrics.start();
+        try {
+            return delegate.packTasks(tasks, after);
+        } finally {
+            metrics.record("packTasks", start);
+        }
+    }
+
+    @Override
+    public void applyBatch(List<Change> changes) {
+        long start = metrics.start();
+        try {
+            delegate.applyBatch(changes);
+        } finally {
+            metrics.record("applyBatch", start);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package managers;
+
+import status.Status;
+import tasks.Subtask;
+import tasks.Task;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Хранилище задач вне кучи: записи фиксированной длины, таблица id → ячейка и тексты лежат
+ * в буферах ByteBuffer.allocateDirect, так что в куче остаются три буфера независимо от размера доски,
+ * и сборщику мусора нечего обходить. Объекты Task создаются только в materialize().
+ * <p>
+ * Запись ячейки — RECORD байт: id, тип, статус, эпик, начало и длительность в минутах,
+ * ссылки списка подзадач эпика и положение текстов. Удалённые ячейки образуют список свободных,
+ * связанный через поле NEXT. Название и описание задачи записываются подряд в UTF-8 в общий буфер текстов
+ * без дедупликации; байты удалённых и заменённых текстов переиспользуются при уплотнении буфера,
+ * когда мёртвых байт становится больше половины.
+ * <p>
+ * Каждый буфер ограничен 2 ГБ, а вся память вне кучи — параметром JVM -XX:MaxDirectMemorySize
+ * (по умолчанию равен -Xmx). Память старого буфера после роста возвращается, когда сборщик
+ * освобождает его объект.
+ */
+final class OffHeapTaskStore implements TaskStore {
+    private static final int ID = 0;
+    private static final int TYPE = 4;
+    private static final int STATUS = 5;
+    private static final int EPIC_ID = 8;
+    private static final int START = 12;
+    private static final int DURATION = 16;
+    private static final int NEXT = 20;
+    private static final int PREV = 24;
+    private static final int TEXT = 28;
+    private static final int TEXT_LENGTH = 32;
+    private static final int RECORD = 36;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final int MIN_COMPACTION = 1 << 16;
+    private static final int NO_STRING = -1;
+    private static final byte FREE = -1;
+    private static final byte NO_STATUS = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private ByteBuffer records;
+    // Номер ячейки + 1 в позиции хеша id; 0 — пустая позиция
+    private ByteBuffer index;
+    private ByteBuffer texts;
+    private int indexMask;
+    private int freeHead;
+    private int limit;
+    private int textsUsed;
+    private int textsDead;
+    private final int[] sizes = new int[TYPES.length];
+    private final int[][] counts = new int[TYPES.length][STATUSES.length];
+
+    OffHeapTaskStore() {
+        reset();
+    }
+
+    @Override
+    public int slotOf(int id) {
+        for (int i = TaskStore.mix(id) & indexMask; ; i = (i + 1) & indexMask) {
+            int entry = index.getInt(i << 2);
+            if (entry == 0) {
+                return NONE;
+            }
+            if (records.getInt((entry - 1) * RECORD + ID) == id) {
+                return entry - 1;
+            }
+        }
+    }
+
+    @Override
+    public int insert(Task task) {
+        int start = TaskStore.minuteOf(task.getStartTime());
+        int duration = TaskStore.minutesOf(task.getDuration());
+        int slot;
+        if (freeHead != NONE) {
+            slot = freeHead;
+            freeHead = records.getInt(slot * RECORD + NEXT);
+        } else {
+            if ((long) (limit + 1) * RECORD > records.capacity()) {
+                records = grow(records, (long) (limit + 1) * RECORD, limit * RECORD);
+            }
+            slot = limit++;
+        }
+        TaskType type = TaskType.of(task);
+        int base = slot * RECORD;
+        records.putInt(base + ID, task.getId());
+        records.put(base + TYPE, (byte) type.ordinal());
+        records.put(base + STATUS, NO_STATUS);
+        records.putInt(base + NEXT, NONE);
+        records.putInt(base + PREV, NONE);
+        records.putInt(base + TEXT, 0);
+        records.putInt(base + TEXT_LENGTH, 0);
+        sizes[type.ordinal()]++;
+        write(slot, task, start, duration);
+        if ((long) size() << 1 > indexMask + 1) {
+            rehash((indexMask + 1) << 1);
+        } else {
+            link(slot);
+        }
+        return slot;
+    }
+
+    @Override
+    public void update(int slot, Task task) {
+        write(slot, task, TaskStore.minuteOf(task.getStartTime()), TaskStore.minutesOf(task.getDuration()));
+    }
+
+    @Override
+    public void delete(int slot) {
+        int base = slot * RECORD;
+        unlink(slot);
+        setStatus(slot, null);
+        textsDead += records.getInt(base + TEXT_LENGTH);
+        sizes[records.get(base + TYPE)]--;
+        records.put(base + TYPE, FREE);
+        records.putInt(base + TEXT_LENGTH, 0);
+        records.putInt(base + NEXT, freeHead);
+        freeHead = slot;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+        Arrays.fill(sizes, 0);
+        for (int[] byStatus : counts) {
+            Arrays.fill(byStatus, 0);
+        }
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public boolean isUsed(int slot) {
+        return records.get(slot * RECORD + TYPE) != FREE;
+    }
+
+    @Override
+    public TaskType type(int slot) {
+        byte type = records.get(slot * RECORD + TYPE);
+        return type == FREE ? null : TYPES[type];
+    }
+
+    @Override
+    public boolean is(int slot, TaskType type) {
+        return records.get(slot * RECORD + TYPE) == type.ordinal();
+    }
+
+    @Override
+    public int id(int slot) {
+        return records.getInt(slot * RECORD + ID);
+    }
+
+    @Override
+    public Status status(int slot) {
+        byte status = records.get(slot * RECORD + STATUS);
+        return status == NO_STATUS ? null : STATUSES[status];
+    }
+
+    @Override
+    public boolean hasStatus(int slot, Status status) {
+        return records.get(slot * RECORD + STATUS) == status.ordinal();
+    }
+
+    @Override
+    public void setStatus(int slot, Status status) {
+        int base = slot * RECORD;
+        byte type = records.get(base + TYPE);
+        byte previous = records.get(base + STATUS);
+        if (previous != NO_STATUS) {
+            counts[type][previous]--;
+        }
+        records.put(base + STATUS, status == null ? NO_STATUS : (byte) status.ordinal());
+        if (status != null) {
+            counts[type][status.ordinal()]++;
+        }
+    }
+
+    @Override
+    public int epicId(int slot) {
+        return records.getInt(slot * RECORD + EPIC_ID);
+    }
+
+    @Override
+    public int start(int slot) {
+        return records.getInt(slot * RECORD + START);
+    }
+
+    @Override
+    public int duration(int slot) {
+        return records.getInt(slot * RECORD + DURATION);
+    }
+
+    @Override
+    public void setTime(int slot, int start, int duration) {
+        records.putInt(slot * RECORD + START, start);
+        records.putInt(slot * RECORD + DURATION, duration);
+    }
+
+    @Override
+    public String name(int slot) {
+        return stringAt(records.getInt(slot * RECORD + TEXT));
+    }
+
+    @Override
+    public String description(int slot) {
+        int offset = records.getInt(slot * RECORD + TEXT);
+        return stringAt(offset + Integer.BYTES + Math.max(texts.getInt(offset), 0));
+    }
+
+    @Override
+    public int nextInEpic(int slot) {
+        return records.getInt(slot * RECORD + NEXT);
+    }
+
+    @Override
+    public int prevInEpic(int slot) {
+        return records.getInt(slot * RECORD + PREV);
+    }
+
+    @Override
+    public void setNextInEpic(int slot, int next) {
+        records.putInt(slot * RECORD + NEXT, next);
+    }
+
+    @Override
+    public void setPrevInEpic(int slot, int prev) {
+        records.putInt(slot * RECORD + PREV, prev);
+    }
+
+    @Override
+    public int size() {
+        return sizes[0] + sizes[1] + sizes[2];
+    }
+
+    @Override
+    public int size(TaskType type) {
+        return sizes[type.ordinal()];
+    }
+
+    @Override
+    public int count(TaskType type, Status status) {
+        return counts[type.ordinal()][status.ordinal()];
+    }
+
+    private void write(int slot, Task task, int start, int duration) {
+        byte[] name = bytesOf(task.getName());
+        byte[] description = bytesOf(task.getDescription());
+        int length = 2 * Integer.BYTES + lengthOf(name) + lengthOf(description);
+        int text = append(length);
+        putString(putString(text, name), description);
+        int base = slot * RECORD;
+        textsDead += records.getInt(base + TEXT_LENGTH);
+        records.putInt(base + TEXT, text);
+        records.putInt(base + TEXT_LENGTH, length);
+        setStatus(slot, task.getStatus());
+        records.putInt(base + EPIC_ID, task instanceof Subtask ? ((Subtask) task).getSubtasksEpicId() : 0);
+        records.putInt(base + START, start);
+        records.putInt(base + DURATION, duration);
+    }
+
+    // Резервирует length байт в конце буфера текстов и возвращает их начало
+    private int append(int length) {
+        if (length > texts.capacity() - textsUsed) {
+            if (textsDead > MIN_COMPACTION && textsDead * 2L > textsUsed) {
+                compact();
+            }
+            if (length > texts.capacity() - textsUsed) {
+                texts = grow(texts, (long) textsUsed + length, textsUsed);
+            }
+        }
+        textsUsed += length;
+        return textsUsed - length;
+    }
+
+    // Переносит тексты живых записей в начало нового буфера в порядке ячеек
+    private void compact() {
+        ByteBuffer compacted = allocate(texts.capacity());
+        int position = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            int base = slot * RECORD;
+            if (records.get(base + TYPE) != FREE) {
+                int length = records.getInt(base + TEXT_LENGTH);
+                compacted.put(position, texts, records.getInt(base + TEXT), length);
+                records.putInt(base + TEXT, position);
+                position += length;
+            }
+        }
+        texts = compacted;
+        textsUsed = position;
+        textsDead = 0;
+    }
+
+    private int putString(int offset, byte[] value) {
+        if (value == null) {
+            texts.putInt(offset, NO_STRING);
+            return offset + Integer.BYTES;
+        }
+        texts.putInt(offset, value.length);
+        texts.put(offset + Integer.BYTES, value);
+        return offset + Integer.BYTES + value.length;
+    }
+
+    private String stringAt(int offset) {
+        int length = texts.getInt(offset);
+        if (length == NO_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        texts.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void reset() {
+        records = allocate(16 * RECORD);
+        index = allocate(32 * Integer.BYTES);
+        texts = allocate(1024);
+        indexMask = 31;
+        freeHead = NONE;
+        limit = 0;
+        textsUsed = 0;
+        textsDead = 0;
+    }
+
+    private void link(int slot) {
+        int i = TaskStore.mix(records.getInt(slot * RECORD + ID)) & indexMask;
+        while (index.getInt(i << 2) != 0) {
+            i = (i + 1) & indexMask;
+        }
+        index.putInt(i << 2, slot + 1);
+    }
+
+    // Удаление из таблицы со сдвигом цепочки назад, как в IntHashMap
+    private void unlink(int slot) {
+        int mask = indexMask;
+        int i = TaskStore.mix(records.getInt(slot * RECORD + ID)) & mask;
+        while (index.getInt(i << 2) != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; index.getInt(j << 2) != 0; j = (j + 1) & mask) {
+            int entry = index.getInt(j << 2);
+            int home = TaskStore.mix(records.getInt((entry - 1) * RECORD + ID)) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                index.putInt(gap << 2, entry);
+                gap = j;
+            }
+        }
+        index.putInt(gap << 2, 0);
+    }
+
+    private void rehash(int length) {
+        if ((long) length * Integer.BYTES > MAX_CAPACITY) {
+            throw new IllegalStateException("Off-heap store is full: " + size() + " tasks");
+        }
+        index = allocate(length * Integer.BYTES);
+        indexMask = length - 1;
+        for (int slot = 0; slot < limit; slot++) {
+            if (records.get(slot * RECORD + TYPE) != FREE) {
+                link(slot);
+            }
+        }
+    }
+
+    // Новый буфер не меньше required байт с копией первых used байт старого
+    private static ByteBuffer grow(ByteBuffer buffer, long required, int used) {
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException("Off-heap store is full: " + required + " bytes required");
+        }
+        ByteBuffer grown = allocate((int) Math.min(MAX_CAPACITY, Math.max(required, 2L * buffer.capacity())));
+        grown.put(0, buffer, 0, used);
+        return grown;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int lengthOf(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+}
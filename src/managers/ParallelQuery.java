@@ -0,0 +1,63 @@
+package managers;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Параллельная свёртка хранилища для TaskManager.query: сплитератор хранилища делится, пока в части
+ * больше THRESHOLD элементов, части сворачиваются задачами fork-join в переданном пуле.
+ * Результаты частей объединяются combiner'ом слева направо, поэтому порядок обхода хранилища
+ * сохраняется, а промежуточных списков не создаётся.
+ */
+final class ParallelQuery {
+    private static final int THRESHOLD = 1 << 12;
+
+    private ParallelQuery() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, A, R> R collect(Spliterator<? extends T> source, Predicate<? super T> filter,
+                               Collector<? super T, A, R> collector, ForkJoinPool pool) {
+        A container = pool.invoke(new Fold<>(source, filter, collector));
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                ? (R) container
+                : collector.finisher().apply(container);
+    }
+
+    // RecursiveTask сериализуем только формально: задачи свёртки не сериализуются
+    @SuppressWarnings("serial")
+    private static final class Fold<T, A> extends RecursiveTask<A> {
+        private final Spliterator<? extends T> source;
+        private final Predicate<? super T> filter;
+        private final Collector<? super T, A, ?> collector;
+
+        Fold(Spliterator<? extends T> source, Predicate<? super T> filter, Collector<? super T, A, ?> collector) {
+            this.source = source;
+            this.filter = filter;
+            this.collector = collector;
+        }
+
+        @Override
+        protected A compute() {
+            Spliterator<? extends T> prefix;
+            if (source.estimateSize() > THRESHOLD && (prefix = source.trySplit()) != null) {
+                Fold<T, A> left = new Fold<>(prefix, filter, collector);
+                left.fork();
+                A right = new Fold<>(source, filter, collector).compute();
+                return collector.combiner().apply(left.join(), right);
+            }
+            A container = collector.supplier().get();
+            BiConsumer<A, ? super T> accumulator = collector.accumulator();
+            source.forEachRemaining(element -> {
+                if (filter.test(element)) {
+                    accumulator.accept(container, element);
+                }
+            });
+            return container;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package managers;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Неизменяемое упорядоченное отображение с общими узлами (декартово дерево со случайными приоритетами).
+ * put и remove не меняют дерево, а возвращают новое: копируется только путь от корня
+ * до изменённого узла, O(log n) узлов в среднем, остальные узлы общие со старой версией.
+ * Поэтому любая версия остаётся целой и её можно читать из любого потока без синхронизации.
+ */
+public final class PersistentSortedMap<K, V> {
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int priority;
+        final int size;
+        final Node<K, V> left;
+        final Node<K, V> right;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        Node<K, V> withLeft(Node<K, V> newLeft) {
+            return newLeft == left ? this : new Node<>(key, value, priority, newLeft, right);
+        }
+
+        Node<K, V> withRight(Node<K, V> newRight) {
+            return newRight == right ? this : new Node<>(key, value, priority, left, newRight);
+        }
+    }
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null);
+    }
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) {
+                return node.value;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Версия с добавленной или заменённой парой; если значение то же самое, возвращается эта же версия.
+     */
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        Node<K, V> newRoot = insert(root, key, value);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    /**
+     * Версия без ключа; если ключа нет, возвращается эта же версия.
+     */
+    public PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    public PersistentSortedMap<K, V> clear() {
+        return root == null ? this : new PersistentSortedMap<>(comparator, null);
+    }
+
+    /**
+     * Значения в порядке ключей; представление только для чтения, привязанное к этой версии.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return sizeOf(root);
+            }
+        };
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, ThreadLocalRandom.current().nextInt(), null, null);
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return node.value == value ? node : new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (c < 0) {
+            Node<K, V> left = insert(node.left, key, value);
+            if (left == node.left) {
+                return node;
+            }
+            // Поворот вправо, если новый узел должен стать выше
+            return left.priority > node.priority
+                    ? left.withRight(node.withLeft(left.right))
+                    : node.withLeft(left);
+        }
+        Node<K, V> right = insert(node.right, key, value);
+        if (right == node.right) {
+            return node;
+        }
+        return right.priority > node.priority
+                ? right.withLeft(node.withRight(right.left))
+                : node.withRight(right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        return c < 0 ? node.withLeft(delete(node.left, key)) : node.withRight(delete(node.right, key));
+    }
+
+    // Сливает два дерева, в которых все ключи left меньше ключей right
+    private static <K, V> Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.priority > right.priority
+                ? left.withRight(merge(left.right, right))
+                : right.withLeft(merge(left, right.left));
+    }
+
+    private static int sizeOf(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Симметричный обход со стеком высотой O(log n)
+    private static final class ValueIterator<K, V> implements Iterator<V> {
+        private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+
+        ValueIterator(Node<K, V> root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public V next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack.pop();
+            pushLeft(node.right);
+            return node.value;
+        }
+    }
+}
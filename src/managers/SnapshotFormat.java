@@ -0,0 +1,5 @@
+package managers;
+
+public enum SnapshotFormat {
+    TEXT, BINARY
+}
@@ -0,0 +1,82 @@
+package managers;
+
+import status.Status;
+import tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Вторичный индекс задач по типу и статусу: отдельная группа на каждую пару (тип, статус).
+ * Менеджер обновляет индекс при каждом изменении, поэтому выборка группы стоит O(размер группы),
+ * а её размер — O(1). Индекс помнит, в какой группе лежит каждый id, поэтому задача
+ * переиндексируется верно, даже если её статус изменили прямо в объекте до вызова update.
+ */
+final class StatusIndex {
+    private final IntHashMap<Task>[][] groups;
+    private final IntHashMap<IntHashMap<Task>> groupOf = new IntHashMap<>();
+
+    // Массив параметризованного типа создаётся только через сырой тип
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    StatusIndex() {
+        groups = new IntHashMap[TaskType.values().length][Status.values().length];
+        for (IntHashMap<Task>[] byStatus : groups) {
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new IntHashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Добавляет задачу или переносит её в группу текущего статуса. Задача без статуса не индексируется.
+     */
+    void put(Task task) {
+        remove(task.getId());
+        if (task.getStatus() == null) {
+            return;
+        }
+        IntHashMap<Task> group = groups[TaskType.of(task).ordinal()][task.getStatus().ordinal()];
+        group.put(task.getId(), task);
+        groupOf.put(task.getId(), group);
+    }
+
+    void remove(int id) {
+        IntHashMap<Task> group = groupOf.remove(id);
+        if (group != null) {
+            group.remove(id);
+        }
+    }
+
+    void clear(TaskType type) {
+        for (IntHashMap<Task> group : groups[type.ordinal()]) {
+            for (Task task : group.values()) {
+                groupOf.remove(task.getId());
+            }
+            group.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Task> List<T> list(TaskType type, Status status) {
+        return new ArrayList<>((Collection<T>) group(type, status).values());
+    }
+
+    int count(TaskType type, Status status) {
+        return group(type, status).size();
+    }
+
+    void forEach(TaskType type, Status status, Consumer<? super Task> action) {
+        for (Task task : group(type, status).values()) {
+            action.accept(task);
+        }
+    }
+
+    private IntHashMap<Task> group(TaskType type, Status status) {
+        if (type == null || status == null) {
+            throw new IllegalArgumentException("Type and status must not be null: %s, %s".formatted(type, status));
+        }
+        return groups[type.ordinal()][status.ordinal()];
+    }
+}
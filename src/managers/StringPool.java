@@ -0,0 +1,179 @@
+package managers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Пул строк со счётчиками ссылок: одинаковые названия и описания хранятся один раз,
+ * а записи хранилища ссылаются на них по номеру. Строки лежат в UTF-8 подряд в одном массиве байт,
+ * поэтому на строку не приходится ни одного объекта; String создаётся только в get().
+ * Таблица поиска — открытая адресация по массиву int; строка с нулём ссылок освобождает номер,
+ * а её байты переиспользуются при уплотнении массива, когда мёртвых байт становится больше половины.
+ */
+final class StringPool {
+    static final int NULL = -1;
+    private static final int MIN_COMPACTION = 1 << 16;
+
+    private byte[] bytes;
+    private int used;
+    private int dead;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] references;
+    // Номер строки + 1 в позиции её хеша; 0 — пустая ячейка
+    private int[] table;
+    private int[] free;
+    private int freeCount;
+    private int next;
+    private int size;
+
+    StringPool() {
+        clear();
+    }
+
+    int intern(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int hash = value.hashCode();
+        int mask = table.length - 1;
+        for (int i = mix(hash) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int ref = table[i] - 1;
+            if (hashes[ref] == hash && Arrays.equals(bytes, offsets[ref], offsets[ref] + lengths[ref],
+                    encoded, 0, encoded.length)) {
+                references[ref]++;
+                return ref;
+            }
+        }
+        int ref = freeCount > 0 ? free[--freeCount] : next++;
+        if (ref == offsets.length) {
+            offsets = Arrays.copyOf(offsets, ref * 2);
+            lengths = Arrays.copyOf(lengths, ref * 2);
+            hashes = Arrays.copyOf(hashes, ref * 2);
+            references = Arrays.copyOf(references, ref * 2);
+        }
+        offsets[ref] = append(encoded);
+        lengths[ref] = encoded.length;
+        hashes[ref] = hash;
+        references[ref] = 1;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(ref);
+        }
+        return ref;
+    }
+
+    String get(int ref) {
+        return ref == NULL ? null : new String(bytes, offsets[ref], lengths[ref], StandardCharsets.UTF_8);
+    }
+
+    void release(int ref) {
+        if (ref == NULL || --references[ref] > 0) {
+            return;
+        }
+        remove(ref);
+        dead += lengths[ref];
+        size--;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ref;
+    }
+
+    /**
+     * Число различных строк в пуле.
+     */
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        bytes = new byte[256];
+        used = 0;
+        dead = 0;
+        offsets = new int[16];
+        lengths = new int[16];
+        hashes = new int[16];
+        references = new int[16];
+        table = new int[32];
+        free = new int[16];
+        freeCount = 0;
+        next = 0;
+        size = 0;
+    }
+
+    private int append(byte[] encoded) {
+        if (used + encoded.length > bytes.length) {
+            if (dead > MIN_COMPACTION && dead * 2 > used) {
+                compact();
+            }
+            if (used + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + encoded.length));
+            }
+        }
+        System.arraycopy(encoded, 0, bytes, used, encoded.length);
+        used += encoded.length;
+        return used - encoded.length;
+    }
+
+    // Переносит байты живых строк в начало массива
+    private void compact() {
+        byte[] compacted = new byte[bytes.length];
+        int position = 0;
+        for (int ref = 0; ref < next; ref++) {
+            if (references[ref] > 0) {
+                System.arraycopy(bytes, offsets[ref], compacted, position, lengths[ref]);
+                offsets[ref] = position;
+                position += lengths[ref];
+            }
+        }
+        bytes = compacted;
+        used = position;
+        dead = 0;
+    }
+
+    private void insert(int ref) {
+        int mask = table.length - 1;
+        int i = mix(hashes[ref]) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = ref + 1;
+    }
+
+    // Удаление со сдвигом цепочки назад, как в IntHashMap
+    private void remove(int ref) {
+        int mask = table.length - 1;
+        int i = mix(hashes[ref]) & mask;
+        while (table[i] != ref + 1) {
+            i = (i + 1) & mask;
+        }
+        int gap = i;
+        for (int j = (gap + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = mix(hashes[table[j] - 1]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    private void rehash(int length) {
+        table = new int[length];
+        for (int ref = 0; ref < next; ref++) {
+            if (references[ref] > 0) {
+                insert(ref);
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
@@ -0,0 +1,583 @@
+package managers;
+
+import tasks.Task;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал изменений для FileBackedTaskManager.
+ * Каждое изменение дописывается в файл "<снимок>.journal" одной строкой:
+ * PUT,<строка задачи> | DELETE,<id> | CLEAR,<тип>.
+ * Когда журнал разрастается, он переименовывается в "<снимок>.journal.sealed",
+ * а фоновый поток сворачивает снимок и запечатанный журнал в новый снимок.
+ * Записи идемпотентны, поэтому после сбоя на любом шаге повторное применение
+ * снимка, запечатанного и текущего журнала (именно в этом порядке) даёт то же состояние.
+ * <p>
+ * В режимах GROUP_COMMIT и BUFFERED записи попадают в ограниченную очередь: когда диск
+ * не успевает, вызывающий поток блокируется, а не накапливает изменения в куче.
+ */
+class TaskJournal {
+    static final String HEADER = "Список сохраненных задач:";
+    static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+    static final int QUEUE_CAPACITY = 8_192;
+
+    private static final String NEXT_ID = " next_id=";
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DELETE";
+    private static final String CLEAR = "CLEAR";
+    private static final Pending STOP = new Pending(null, null);
+
+    private final File snapshot;
+    private final Path journal;
+    private final Path sealed;
+    private final Durability durability;
+    private final long groupCommitMillis;
+    private final int compactionThreshold;
+    private final ExecutorService compactor;
+    private final BlockingQueue<Pending> queue;
+    private final Thread committer;
+    private volatile ManagerSaveException failure;
+    private FileOutputStream out;
+    private Writer writer;
+    private int records;
+    private Future<?> compaction;
+    private ManagerSaveException compactionFailure;
+    private volatile SnapshotFormat format = SnapshotFormat.TEXT;
+    private volatile ManagerMetrics metrics = ManagerMetrics.DISABLED;
+
+    /**
+     * Результат восстановления: строки задач и граница id, не меньшая любого id, когда-либо попавшего в журнал.
+     */
+    record Replay(Collection<String> lines, int nextId) {
+    }
+
+    // Запись журнала или отметка sync(): ack завершается, когда всё, что стоит в очереди до неё, надёжно записано
+    private record Pending(String record, CompletableFuture<Void> ack) {
+    }
+
+    TaskJournal(File snapshot, Durability durability, long groupCommitMillis, int compactionThreshold) {
+        this.snapshot = snapshot;
+        this.journal = journalPath(snapshot);
+        this.sealed = sealedPath(snapshot);
+        this.durability = durability;
+        this.groupCommitMillis = groupCommitMillis;
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor-" + snapshot.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        openWriter();
+        if (durability == Durability.IMMEDIATE) {
+            this.queue = null;
+            this.committer = null;
+        } else {
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            this.committer = new Thread(this::commitLoop, "journal-committer-" + snapshot.getName());
+            this.committer.setDaemon(true);
+            this.committer.start();
+        }
+    }
+
+    void setSnapshotFormat(SnapshotFormat format) {
+        this.format = format;
+    }
+
+    void setMetrics(ManagerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Заголовок текстового снимка. Если граница выданных id больше, чем следует из сохранённых задач
+     * (задачи с последними id удалены), она записывается после маркера, чтобы после перезапуска
+     * эти id не были выданы повторно.
+     */
+    static String header(int nextId, int maxId) {
+        return nextId > maxId + 1 ? HEADER + NEXT_ID + nextId : HEADER;
+    }
+
+    /**
+     * Граница id из заголовка текстового снимка; 0, если снимок записан без неё.
+     */
+    static int nextIdOf(String header) {
+        int marker = header != null ? header.indexOf(NEXT_ID) : -1;
+        return marker >= 0 ? Integer.parseInt(header.substring(marker + NEXT_ID.length()).trim()) : 0;
+    }
+
+    static String put(Task task) {
+        return PUT + "," + task;
+    }
+
+    static String delete(int id) {
+        return DELETE + "," + id;
+    }
+
+    static String clear(TaskType type) {
+        return CLEAR + "," + type;
+    }
+
+    void append(String record) {
+        if (queue == null) {
+            write(List.of(record));
+        } else {
+            enqueue(new Pending(record, null));
+        }
+    }
+
+    void appendAll(List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (queue == null) {
+            write(batch);
+        } else {
+            for (String record : batch) {
+                enqueue(new Pending(record, null));
+            }
+        }
+    }
+
+    /**
+     * Возвращает future, который завершается, когда все ранее добавленные записи
+     * записаны с выбранным уровнем надёжности.
+     */
+    CompletableFuture<Void> sync() {
+        if (queue == null) {
+            return failure == null ? CompletableFuture.completedFuture(null) : CompletableFuture.failedFuture(failure);
+        }
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        enqueue(new Pending(null, ack));
+        return ack;
+    }
+
+    /**
+     * Принудительно запечатывает текущий журнал и дожидается его свёртки в снимок.
+     */
+    void compact() {
+        drain();
+        synchronized (this) {
+            awaitCompaction();
+            if (records > 0 || Files.exists(sealed)) {
+                rotate();
+                awaitCompaction();
+            }
+        }
+    }
+
+    /**
+     * Дожидается записи очереди и завершения фоновой свёртки — после этого файлы журнала не меняются,
+     * пока не придут новые записи.
+     */
+    void quiesce() {
+        drain();
+        synchronized (this) {
+            awaitCompaction();
+        }
+    }
+
+    /**
+     * Сбрасывает журнал после того, как снимок был целиком перезаписан из памяти.
+     */
+    synchronized void reset() {
+        try {
+            writer.close();
+            Files.deleteIfExists(sealed);
+            Files.deleteIfExists(journal);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при очистке журнала: %s", journal.getFileName()));
+        }
+        openWriter();
+        records = 0;
+    }
+
+    void close() {
+        try {
+            if (committer != null) {
+                enqueue(STOP);
+                committer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Ожидание записи журнала прервано");
+        } finally {
+            synchronized (this) {
+                try {
+                    awaitCompaction();
+                } finally {
+                    compactor.shutdown();
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        throw new ManagerSaveException(String.format("Ошибка при закрытии журнала: %s",
+                                journal.getFileName()));
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drain() {
+        try {
+            sync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Ожидание записи журнала прервано");
+        } catch (ExecutionException e) {
+            throw failure != null ? failure : new ManagerSaveException(e.getCause().getMessage());
+        }
+    }
+
+    private void enqueue(Pending pending) {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Постановка записи в очередь журнала прервана");
+        }
+    }
+
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<>();
+        List<String> batchRecords = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+                if (durability == Durability.GROUP_COMMIT) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+                    long remaining = deadline - System.nanoTime();
+                    while (remaining > 0 && batch.get(batch.size() - 1) != STOP) {
+                        Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        remaining = deadline - System.nanoTime();
+                    }
+                }
+                queue.drainTo(batch);
+            } catch (InterruptedException e) {
+                stopped = true;
+            }
+            for (Pending pending : batch) {
+                if (pending == STOP) {
+                    stopped = true;
+                } else if (pending.record() != null) {
+                    batchRecords.add(pending.record());
+                }
+            }
+            ManagerSaveException error = failure;
+            if (error == null && !batchRecords.isEmpty()) {
+                try {
+                    write(batchRecords);
+                } catch (ManagerSaveException e) {
+                    failure = e;
+                    error = e;
+                }
+            }
+            for (Pending pending : batch) {
+                if (pending.ack() != null) {
+                    if (error == null) {
+                        pending.ack().complete(null);
+                    } else {
+                        pending.ack().completeExceptionally(error);
+                    }
+                }
+            }
+            batch.clear();
+            batchRecords.clear();
+        }
+    }
+
+    private synchronized void write(List<String> batch) {
+        try {
+            long position = metrics.isEnabled() ? out.getChannel().position() : 0;
+            for (String record : batch) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            if (metrics.isEnabled()) {
+                metrics.recordPersisted(out.getChannel().position() - position);
+            }
+            if (durability != Durability.BUFFERED) {
+                long syncStart = metrics.start();
+                out.getChannel().force(false);
+                metrics.recordFsync(syncStart);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при записи в журнал: %s", journal.getFileName()));
+        }
+        records += batch.size();
+        if (records >= compactionThreshold) {
+            rotate();
+        }
+    }
+
+    private void awaitCompaction() {
+        if (compaction != null) {
+            try {
+                compaction.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException("Ожидание свёртки журнала прервано");
+            } catch (ExecutionException e) {
+                compactionFailure = new ManagerSaveException(String.format("Ошибка при свёртке журнала: %s",
+                        e.getCause().getMessage()));
+            } finally {
+                compaction = null;
+            }
+        }
+        // Ошибка свёртки, замеченная при ротации, сообщается первому ожидающему и не теряется
+        if (compactionFailure != null) {
+            ManagerSaveException error = compactionFailure;
+            compactionFailure = null;
+            throw error;
+        }
+    }
+
+    private void rotate() {
+        if (compaction != null) {
+            if (!compaction.isDone()) {
+                return;
+            }
+            try {
+                compaction.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // Запечатанный журнал остался на диске, свёртка ниже повторится; ошибку сообщит awaitCompaction
+                if (compactionFailure == null) {
+                    compactionFailure = new ManagerSaveException(String.format("Ошибка при свёртке журнала: %s",
+                            e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+                }
+            }
+            compaction = null;
+        }
+        try {
+            // Предыдущая свёртка не завершилась — сначала повторяем её, не трогая текущий журнал
+            if (!Files.exists(sealed)) {
+                writer.close();
+                Files.move(journal, sealed, StandardCopyOption.ATOMIC_MOVE);
+                openWriter();
+                records = 0;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при ротации журнала: %s", journal.getFileName()));
+        }
+        compaction = compactor.submit(this::compactSealed);
+    }
+
+    private void compactSealed() {
+        Replay replay = replay(snapshot.toPath(), sealed);
+        Collection<String> lines = replay.lines();
+        if (format == SnapshotFormat.BINARY) {
+            List<Task> tasks = new ArrayList<>(lines.size());
+            for (String line : sortByType(lines)) {
+                tasks.add(FileBackedTaskManager.fromString(line));
+            }
+            BinarySnapshot.write(snapshot.toPath(), tasks, replay.nextId(), metrics);
+            try {
+                Files.delete(sealed);
+            } catch (IOException e) {
+                throw new ManagerSaveException(String.format("Ошибка при свёртке журнала в файл: %s", snapshot.getName()));
+            }
+            return;
+        }
+        Path tmp = snapshot.toPath().resolveSibling(snapshot.getName() + ".tmp");
+        try {
+            List<String> content = new ArrayList<>(lines.size() + 1);
+            int maxId = 0;
+            for (String line : lines) {
+                maxId = Math.max(maxId, idOf(line));
+            }
+            content.add(header(replay.nextId(), maxId));
+            content.addAll(sortByType(lines));
+            Files.write(tmp, content, StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                metrics.recordPersisted(channel.size());
+                long syncStart = metrics.start();
+                channel.force(true);
+                metrics.recordFsync(syncStart);
+            }
+            Files.move(tmp, snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(sealed);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при свёртке журнала в файл: %s", snapshot.getName()));
+        }
+    }
+
+    private void openWriter() {
+        try {
+            out = new FileOutputStream(journal.toFile(), true);
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при открытии журнала: %s", journal.getFileName()));
+        }
+    }
+
+    static boolean hasJournal(File snapshot) {
+        return Files.exists(journalPath(snapshot)) || Files.exists(sealedPath(snapshot));
+    }
+
+    static void deleteJournal(File snapshot) {
+        try {
+            Files.deleteIfExists(sealedPath(snapshot));
+            Files.deleteIfExists(journalPath(snapshot));
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при удалении журнала: %s", snapshot.getName()));
+        }
+    }
+
+    /**
+     * Восстанавливает строки задач: снимок, затем запечатанный и текущий журналы.
+     */
+    static Replay replay(File snapshot) {
+        return replay(snapshot.toPath(), sealedPath(snapshot), journalPath(snapshot));
+    }
+
+    private static Replay replay(Path snapshot, Path... journals) {
+        Map<Integer, String> lines = new LinkedHashMap<>();
+        int nextId = 1;
+        try {
+            if (BinarySnapshot.isBinary(snapshot)) {
+                nextId = Math.max(nextId, BinarySnapshot.read(snapshot,
+                        task -> lines.put(task.getId(), task.toString())));
+            } else if (Files.exists(snapshot) || !hasAny(journals)) {
+                List<String> snapshotLines = Files.readAllLines(snapshot, StandardCharsets.UTF_8);
+                if (!snapshotLines.isEmpty()) {
+                    nextId = Math.max(nextId, nextIdOf(snapshotLines.get(0)));
+                }
+                for (String line : snapshotLines.subList(Math.min(1, snapshotLines.size()), snapshotLines.size())) {
+                    if (!line.isBlank()) {
+                        lines.put(idOf(line), line);
+                    }
+                }
+            }
+            for (int id : lines.keySet()) {
+                nextId = Math.max(nextId, id + 1);
+            }
+            for (Path journal : journals) {
+                if (Files.exists(journal)) {
+                    for (String record : readCompleteRecords(journal)) {
+                        nextId = Math.max(nextId, apply(lines, record) + 1);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Error loading data from file: %s", snapshot.getFileName()));
+        }
+        return new Replay(lines.values(), nextId);
+    }
+
+    // Запись считается завершённой только вместе с переводом строки: хвост, оборванный сбоем, отбрасывается
+    private static List<String> readCompleteRecords(Path journal) throws IOException {
+        String content = Files.readString(journal, StandardCharsets.UTF_8);
+        List<String> records = new ArrayList<>();
+        int start = 0;
+        int end = content.indexOf('\n');
+        while (end >= 0) {
+            if (end > start) {
+                records.add(content.substring(start, end));
+            }
+            start = end + 1;
+            end = content.indexOf('\n', start);
+        }
+        return records;
+    }
+
+    // Возвращает id записанной задачи для PUT, иначе 0
+    private static int apply(Map<Integer, String> lines, String record) {
+        int separator = record.indexOf(',');
+        String operation = record.substring(0, separator);
+        String payload = record.substring(separator + 1);
+        switch (operation) {
+            case PUT:
+                int putId = idOf(payload);
+                lines.put(putId, payload);
+                return putId;
+            case DELETE:
+                int id = Integer.parseInt(payload);
+                String removed = lines.remove(id);
+                // Удаление эпика удаляет и его подзадачи, даже если они не перечислены в журнале отдельно
+                if (removed != null && TaskType.EPIC.name().equals(typeOf(removed))) {
+                    String epicId = payload;
+                    lines.values().removeIf(line -> TaskType.SUBTASK.name().equals(typeOf(line))
+                            && epicId.equals(line.split(",")[5]));
+                }
+                break;
+            case CLEAR:
+                lines.values().removeIf(line -> payload.equals(typeOf(line)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal operation: " + operation);
+        }
+        return 0;
+    }
+
+    private static List<String> sortByType(Collection<String> lines) {
+        List<String> sorted = new ArrayList<>(lines.size());
+        for (TaskType type : TaskType.values()) {
+            for (String line : lines) {
+                if (type.name().equals(typeOf(line))) {
+                    sorted.add(line);
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private static boolean hasAny(Path... paths) {
+        for (Path path : paths) {
+            if (Files.exists(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int idOf(String line) {
+        return Integer.parseInt(line.substring(0, line.indexOf(',')));
+    }
+
+    private static String typeOf(String line) {
+        int start = line.indexOf(',') + 1;
+        return line.substring(start, line.indexOf(',', start));
+    }
+
+    private static Path journalPath(File snapshot) {
+        return snapshot.toPath().resolveSibling(snapshot.getName() + ".journal");
+    }
+
+    private static Path sealedPath(File snapshot) {
+        return snapshot.toPath().resolveSibling(snapshot.getName() + ".journal.sealed");
+    }
+}
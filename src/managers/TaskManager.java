@@ -1,61 +1,188 @@
-package managers;
-
-import tasks.Epic;
-import tasks.Subtask;
-import tasks.Task;
-import java.util.List;
-import java.util.Optional;
-
-public interface TaskManager {
-
-    Task addTask(Task task);
-
-    Epic addEpic(Epic epic);
-
-    Subtask addSubtask(Subtask subtask);
-
-
-    Task updateTask(Task taskToReplace);
-
-    Epic updateEpic(Epic epicToReplace);
-
-    Subtask updateSubtask(Subtask subtaskToReplace);
-
-
-    void clearTasks();
-
-    void clearEpics();
-
-    void clearSubtasks();
-
-
-    void deleteTask(int id);
-
-    void deleteEpic(int id);
-
-    void deleteSubtask(int id);
-
-
-    Optional<Task> getTask(int id);
-
-    Optional<Epic> getEpic(int id);
-
-    Optional<Subtask> getSubtaskById(int id);
-
-
-    List<Task> getTasks();
-
-    List<Epic> getEpics();
-
-    List<Subtask> getSubtasks();
-
-
-    List<Subtask> getSubtasksOfEpic(Epic epic);
-
-    List<Task> getHistory();
-
-    List<Task> getPrioritizedTasks();
-
-
-    boolean isOverlapping(Task newTask);
-}
+package managers;
+
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+public interface TaskManager {
+
+    Task addTask(Task task);
+
+    Epic addEpic(Epic epic);
+
+    Subtask addSubtask(Subtask subtask);
+
+
+    Task updateTask(Task taskToReplace);
+
+    Epic updateEpic(Epic epicToReplace);
+
+    Subtask updateSubtask(Subtask subtaskToReplace);
+
+
+    void clearTasks();
+
+    void clearEpics();
+
+    void clearSubtasks();
+
+
+    void deleteTask(int id);
+
+    void deleteEpic(int id);
+
+    void deleteSubtask(int id);
+
+
+    Optional<Task> getTask(int id);
+
+    Optional<Epic> getEpic(int id);
+
+    Optional<Subtask> getSubtaskById(int id);
+
+
+    List<Task> getTasks();
+
+    List<Epic> getEpics();
+
+    List<Subtask> getSubtasks();
+
+
+    /**
+     * Задачи без копирования: живое представление только для чтения.
+     * Отражает последующие изменения менеджера; гарантии обхода при одновременном изменении
+     * задаёт реализация. Для снимка, который не меняется, используйте getTasks().
+     */
+    Collection<Task> getTasksView();
+
+    Collection<Epic> getEpicsView();
+
+    Collection<Subtask> getSubtasksView();
+
+    /**
+     * Расписание без копирования, в порядке getPrioritizedTasks().
+     */
+    Collection<Task> getPrioritizedTasksView();
+
+
+    /**
+     * Задачи с данным статусом. Выборка стоит O(число найденных задач), а не O(число всех задач).
+     */
+    List<Task> getTasks(Status status);
+
+    List<Epic> getEpics(Status status);
+
+    List<Subtask> getSubtasks(Status status);
+
+    /**
+     * Число задач данного типа с данным статусом, без обхода задач.
+     */
+    int count(TaskType type, Status status);
+
+    /**
+     * Обходит задачи данного типа с данным статусом без копирования в список.
+     */
+    void forEach(TaskType type, Status status, Consumer<? super Task> action);
+
+    /**
+     * Параллельная выборка со свёрткой по задачам данного типа в общем пуле fork-join, например
+     * суммарная длительность подзадач по статусам:
+     * query(TaskType.SUBTASK, task -> task.getDuration() != null,
+     * Collectors.groupingBy(Task::getStatus, Collectors.summingLong(task -> task.getDuration().toMinutes()))).
+     */
+    default <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector) {
+        return query(type, filter, collector, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * То же в заданном пуле. Хранилище делится на части без копирования в списки, части сворачиваются
+     * параллельно и объединяются в порядке обхода хранилища. Вызов ждёт результата; filter и collector
+     * вызываются из потоков пула и не должны изменять менеджер.
+     */
+    <R> R query(TaskType type, Predicate<? super Task> filter, Collector<? super Task, ?, R> collector,
+                ForkJoinPool pool);
+
+
+    List<Subtask> getSubtasksOfEpic(Epic epic);
+
+    List<Task> getHistory();
+
+    /**
+     * Страница истории для постраничного вывода: не больше limit записей, начиная с offset.
+     */
+    List<Task> getHistory(int offset, int limit);
+
+    /**
+     * Число записей истории без её копирования; можно вызывать из любого потока, например для метрик.
+     */
+    int getHistorySize();
+
+    List<Task> getPrioritizedTasks();
+
+    /**
+     * Задачи и подзадачи, начинающиеся в [from, to), в порядке расписания.
+     * Выборка идёт по упорядоченному индексу за O(log n + k), остальное расписание не копируется.
+     */
+    List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Задачи, выполняемые в момент instant: start <= instant < end.
+     */
+    List<Task> getTasksActiveAt(LocalDateTime instant);
+
+    /**
+     * Первые limit задач расписания, начинающихся не раньше time.
+     */
+    List<Task> getNextTasks(LocalDateTime time, int limit);
+
+    /**
+     * Задачи и подзадачи без времени начала, по возрастанию id.
+     */
+    List<Task> getUnscheduledTasks();
+
+
+    boolean isOverlapping(Task newTask);
+
+    /**
+     * Самое раннее время начала не раньше after, с которого свободен интервал длительностью duration.
+     */
+    LocalDateTime findFreeSlot(LocalDateTime after, Duration duration);
+
+    /**
+     * Ставит задачу или подзадачу в первое свободное окно не раньше after и добавляет её.
+     * Длительность задачи должна быть положительной. Менеджер хранит и возвращает копию
+     * с назначенным временем начала; переданный объект получает id и время начала только после
+     * успешного добавления.
+     */
+    Task addToFirstFreeSlot(Task task, LocalDateTime after);
+
+    /**
+     * Раскладывает задачи по расписанию за один проход: каждая ставится в первое свободное окно
+     * после окончания предыдущей (первая — не раньше after), порядок задач сохраняется.
+     * Все задачи добавляются одним пакетом applyBatch; при ошибке ни одна не добавляется
+     * и переданные объекты не меняются. Возвращает добавленные копии в порядке задач.
+     */
+    List<Task> packTasks(List<? extends Task> tasks, LocalDateTime after);
+
+
+    /**
+     * Применяет пакет изменений целиком или не применяет ничего.
+     * Пересечения по времени проверяются один раз для итогового расписания, включая
+     * пересечения внутри пакета; статус и время каждого затронутого эпика пересчитываются один раз.
+     * Подзадачи в пакете могут ссылаться только на уже существующие эпики.
+     *
+     * @throws IllegalArgumentException если изменение ссылается на несуществующую задачу или эпик,
+     *                                  либо итоговое расписание содержит пересечения
+     */
+    void applyBatch(List<Change> changes);
+}
@@ -0,0 +1,136 @@
+package managers;
+
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Хранилище записей задач для ColumnarTaskManager: запись — номер ячейки, поля читаются и пишутся
+ * по этому номеру без объектов Task. Время хранится в минутах от эпохи, NO_TIME — отсутствие значения;
+ * подзадачи эпика связаны в двусвязный список через поля nextInEpic и prevInEpic.
+ */
+interface TaskStore {
+    int NONE = -1;
+    int NO_TIME = Integer.MIN_VALUE;
+
+    /**
+     * Ячейка задачи с этим id или NONE.
+     */
+    int slotOf(int id);
+
+    /**
+     * Записывает задачу в свободную ячейку; id задачи уже назначен и в хранилище не встречается.
+     */
+    int insert(Task task);
+
+    /**
+     * Перезаписывает поля задачи в её ячейке; тип и id не меняются.
+     */
+    void update(int slot, Task task);
+
+    void delete(int slot);
+
+    void clear();
+
+    /**
+     * Граница занятых ячеек: все записи лежат в [0, limit()).
+     */
+    int limit();
+
+    boolean isUsed(int slot);
+
+    TaskType type(int slot);
+
+    boolean is(int slot, TaskType type);
+
+    int id(int slot);
+
+    Status status(int slot);
+
+    boolean hasStatus(int slot, Status status);
+
+    void setStatus(int slot, Status status);
+
+    int epicId(int slot);
+
+    int start(int slot);
+
+    int duration(int slot);
+
+    void setTime(int slot, int start, int duration);
+
+    String name(int slot);
+
+    String description(int slot);
+
+    int nextInEpic(int slot);
+
+    int prevInEpic(int slot);
+
+    void setNextInEpic(int slot, int next);
+
+    void setPrevInEpic(int slot, int prev);
+
+    int size();
+
+    int size(TaskType type);
+
+    int count(TaskType type, Status status);
+
+    /**
+     * Новый объект задачи из ячейки; эпик создаётся без подзадач.
+     */
+    default Task materialize(int slot) {
+        int id = id(slot);
+        LocalDateTime start = timeOf(start(slot));
+        Duration duration = durationOf(duration(slot));
+        switch (type(slot)) {
+            case EPIC:
+                return new Epic(name(slot), description(slot), id, status(slot), duration, start);
+            case SUBTASK:
+                return new Subtask(id, name(slot), description(slot), status(slot), epicId(slot), duration, start);
+            default:
+                return new Task(id, name(slot), description(slot), status(slot), duration, start);
+        }
+    }
+
+    static int minuteOf(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        long minute = Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+        if (minute <= NO_TIME || minute >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Time is out of supported range: " + time);
+        }
+        return (int) minute;
+    }
+
+    static LocalDateTime timeOf(int minute) {
+        return minute == NO_TIME ? null : LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    static int minutesOf(Duration duration) {
+        if (duration == null) {
+            return NO_TIME;
+        }
+        long minutes = duration.toMinutes();
+        if (minutes <= NO_TIME || minutes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Duration is out of supported range: " + duration);
+        }
+        return (int) minutes;
+    }
+
+    static Duration durationOf(int minutes) {
+        return minutes == NO_TIME ? null : Duration.ofMinutes(minutes);
+    }
+
+    // Последовательные id перемешиваются, чтобы не образовывать длинных занятых серий в таблице
+    static int mix(int id) {
+        int mixed = id * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
@@ -1,5 +1,19 @@
 package managers;
 
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
 public enum TaskType {
-    TASK, EPIC, SUBTASK
+    TASK, EPIC, SUBTASK;
+
+    public static TaskType of(Task task) {
+        if (task instanceof Epic) {
+            return EPIC;
+        }
+        if (task instanceof Subtask) {
+            return SUBTASK;
+        }
+        return TASK;
+    }
 }
@@ -0,0 +1,105 @@
+package managers;
+
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Индекс занятых интервалов времени [start, end).
+ * Хранит только задачи с заданным временем начала и ненулевой длительностью,
+ * поэтому интервалы в индексе никогда не пересекаются и упорядочены по началу:
+ * проверка пересечения сводится к floor/ceiling-поиску за O(log n).
+ * Ключ — начало и id: при применении пакета две задачи могут на время занять одно начало,
+ * и удаление одной из них не должно выбрасывать из индекса другую.
+ */
+class TimeSlotIndex implements TimeSlots {
+    private static final Comparator<Task> SLOT_ORDER =
+            Comparator.comparing(Task::getStartTime).thenComparingInt(Task::getId);
+
+    private final NavigableSet<Task> slots = new TreeSet<>(SLOT_ORDER);
+    private final Map<Integer, Task> slotsById = new HashMap<>();
+
+    static boolean isScheduled(Task task) {
+        return task.getStartTime() != null && task.getDuration() != null
+                && !task.getDuration().isNegative() && !task.getDuration().isZero();
+    }
+
+    @Override
+    public boolean overlaps(Task task) {
+        if (!isScheduled(task)) {
+            return false;
+        }
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime();
+
+        Task before = slots.floor(probe(start, Integer.MAX_VALUE));
+        if (before != null && before.getEndTime().isAfter(start)) {
+            return true;
+        }
+        Task next = slots.higher(probe(start, Integer.MAX_VALUE));
+        return next != null && next.getStartTime().isBefore(end);
+    }
+
+    @Override
+    public Task activeAt(LocalDateTime instant) {
+        Task before = slots.floor(probe(instant, Integer.MAX_VALUE));
+        return before != null && before.getEndTime().isAfter(instant) ? before : null;
+    }
+
+    /**
+     * Обходит только занятые интервалы между after и найденным окном: O(log n + число пройденных окон).
+     */
+    @Override
+    public LocalDateTime findGap(LocalDateTime after, Duration duration) {
+        if (after == null || duration == null || duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Invalid slot request: after=%s, duration=%s"
+                    .formatted(after, duration));
+        }
+        LocalDateTime candidate = after;
+        Task before = activeAt(after);
+        if (before != null) {
+            candidate = before.getEndTime();
+        }
+        for (Task next : slots.tailSet(probe(candidate, Integer.MIN_VALUE), true)) {
+            if (!next.getStartTime().isBefore(candidate.plus(duration))) {
+                break;
+            }
+            candidate = next.getEndTime();
+        }
+        return candidate;
+    }
+
+    @Override
+    public void add(Task task) {
+        if (isScheduled(task)) {
+            slots.add(task);
+            slotsById.put(task.getId(), task);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        Task task = slotsById.remove(id);
+        if (task != null) {
+            slots.remove(task);
+        }
+    }
+
+    void clear() {
+        slots.clear();
+        slotsById.clear();
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    private static Task probe(LocalDateTime start, int id) {
+        return new Task(id, "", "", null, null, start);
+    }
+}
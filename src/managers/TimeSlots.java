@@ -0,0 +1,29 @@
+package managers;
+
+import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Занятые интервалы времени [start, end) задач с началом и ненулевой длительностью.
+ * Интервалы не пересекаются; через этот интерфейс с расписанием работают проверка пакета
+ * и общие запросы менеджеров с разными хранилищами.
+ */
+interface TimeSlots {
+
+    boolean overlaps(Task task);
+
+    /**
+     * Задача, занимающая момент instant (start <= instant < end), или null.
+     */
+    Task activeAt(LocalDateTime instant);
+
+    /**
+     * Самое раннее начало start >= after, при котором интервал [start, start + duration) свободен.
+     */
+    LocalDateTime findGap(LocalDateTime after, Duration duration);
+
+    void add(Task task);
+
+    void remove(int id);
+}
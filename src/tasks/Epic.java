@@ -4,15 +4,74 @@ import managers.TaskType;
 import status.Status;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+/**
+ * Эпик с агрегатами по подзадачам. Методы, читающие и меняющие подзадачи, синхронизированы на эпике:
+ * ConcurrentTaskManager меняет эпик из разных потоков, а эпик, полученный через getEpic,
+ * можно читать из любого потока. Представление getSubtasksView() не синхронизировано.
+ * <p>
+ * frozen() возвращает неизменяемую копию для снимков менеджера: статус, время и окончание
+ * запоминаются, подзадачи читаются из переданной неизменяемой коллекции, а любые изменения
+ * копии бросают UnsupportedOperationException.
+ */
 public class Epic extends Task {
-    private Map<Integer, Subtask> epicSubtasks;
+    private Map<Integer, SubtaskEntry> epicSubtasks;
+    // Агрегаты по подзадачам поддерживаются при каждом изменении, а не пересчитываются обходом
+    private final int[] statusCounts = new int[Status.values().length];
+    private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+    private Duration totalDuration = Duration.ZERO;
+    // Заданы только у замороженной копии
+    private Collection<Subtask> frozenSubtasks;
+    private LocalDateTime frozenEndTime;
+    private final Collection<Subtask> subtasksView = new AbstractCollection<>() {
+        @Override
+        public Iterator<Subtask> iterator() {
+            Iterator<SubtaskEntry> entries = epicSubtasks.values().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Subtask next() {
+                    return entries.next().subtask;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return epicSubtasks.size();
+        }
+    };
+
+    /**
+     * Значения, которые подзадача внесла в агрегаты эпика в момент добавления.
+     * Хранятся отдельно, чтобы корректно вычесть их, даже если объект подзадачи изменили на месте.
+     */
+    private static final class SubtaskEntry {
+        final Subtask subtask;
+        final Status status;
+        final Duration duration;
+        final LocalDateTime startTime;
+        final LocalDateTime endTime;
+
+        SubtaskEntry(Subtask subtask) {
+            this.subtask = subtask;
+            this.status = subtask.getStatus();
+            this.duration = subtask.getDuration();
+            this.startTime = subtask.getStartTime();
+            this.endTime = startTime != null && duration != null ? startTime.plus(duration) : null;
+        }
+    }
 
     public Epic(String name, String description) {
         super(name, description);
         this.epicSubtasks = new HashMap<>();
+        setStatus(Status.NEW);
     }
 
     public Epic(String name, String description, int id) {
@@ -30,35 +89,94 @@ public class Epic extends Task {
         this.epicSubtasks = new HashMap<>();
     }
 
-    public void addSubtask(Subtask subtask) {
-        epicSubtasks.put(subtask.getId(), subtask);
+    /**
+     * Неизменяемая копия эпика с его текущими статусом и временем; subtasks — неизменяемая коллекция
+     * подзадач эпика на тот же момент, копия её не копирует.
+     */
+    public synchronized Epic frozen(Collection<Subtask> subtasks) {
+        Epic copy = new Epic(getName(), getDescription(), getId(), getStatus(), getDuration(), getStartTime());
+        copy.frozenEndTime = getEndTime();
+        copy.frozenSubtasks = Collections.unmodifiableCollection(subtasks);
+        return copy;
+    }
+
+    public boolean isFrozen() {
+        return frozenSubtasks != null;
+    }
+
+    public synchronized void addSubtask(Subtask subtask) {
+        requireMutable();
+        putSubtask(subtask);
+        updateEpicStatus();
+        updateEpicTime();
+    }
+
+    public synchronized void removeSubtask(int subtaskId) {
+        requireMutable();
+        removeEntry(epicSubtasks.remove(subtaskId));
         updateEpicStatus();
         updateEpicTime();
     }
 
-    public void removeSubtask(int subtaskId) {
-        epicSubtasks.remove(subtaskId);
+    /**
+     * Пакетное изменение подзадач: сначала добавляются или заменяются upserts, затем удаляются removedIds.
+     * Статус и время эпика пересчитываются один раз.
+     */
+    public synchronized void applySubtaskChanges(Collection<Subtask> upserts, Collection<Integer> removedIds) {
+        requireMutable();
+        for (Subtask subtask : upserts) {
+            putSubtask(subtask);
+        }
+        for (Integer subtaskId : removedIds) {
+            removeEntry(epicSubtasks.remove(subtaskId));
+        }
         updateEpicStatus();
         updateEpicTime();
     }
 
-    public List<Subtask> getSubtasks() {
-        return new ArrayList<>(epicSubtasks.values());
+    public synchronized List<Subtask> getSubtasks() {
+        if (isFrozen()) {
+            return new ArrayList<>(frozenSubtasks);
+        }
+        List<Subtask> subtasks = new ArrayList<>(epicSubtasks.size());
+        for (SubtaskEntry entry : epicSubtasks.values()) {
+            subtasks.add(entry.subtask);
+        }
+        return subtasks;
+    }
+
+    /**
+     * Подзадачи эпика без копирования: представление только для чтения, отражающее
+     * последующие изменения эпика. Изменение эпика во время обхода приводит
+     * к ConcurrentModificationException; для снимка и для чтения из других потоков используйте getSubtasks().
+     */
+    public Collection<Subtask> getSubtasksView() {
+        return isFrozen() ? frozenSubtasks : subtasksView;
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        requireMutable();
         epicSubtasks.clear();
+        Arrays.fill(statusCounts, 0);
+        startTimes.clear();
+        endTimes.clear();
+        totalDuration = Duration.ZERO;
         updateEpicStatus();
         updateEpicTime();
     }
 
-    public Optional<Subtask> getSubtaskById(int subtaskId) {
-        return Optional.ofNullable(epicSubtasks.get(subtaskId));
+    public synchronized Optional<Subtask> getSubtaskById(int subtaskId) {
+        if (isFrozen()) {
+            return frozenSubtasks.stream().filter(subtask -> subtask.getId() == subtaskId).findFirst();
+        }
+        SubtaskEntry entry = epicSubtasks.get(subtaskId);
+        return Optional.ofNullable(entry != null ? entry.subtask : null);
     }
 
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
+        requireMutable();
         if (epicSubtasks.containsKey(subtask.getId())) {
-            epicSubtasks.replace(subtask.getId(), subtask);
+            putSubtask(subtask);
             updateEpicStatus();
             updateEpicTime();
         } else {
@@ -66,55 +184,121 @@ public class Epic extends Task {
         }
     }
 
-    public void updateEpicTime() {
-        updateStartTime();
-        updateTotalDuration();
-    }
-
-    private void updateTotalDuration() {
-        Duration totalDuration = epicSubtasks.values().stream()
-                .map(Subtask::getDuration)
-                .filter(Objects::nonNull)
-                .reduce(Duration.ZERO, Duration::plus);
+    public synchronized void updateEpicTime() {
+        requireMutable();
+        setStartTime(startTimes.isEmpty() ? null : startTimes.firstKey());
         setDuration(totalDuration);
     }
 
-    private void updateStartTime() {
-        LocalDateTime startTime = epicSubtasks.values().stream()
-                .map(Subtask::getStartTime)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
-        setStartTime(startTime);
+    /**
+     * Окончание эпика — самое позднее окончание его подзадач.
+     * Эпик без подзадач с запланированным временем заканчивается по собственным началу и длительности.
+     */
+    @Override
+    public synchronized LocalDateTime getEndTime() {
+        if (isFrozen()) {
+            return frozenEndTime;
+        }
+        if (!endTimes.isEmpty()) {
+            return endTimes.lastKey();
+        }
+        return getStartTime() != null && getDuration() != null ? super.getEndTime() : null;
     }
 
-    public Status getSubtasksStatus() {
-        if (epicSubtasks.values().stream().anyMatch(subtask -> subtask.getStatus() == Status.INPROGRESS)) {
+    public synchronized Status getSubtasksStatus() {
+        if (isFrozen()) {
+            return getStatus();
+        }
+        int size = epicSubtasks.size();
+        if (statusCounts[Status.INPROGRESS.ordinal()] > 0) {
             return Status.INPROGRESS;
         }
-        if (epicSubtasks.values().stream().allMatch(subtask -> subtask.getStatus() == Status.DONE)) {
+        if (statusCounts[Status.DONE.ordinal()] == size) {
             return Status.DONE;
         }
-        if (epicSubtasks.values().stream().allMatch(subtask -> subtask.getStatus() == Status.NEW)) {
+        if (statusCounts[Status.NEW.ordinal()] == size) {
             return Status.NEW;
         }
         return Status.INPROGRESS;
     }
 
+    @Override
+    public void setId(int id) {
+        requireMutable();
+        super.setId(id);
+    }
+
+    @Override
+    public void setStatus(Status status) {
+        requireMutable();
+        super.setStatus(status);
+    }
+
+    @Override
+    public void setDuration(Duration duration) {
+        requireMutable();
+        super.setDuration(duration);
+    }
+
+    @Override
+    public void setStartTime(LocalDateTime startTime) {
+        requireMutable();
+        super.setStartTime(startTime);
+    }
+
+    private void requireMutable() {
+        if (isFrozen()) {
+            throw new UnsupportedOperationException("Эпик из снимка менеджера не изменяется: " + getId());
+        }
+    }
+
     private void updateEpicStatus() {
         setStatus(getSubtasksStatus());
     }
 
+    private void putSubtask(Subtask subtask) {
+        SubtaskEntry entry = new SubtaskEntry(subtask);
+        removeEntry(epicSubtasks.put(subtask.getId(), entry));
+        if (entry.status != null) {
+            statusCounts[entry.status.ordinal()]++;
+        }
+        if (entry.duration != null) {
+            totalDuration = totalDuration.plus(entry.duration);
+        }
+        if (entry.startTime != null) {
+            startTimes.merge(entry.startTime, 1, Integer::sum);
+        }
+        if (entry.endTime != null) {
+            endTimes.merge(entry.endTime, 1, Integer::sum);
+        }
+    }
+
+    private void removeEntry(SubtaskEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.status != null) {
+            statusCounts[entry.status.ordinal()]--;
+        }
+        if (entry.duration != null) {
+            totalDuration = totalDuration.minus(entry.duration);
+        }
+        if (entry.startTime != null) {
+            decrement(startTimes, entry.startTime);
+        }
+        if (entry.endTime != null) {
+            decrement(endTimes, entry.endTime);
+        }
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> multiset, LocalDateTime key) {
+        multiset.computeIfPresent(key, (time, count) -> count > 1 ? count - 1 : null);
+    }
+
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-        return String.format("%d,%s,%s,%s,%s,%d,%s",
-                getId(),
-                TaskType.EPIC,
-                getName(),
-                getStatus(),
-                getDescription(),
-                getDuration() != null ? getDuration().toMinutes() : 0,
-                getStartTime() != null ? getStartTime().format(formatter) : "null");
+        return getId() + "," + TaskType.EPIC + "," + getName() + "," + getStatus() + "," + getDescription() + ","
+                + (getDuration() != null ? getDuration().toMinutes() : 0) + ","
+                + (getStartTime() != null ? getStartTime().format(FORMATTER) : "null");
     }
 }
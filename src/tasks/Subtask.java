@@ -4,7 +4,6 @@ import managers.TaskType;
 import status.Status;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class Subtask extends Task {
     private final int subtasksEpicId;
@@ -26,8 +25,7 @@ public class Subtask extends Task {
 
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-        return String.format("%d,%s,%s,%s,%s,%d,%d,%s", getId(), TaskType.SUBTASK, getName(), getStatus(),
-                getDescription(), subtasksEpicId, getDuration().toMinutes(), getStartTime().format(formatter));
+        return getId() + "," + TaskType.SUBTASK + "," + getName() + "," + getStatus() + "," + getDescription() + ","
+                + subtasksEpicId + "," + minutesOf(getDuration()) + "," + format(getStartTime());
     }
 }
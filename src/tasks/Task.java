@@ -15,6 +15,7 @@ public class Task {
     private Duration duration;
     private LocalDateTime startTime;
     protected static String format = "HH:mm dd.MM.yyyy";
+    protected static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(format);
 
     public Task(String name, String description, Duration duration, LocalDateTime startTime) {
         this.name = name;
@@ -112,11 +113,23 @@ public class Task {
         return format;
     }
 
+    public static DateTimeFormatter getFormatter() {
+        return FORMATTER;
+    }
+
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-        return String.format("%d,%s,%s,%s,%s,%d,%s", id, TaskType.TASK, name, status, description, duration.toMinutes(),
-                startTime.format(formatter));
+        return id + "," + TaskType.TASK + "," + name + "," + status + "," + description + ","
+                + minutesOf(duration) + "," + format(startTime);
+    }
+
+    // Поля без значения записываются как null и так же читаются при загрузке
+    protected static String minutesOf(Duration duration) {
+        return duration != null ? String.valueOf(duration.toMinutes()) : "null";
+    }
+
+    protected static String format(LocalDateTime time) {
+        return time != null ? time.format(FORMATTER) : "null";
     }
 
     public LocalDateTime getEndTime() {
@@ -0,0 +1,337 @@
+import managers.Change;
+import managers.InMemoryTaskManager;
+import managers.Managers;
+import managers.TaskManager;
+import managers.TaskType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class ColumnarTaskManagerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 9, 1, 8, 0);
+
+    @Test
+    public void columnarManagerShouldBehaveLikeInMemoryManager() {
+        assertBehavesLikeInMemoryManager(Managers.getColumnar());
+    }
+
+    @Test
+    public void offHeapManagerShouldBehaveLikeInMemoryManager() {
+        assertBehavesLikeInMemoryManager(Managers.getOffHeap());
+    }
+
+    @Test
+    public void offHeapStoreShouldReuseSlotsAndCompactTexts() {
+        TaskManager manager = Managers.getOffHeap();
+        String description = "Длинное описание задачи ".repeat(40);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            tasks.add(manager.addTask(new Task("Задача " + i, description + i, Duration.ofMinutes(30),
+                    START.plusHours(i))));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (Task task : tasks) {
+                manager.updateTask(new Task(task.getId(), task.getName(), description + round, task.getStatus(),
+                        task.getDuration(), task.getStartTime()));
+            }
+        }
+        for (int i = 0; i < tasks.size(); i += 2) {
+            manager.deleteTask(tasks.get(i).getId());
+        }
+        Task added = manager.addTask(new Task("Новая", null, Duration.ofMinutes(30), START.minusDays(1)));
+
+        Assertions.assertEquals(1_001, manager.getTasks().size(), "Неверное число задач после удаления");
+        Assertions.assertNull(manager.getTask(added.getId()).orElseThrow().getDescription(),
+                "Отсутствующее описание должно остаться null");
+        for (int i = 1; i < tasks.size(); i += 2) {
+            Task stored = manager.getTask(tasks.get(i).getId()).orElseThrow();
+            Assertions.assertEquals("Задача " + i, stored.getName(), "Название повреждено уплотнением");
+            Assertions.assertEquals(description + 4, stored.getDescription(), "Описание повреждено уплотнением");
+        }
+        Assertions.assertEquals(added, manager.getPrioritizedTasks().get(0), "Неверный порядок расписания");
+    }
+
+    private static void assertBehavesLikeInMemoryManager(TaskManager actual) {
+        TaskManager expected = new InMemoryTaskManager();
+        SplittableRandom random = new SplittableRandom(7);
+
+        for (int step = 0; step < 3_000; step++) {
+            int operation = random.nextInt(16);
+            List<Task> tasks = expected.getTasks();
+            List<Epic> epics = expected.getEpics();
+            List<Subtask> subtasks = expected.getSubtasks();
+            Task task = tasks.isEmpty() ? null : tasks.get(random.nextInt(tasks.size()));
+            Epic epic = epics.isEmpty() ? null : epics.get(random.nextInt(epics.size()));
+            Subtask subtask = subtasks.isEmpty() ? null : subtasks.get(random.nextInt(subtasks.size()));
+            LocalDateTime start = randomStart(random);
+            Duration duration = Duration.ofMinutes(15L * random.nextInt(7));
+            Status status = Status.values()[random.nextInt(Status.values().length)];
+            String name = "Задача " + random.nextInt(50);
+            LocalDateTime at = start != null ? start : START;
+
+            switch (operation) {
+                case 0, 1, 2 -> same(expected, actual, step, manager ->
+                        manager.addTask(new Task(0, name, "Описание", status, duration, start)));
+                case 3 -> same(expected, actual, step, manager -> manager.addEpic(new Epic(name, "Эпик")));
+                case 4, 5, 6 -> {
+                    int epicId = epic != null && random.nextInt(10) > 0 ? epic.getId() : 100_000;
+                    same(expected, actual, step, manager ->
+                            manager.addSubtask(new Subtask(0, name, "Подзадача", status, epicId, duration, start)));
+                }
+                case 7 -> {
+                    if (task != null) {
+                        same(expected, actual, step, manager -> manager.updateTask(
+                                new Task(task.getId(), name, "Изменена", status, duration, start)));
+                    }
+                }
+                case 8 -> {
+                    if (subtask != null) {
+                        same(expected, actual, step, manager -> manager.updateSubtask(new Subtask(subtask.getId(),
+                                name, "Изменена", status, subtask.getSubtasksEpicId(), duration, start)));
+                    }
+                }
+                case 9 -> {
+                    if (epic != null) {
+                        same(expected, actual, step, manager ->
+                                manager.updateEpic(new Epic(name, "Изменён", epic.getId())));
+                    }
+                }
+                case 10 -> {
+                    int id = 1 + random.nextInt(Math.max(1, step));
+                    boolean withEpic = random.nextInt(4) == 0;
+                    same(expected, actual, step, manager -> {
+                        manager.deleteTask(id);
+                        manager.deleteSubtask(id + 1);
+                        if (withEpic) {
+                            manager.deleteEpic(id + 2);
+                        }
+                        return null;
+                    });
+                }
+                case 11 -> {
+                    int id = 1 + random.nextInt(Math.max(1, step));
+                    same(expected, actual, step, manager -> List.of(manager.getTask(id), manager.getEpic(id),
+                            manager.getSubtaskById(id)));
+                }
+                case 12 -> {
+                    List<Supplier<Change>> batch = new ArrayList<>();
+                    batch.add(() -> Change.add(new Task(0, name, "Пакет", status, duration, start)));
+                    if (epic != null) {
+                        batch.add(() -> Change.add(new Subtask(0, name, "Пакет", status, epic.getId(),
+                                Duration.ofMinutes(30), at.plusHours(3))));
+                    }
+                    if (task != null && random.nextBoolean()) {
+                        batch.add(() -> Change.update(new Task(task.getId(), name, "Пакет", status, duration,
+                                at.plusHours(1))));
+                    }
+                    if (subtask != null && random.nextBoolean()) {
+                        batch.add(() -> Change.delete(subtask.getId()));
+                    }
+                    if (epic != null && random.nextInt(5) == 0) {
+                        batch.add(() -> Change.delete(epic.getId()));
+                    }
+                    same(expected, actual, step, manager -> {
+                        List<Change> changes = new ArrayList<>();
+                        for (Supplier<Change> change : batch) {
+                            changes.add(change.get());
+                        }
+                        manager.applyBatch(changes);
+                        return null;
+                    });
+                }
+                case 13 -> same(expected, actual, step, manager -> List.of(
+                        manager.findFreeSlot(at, Duration.ofMinutes(45)),
+                        manager.getTasksActiveAt(at.plusMinutes(7)),
+                        manager.getTasksStartingBetween(at, at.plusHours(6)),
+                        manager.getNextTasks(at, 5)));
+                case 14 -> {
+                    if (random.nextInt(10) == 0) {
+                        same(expected, actual, step, manager -> {
+                            manager.clearSubtasks();
+                            return null;
+                        });
+                    }
+                }
+                default -> {
+                    if (random.nextInt(20) == 0) {
+                        same(expected, actual, step, manager -> {
+                            manager.clearTasks();
+                            return null;
+                        });
+                    }
+                }
+            }
+            assertSameState(expected, actual, step);
+        }
+        Assertions.assertFalse(actual.getPrioritizedTasks().isEmpty(), "Случайные операции не наполнили доску");
+    }
+
+    @Test
+    public void timesShouldBeStoredWithMinutePrecision() {
+        TaskManager manager = Managers.getColumnar();
+        Task task = manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofSeconds(5_430),
+                START.withSecond(42).withNano(7)));
+
+        Assertions.assertEquals(START, task.getStartTime(), "Секунды начала не отброшены");
+        Assertions.assertEquals(Duration.ofMinutes(90), task.getDuration(), "Секунды длительности не отброшены");
+        Assertions.assertEquals(task, manager.getTask(task.getId()).orElseThrow(),
+                "Сохранённая задача отличается от возвращённой");
+        Assertions.assertEquals(START.plusMinutes(90), manager.findFreeSlot(START.plusSeconds(30),
+                Duration.ofMinutes(10)), "Свободное окно должно начинаться с целой минуты после задачи");
+        Assertions.assertEquals(START.plusMinutes(100).plusMinutes(1),
+                manager.findFreeSlot(START.plusMinutes(100).plusSeconds(1), Duration.ofMinutes(10)),
+                "Начало окна должно округляться вверх до минуты");
+        Assertions.assertEquals(List.of(task), manager.getTasksActiveAt(START.plusMinutes(89).plusSeconds(59)),
+                "Задача активна до конца последней минуты");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> manager.addTask(new Task("Древность", "", Duration.ofMinutes(1), LocalDateTime.MIN)));
+    }
+
+    @Test
+    public void rejectedTaskShouldKeepCallerTimesAndSubMinuteDurationShouldBeRejected() {
+        TaskManager manager = Managers.getColumnar();
+        manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1), START));
+        Task overlapping = new Task("Стрижка", "Сходить в барбершоп", Duration.ofSeconds(5_430),
+                START.plusMinutes(30).withSecond(42));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager.addTask(overlapping));
+        Assertions.assertEquals(START.plusMinutes(30).withSecond(42), overlapping.getStartTime(),
+                "Отклонённая задача не должна меняться");
+        Assertions.assertEquals(Duration.ofSeconds(5_430), overlapping.getDuration(),
+                "Отклонённая задача не должна меняться");
+
+        Task added = new Task("Уборка", "Пропылесосить", Duration.ofSeconds(90), START.plusHours(2).withSecond(15));
+        Task stored = manager.addTask(added);
+        Assertions.assertEquals(Duration.ofMinutes(1), stored.getDuration(), "Секунды длительности не отброшены");
+        Assertions.assertEquals(Duration.ofSeconds(90), added.getDuration(), "Переданная задача не должна меняться");
+        Assertions.assertEquals(stored.getId(), added.getId(), "Переданная задача должна получить id");
+
+        Task tooShort = new Task("Звонок", "Позвонить маме", Duration.ofSeconds(30), START.plusHours(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager.addTask(tooShort),
+                "Длительность меньше минуты должна отклоняться, а не обнуляться");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> manager.applyBatch(List.of(Change.add(tooShort))));
+        Assertions.assertEquals(Duration.ofSeconds(30), tooShort.getDuration(), "Отклонённая задача не должна меняться");
+        Assertions.assertEquals(2, manager.getTasks().size());
+    }
+
+    @Test
+    public void epicDurationShouldNotOverflowMinuteColumn() {
+        TaskManager manager = Managers.getColumnar();
+        Epic epic = manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста"));
+        for (int i = 0; i < 2; i++) {
+            manager.addSubtask(new Subtask("Этап " + i, "Описание", epic.getId(),
+                    Duration.ofMinutes(Integer.MAX_VALUE), null));
+        }
+        Assertions.assertEquals(Duration.ofMinutes(2L * Integer.MAX_VALUE),
+                manager.getEpic(epic.getId()).orElseThrow().getDuration(), "Длительность эпика посчитана неверно");
+    }
+
+    @Test
+    public void viewsShouldMaterializeLiveRecords() {
+        TaskManager manager = Managers.getColumnar();
+        Epic epic = manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста"));
+        Subtask first = manager.addSubtask(new Subtask("Опоры", "Рассчитать опоры", epic.getId(),
+                Duration.ofHours(2), START));
+        Collection<Subtask> subtasks = manager.getSubtasksView();
+        Collection<Task> schedule = manager.getPrioritizedTasksView();
+
+        Subtask second = manager.addSubtask(new Subtask("Пролёт", "Начертить пролёт", epic.getId(),
+                Duration.ofHours(1), START.minusHours(1)));
+        Assertions.assertEquals(2, subtasks.size(), "Представление не видит новую подзадачу");
+        Assertions.assertEquals(List.of(second, first), new ArrayList<>(schedule), "Неверный порядок расписания");
+
+        Subtask copy = manager.getSubtaskById(first.getId()).orElseThrow();
+        copy.setStatus(Status.DONE);
+        Assertions.assertEquals(Status.NEW, manager.getSubtaskById(first.getId()).orElseThrow().getStatus(),
+                "Изменение возвращённой копии не должно менять менеджер");
+
+        manager.updateSubtask(new Subtask(first.getId(), "Опоры", "Рассчитать опоры", Status.DONE, epic.getId(),
+                Duration.ofHours(2), START));
+        Epic stored = manager.getEpic(epic.getId()).orElseThrow();
+        Assertions.assertEquals(Status.INPROGRESS, stored.getStatus(), "Статус эпика не пересчитан");
+        Assertions.assertEquals(START.minusHours(1), stored.getStartTime(), "Начало эпика не пересчитано");
+        Assertions.assertEquals(START.plusHours(2), stored.getEndTime(), "Окончание эпика не пересчитано");
+        Assertions.assertEquals(1, manager.count(TaskType.SUBTASK, Status.DONE), "Счётчик статусов не обновлён");
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> subtasks.remove(first));
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> {
+            for (Subtask subtask : subtasks) {
+                manager.deleteSubtask(subtask.getId());
+            }
+        });
+    }
+
+    private static LocalDateTime randomStart(SplittableRandom random) {
+        return random.nextInt(10) == 0 ? null : START.plusMinutes(15L * random.nextInt(400));
+    }
+
+    // Выполняет одинаковый вызов на обоих менеджерах: результаты или исключения должны совпасть
+    private static void same(TaskManager expected, TaskManager actual, int step, Function<TaskManager, Object> call) {
+        Object expectedResult;
+        Object actualResult;
+        try {
+            expectedResult = call.apply(expected);
+        } catch (IllegalArgumentException e) {
+            expectedResult = e.getClass();
+        }
+        try {
+            actualResult = call.apply(actual);
+        } catch (IllegalArgumentException e) {
+            actualResult = e.getClass();
+        }
+        Assertions.assertEquals(expectedResult, actualResult, "Результаты разошлись на шаге " + step);
+    }
+
+    private static void assertSameState(TaskManager expected, TaskManager actual, int step) {
+        String message = "Состояние разошлось на шаге " + step;
+        Assertions.assertEquals(byId(expected.getTasks()), byId(actual.getTasks()), message);
+        Assertions.assertEquals(byId(expected.getEpics()), byId(actual.getEpics()), message);
+        Assertions.assertEquals(byId(expected.getSubtasks()), byId(actual.getSubtasks()), message);
+        Assertions.assertEquals(expected.getPrioritizedTasks(), actual.getPrioritizedTasks(), message);
+        // InMemoryTaskManager хранит в истории объект на момент просмотра, колоночный менеджер читает текущую запись
+        Assertions.assertEquals(ids(expected.getHistory()), ids(actual.getHistory()), message);
+        for (TaskType type : TaskType.values()) {
+            for (Status status : Status.values()) {
+                Assertions.assertEquals(expected.count(type, status), actual.count(type, status), message);
+            }
+        }
+        for (Epic epic : expected.getEpics()) {
+            Assertions.assertEquals(byId(expected.getSubtasksOfEpic(epic)), byId(actual.getSubtasksOfEpic(epic)),
+                    message);
+        }
+        for (TaskType type : TaskType.values()) {
+            Assertions.assertEquals(minutesByStatus(expected, type), minutesByStatus(actual, type), message);
+        }
+    }
+
+    private static Map<Status, Long> minutesByStatus(TaskManager manager, TaskType type) {
+        return manager.query(type, task -> task.getDuration() != null, Collectors.groupingBy(Task::getStatus,
+                Collectors.summingLong(task -> task.getDuration().toMinutes())));
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+
+    private static <T extends Task> List<T> byId(List<T> tasks) {
+        List<T> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingInt(Task::getId));
+        return sorted;
+    }
+}
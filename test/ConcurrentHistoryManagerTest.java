@@ -0,0 +1,96 @@
+import history.ConcurrentHistoryManager;
+import history.EvictionPolicy;
+import history.InMemoryHistoryManager;
+import tasks.Task;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentHistoryManagerTest {
+    private static final int TASKS = 1_000;
+
+    private final Task[] tasks = new Task[TASKS];
+
+    {
+        for (int i = 0; i < TASKS; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание");
+            tasks[i].setId(i + 1);
+        }
+    }
+
+    @Test
+    public void shouldKeepRecencyOrderOfInMemoryHistory() {
+        InMemoryHistoryManager expected = new InMemoryHistoryManager(100, EvictionPolicy.LRU);
+        ConcurrentHistoryManager history = new ConcurrentHistoryManager(100, EvictionPolicy.LRU);
+        Random random = new Random(7);
+        for (int step = 0; step < 50_000; step++) {
+            Task task = tasks[random.nextInt(300)];
+            if (random.nextInt(10) == 0) {
+                expected.remove(task.getId());
+                history.remove(task.getId());
+            } else {
+                expected.add(task);
+                history.add(task);
+            }
+            if (step % 5_000 == 0) {
+                Assertions.assertEquals(expected.getHistory(), history.getHistory(),
+                        "Порядок истории отличается на шаге " + step);
+            }
+        }
+        Assertions.assertEquals(expected.getHistory(), history.getHistory());
+    }
+
+    @Test
+    public void concurrentViewsShouldKeepEachThreadsOrder() throws Exception {
+        int threads = 8;
+        int perThread = TASKS / threads;
+        ConcurrentHistoryManager history = new ConcurrentHistoryManager(TASKS, EvictionPolicy.LRU);
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                history.add(tasks[thread * perThread + i]);
+            }
+        });
+
+        List<Task> result = history.getHistory();
+        Assertions.assertEquals(TASKS, result.size(), "Просмотры потеряны");
+        int[] lastIndex = new int[threads];
+        for (Task task : result) {
+            int thread = (task.getId() - 1) / perThread;
+            int index = (task.getId() - 1) % perThread;
+            Assertions.assertEquals(lastIndex[thread], index, "Нарушен порядок просмотров потока " + thread);
+            lastIndex[thread]++;
+        }
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
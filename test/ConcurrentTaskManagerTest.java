@@ -0,0 +1,202 @@
+import managers.Managers;
+import managers.TaskManager;
+import managers.TaskType;
+import status.Status;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class ConcurrentTaskManagerTest {
+    private static final int THREADS = 8;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final TaskManager taskManager = Managers.getConcurrent();
+
+    @Test
+    public void concurrentAddsShouldGetUniqueIdsAndKeepEveryTask() throws Exception {
+        int perThread = 2_000;
+        runConcurrently(thread -> {
+            for (int i = 0; i < perThread; i++) {
+                int slot = thread * perThread + i;
+                taskManager.addTask(new Task("Задача " + slot, "Описание",
+                        Duration.ofMinutes(10), START.plusMinutes(slot * 10L)));
+                taskManager.addTask(new Task("Без времени " + slot, "Описание"));
+            }
+            return null;
+        });
+
+        List<Task> tasks = taskManager.getTasks();
+        Set<Integer> ids = new HashSet<>();
+        for (Task task : tasks) {
+            ids.add(task.getId());
+        }
+        Assertions.assertEquals(THREADS * perThread * 2, tasks.size(), "Часть задач потеряна");
+        Assertions.assertEquals(tasks.size(), ids.size(), "Выданы повторяющиеся id");
+        Assertions.assertEquals(tasks.size(), taskManager.getPrioritizedTasks().size(),
+                "Расписание не совпадает с хранилищем");
+    }
+
+    @Test
+    public void overlapCheckAndInsertShouldBeAtomic() throws Exception {
+        int slots = 500;
+        AtomicInteger rejected = new AtomicInteger();
+        // Все потоки претендуют на одни и те же интервалы: каждый интервал достаётся ровно одному
+        runConcurrently(thread -> {
+            for (int slot = 0; slot < slots; slot++) {
+                try {
+                    taskManager.addTask(new Task("Поток " + thread, "Интервал " + slot,
+                            Duration.ofMinutes(30), START.plusHours(slot)));
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        Assertions.assertEquals(slots, taskManager.getTasks().size(), "Интервал занят несколькими задачами");
+        Assertions.assertEquals(slots * (THREADS - 1), rejected.get(), "Неверное число отклонённых задач");
+    }
+
+    @Test
+    public void subtasksOfDifferentEpicsShouldBeUpdatedConcurrently() throws Exception {
+        int perEpic = 300;
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            epics.add(taskManager.addEpic(new Epic("Эпик " + i, "Описание")));
+        }
+
+        runConcurrently(thread -> {
+            Epic epic = epics.get(thread);
+            for (int i = 0; i < perEpic; i++) {
+                Subtask subtask = taskManager.addSubtask(new Subtask("Подзадача " + i, "Описание", epic.getId(),
+                        Duration.ofMinutes(5), START.plusWeeks(thread).plusMinutes(i * 5L)));
+                taskManager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(),
+                        Status.DONE, epic.getId(), subtask.getDuration(), subtask.getStartTime()));
+                // Чтения идут параллельно с изменениями других эпиков
+                taskManager.getEpic(epics.get((thread + 1) % THREADS).getId()).ifPresent(Epic::getSubtasks);
+                taskManager.getPrioritizedTasks();
+            }
+            return null;
+        });
+
+        for (Epic epic : epics) {
+            Assertions.assertEquals(perEpic, taskManager.getSubtasksOfEpic(epic).size(), "Подзадачи эпика потеряны");
+            Assertions.assertEquals(Status.DONE, epic.getStatus(), "Статус эпика не пересчитан");
+            Assertions.assertEquals(Duration.ofMinutes(5L * perEpic), epic.getDuration(),
+                    "Длительность эпика не пересчитана");
+        }
+        Assertions.assertEquals(THREADS * perEpic, taskManager.getSubtasks().size(), "Подзадачи потеряны");
+    }
+
+    @Test
+    public void unscheduledSubtasksShouldNotWaitForScheduleOfAnotherEpic() throws Exception {
+        Epic busyEpic = taskManager.addEpic(new Epic("Эпик со временем", "Описание"));
+        Epic freeEpic = taskManager.addEpic(new Epic("Эпик без времени", "Описание"));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Проверка пересечения этой подзадачи останавливается, удерживая блокировку расписания
+        Subtask blocking = new Subtask("Подзадача", "Описание", busyEpic.getId(), Duration.ofMinutes(30), START) {
+            @Override
+            public LocalDateTime getEndTime() {
+                if (entered.getCount() > 0) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getEndTime();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Subtask> scheduled = executor.submit(() -> taskManager.addSubtask(blocking));
+            entered.await();
+            Future<Void> unscheduled = executor.submit(() -> {
+                Subtask subtask = taskManager.addSubtask(new Subtask("Без времени", "Описание", freeEpic.getId(),
+                        null, null));
+                taskManager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(),
+                        Status.DONE, freeEpic.getId(), null, null));
+                taskManager.deleteSubtask(subtask.getId());
+                return null;
+            });
+            Assertions.assertDoesNotThrow(() -> unscheduled.get(10, TimeUnit.SECONDS),
+                    "Изменения подзадач без времени не должны ждать расписания другого эпика");
+            release.countDown();
+            Assertions.assertEquals(blocking, scheduled.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(List.of(blocking), taskManager.getSubtasks());
+        Assertions.assertTrue(freeEpic.getSubtasks().isEmpty(), "Подзадача без времени не удалена из эпика");
+    }
+
+    @Test
+    public void queryShouldSeeEveryTaskAddedBeforeIt() throws Exception {
+        int perThread = 1_000;
+        AtomicInteger added = new AtomicInteger();
+        runConcurrently(thread -> {
+            if (thread == 0) {
+                // Запросы идут одновременно с добавлением: каждый видит не меньше задач, чем было до его начала
+                while (added.get() < (THREADS - 1) * perThread) {
+                    int before = added.get();
+                    long seen = taskManager.query(TaskType.TASK, task -> true, Collectors.counting());
+                    Assertions.assertTrue(seen >= before, "Запрос не увидел добавленные задачи");
+                }
+                return null;
+            }
+            for (int i = 0; i < perThread; i++) {
+                taskManager.addTask(new Task("Задача", "Описание"));
+                added.incrementAndGet();
+            }
+            return null;
+        });
+        Assertions.assertEquals((long) (THREADS - 1) * perThread,
+                taskManager.query(TaskType.TASK, task -> "Задача".equals(task.getName()), Collectors.counting()),
+                "Итоговый запрос вернул неверное число задач");
+    }
+
+    private interface Worker {
+        Void run(int thread) throws Exception;
+    }
+
+    private void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                Callable<Void> call = () -> {
+                    start.await();
+                    return worker.run(thread);
+                };
+                futures.add(executor.submit(call));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
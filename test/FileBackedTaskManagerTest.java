@@ -1,4 +1,10 @@
+import history.InMemoryHistoryManager;
+import managers.Change;
+import managers.Durability;
 import managers.FileBackedTaskManager;
+import managers.ManagerSaveException;
+import managers.SnapshotFormat;
+import managers.TaskType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import status.Status;
@@ -8,13 +14,19 @@ import tasks.Task;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FileBackedTaskManagerTest {
     private FileBackedTaskManager fileBackedTaskManager;
@@ -93,4 +105,463 @@ public class FileBackedTaskManagerTest {
         assertEquals(Duration.ofMinutes(20160), subtask.getDuration());
         assertEquals(LocalDateTime.of(2024, 10, 13, 8, 0), subtask.getStartTime());
     }
+
+    @Test
+    public void journalShouldAppendRecordsAndReplayThemOnLoad() throws IOException {
+        File journalFile = new File(file.getPath() + ".journal");
+        Task task = new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+        Task removedTask = new Task("Стрижка", "Сходить в барбершоп", Duration.ofHours(3),
+                LocalDateTime.of(2024, 9, 24, 17, 0));
+        Epic epic = new Epic("Чертежи моста", "Сделать проект моста через реку Волга");
+
+        try (FileBackedTaskManager journaledManager = new FileBackedTaskManager(file, true)) {
+            journaledManager.addTask(task);
+            journaledManager.addTask(removedTask);
+            journaledManager.addEpic(epic);
+            Subtask subtask = new Subtask("Пролетное строение", "Начертить пролетное строение", epic.getId(),
+                    Duration.ofDays(14), LocalDateTime.of(2024, 10, 13, 8, 0));
+            journaledManager.addSubtask(subtask);
+            journaledManager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(),
+                    Status.DONE, epic.getId(), subtask.getDuration(), subtask.getStartTime()));
+            journaledManager.deleteTask(removedTask.getId());
+        }
+
+        assertEquals(0, Files.size(file.toPath()), "Снимок не должен перезаписываться при каждом изменении");
+        assertEquals(6, Files.readAllLines(journalFile.toPath()).size(), "Каждое изменение — одна запись журнала");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file, true);
+        assertEquals(List.of(task), loadedManager.getTasks());
+        assertEquals(1, loadedManager.getSubtasks().size());
+        assertEquals(Status.DONE, loadedManager.getSubtasks().get(0).getStatus());
+        assertEquals(Status.DONE, loadedManager.getEpics().get(0).getStatus());
+        loadedManager.close();
+    }
+
+    @Test
+    public void compactionShouldFoldJournalIntoSnapshot() throws IOException {
+        File journalFile = new File(file.getPath() + ".journal");
+        try (FileBackedTaskManager journaledManager = new FileBackedTaskManager(file, true, 3)) {
+            for (int i = 0; i < 10; i++) {
+                journaledManager.addTask(new Task("Задача " + i, "Описание", Duration.ofMinutes(30),
+                        LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(i)));
+            }
+            journaledManager.clearTasks();
+            journaledManager.addTask(new Task("Последняя", "Описание", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0)));
+            journaledManager.compact();
+        }
+
+        assertEquals(0, Files.size(journalFile.toPath()), "Журнал должен быть свернут");
+        List<String> snapshot = Files.readAllLines(file.toPath());
+        assertEquals(2, snapshot.size(), "Снимок должен содержать заголовок и одну задачу");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+        assertEquals(1, loadedManager.getTasks().size());
+        assertEquals("Последняя", loadedManager.getTasks().get(0).getName());
+    }
+
+    @Test
+    public void loadShouldRecoverFromInterruptedCompaction() throws IOException {
+        Files.writeString(file.toPath(), "Список сохраненных задач:\n" +
+                "1,TASK,Переезд,NEW,Собрать вещи,60,10:20 23.09.2024\n");
+        Files.writeString(new File(file.getPath() + ".journal.sealed").toPath(),
+                "PUT,2,TASK,Стрижка,NEW,Сходить в барбершоп,180,17:00 24.09.2024\n" +
+                        "DELETE,1\n");
+        Files.writeString(new File(file.getPath() + ".journal").toPath(),
+                "PUT,2,TASK,Стрижка,DONE,Сходить в барбершоп,180,17:00 24.09.2024\n" +
+                        "PUT,3,TASK,Обре");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+        List<Task> tasks = loadedManager.getTasks();
+
+        assertEquals(1, tasks.size());
+        assertEquals(2, tasks.get(0).getId());
+        assertEquals(Status.DONE, tasks.get(0).getStatus());
+        assertEquals(false, new File(file.getPath() + ".journal").exists(),
+                "Остаток журнала должен быть свернут при загрузке без журнального режима");
+    }
+
+    @Test
+    public void groupCommitShouldAcknowledgeBatchedChanges() throws IOException, InterruptedException,
+            ExecutionException {
+        File journalFile = new File(file.getPath() + ".journal");
+        FileBackedTaskManager journaledManager = new FileBackedTaskManager(file, Durability.GROUP_COMMIT, 5, 100_000);
+        for (int i = 0; i < 1_000; i++) {
+            journaledManager.addTask(new Task("Задача " + i, "Описание", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(i)));
+        }
+        journaledManager.sync().get();
+
+        assertEquals(1_000, Files.readAllLines(journalFile.toPath()).size(),
+                "После подтверждения все изменения должны быть в журнале");
+        journaledManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file, Durability.BUFFERED);
+        assertEquals(1_000, loadedManager.getTasks().size());
+        loadedManager.deleteTask(loadedManager.getTasks().get(0).getId());
+        loadedManager.close();
+
+        assertEquals(999, FileBackedTaskManager.loadFromFile(file).getTasks().size());
+    }
+
+    @Test
+    public void binarySnapshotShouldRoundTripAndBeDetectedOnLoad() {
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        Task task = new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+        binaryManager.addTask(task);
+        Epic epic = new Epic("Чертежи моста", "Сделать проект моста через реку Волга");
+        binaryManager.addEpic(epic);
+        Subtask subtask = new Subtask("Пролетное строение", "Начертить пролетное строение", epic.getId(),
+                Duration.ofDays(14), LocalDateTime.of(2024, 10, 13, 8, 0));
+        binaryManager.addSubtask(subtask);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals(SnapshotFormat.BINARY, loadedManager.getSnapshotFormat());
+        assertEquals(List.of(task), loadedManager.getTasks());
+        assertEquals(List.of(subtask), loadedManager.getSubtasks());
+        assertEquals(epic.getId(), loadedManager.getSubtasks().get(0).getSubtasksEpicId());
+        assertEquals(subtask.getStartTime(), loadedManager.getEpics().get(0).getStartTime());
+    }
+
+    @Test
+    public void snapshotWithOverlappingTasksShouldNotLoad() throws IOException {
+        Files.writeString(file.toPath(), "Список сохраненных задач:\n" +
+                "1,TASK,Переезд,NEW,Собрать вещи,60,10:00 23.09.2024\n" +
+                "2,TASK,Стрижка,NEW,Сходить в барбершоп,60,10:30 23.09.2024\n");
+
+        assertThrows(IllegalArgumentException.class, () -> FileBackedTaskManager.loadFromFile(file),
+                "Снимок с пересекающимися задачами не должен загружаться");
+    }
+
+    @Test
+    public void startBefore1970ShouldBeTruncatedToMinuteInEveryFormat() throws IOException {
+        File binaryFile = File.createTempFile("test", ".bin");
+        for (FileBackedTaskManager manager : List.of(fileBackedTaskManager,
+                new FileBackedTaskManager(binaryFile, SnapshotFormat.BINARY))) {
+            manager.addTask(new Task(0, "Посадка", "Сесть на Луну", Status.DONE, Duration.ofMinutes(10),
+                    LocalDateTime.of(1969, 7, 20, 20, 17, 40)));
+        }
+        for (File snapshot : List.of(file, binaryFile)) {
+            assertEquals(LocalDateTime.of(1969, 7, 20, 20, 17),
+                    FileBackedTaskManager.loadFromFile(snapshot).getTasks().get(0).getStartTime(),
+                    "Секунды начала должны отбрасываться одинаково: " + snapshot.getName());
+        }
+    }
+
+    @Test
+    public void textSnapshotShouldConvertToBinary() throws IOException {
+        Files.writeString(file.toPath(), "Список сохраненных задач:\n" +
+                "1,TASK,Переезд,NEW,Собрать вещи,60,10:20 23.09.2024\n" +
+                "2,EPIC,Чертежи моста,NEW,Сделать проект моста через реку Волга\n" +
+                "3,SUBTASK,Пролетное строение,DONE,Начертить пролетное строение,2,20160,08:00 13.10.2024\n");
+        File binaryFile = File.createTempFile("test", ".bin");
+
+        FileBackedTaskManager.convertToBinary(file, binaryFile);
+        FileBackedTaskManager textManager = FileBackedTaskManager.loadFromFile(file);
+        FileBackedTaskManager binaryManager = FileBackedTaskManager.loadFromFile(binaryFile);
+
+        assertEquals(SnapshotFormat.BINARY, binaryManager.getSnapshotFormat());
+        assertEquals(textManager.getTasks(), binaryManager.getTasks());
+        assertEquals(textManager.getEpics(), binaryManager.getEpics());
+        assertEquals(textManager.getSubtasks(), binaryManager.getSubtasks());
+    }
+
+    @Test
+    public void mappedSnapshotShouldMaterializeTasksOnDemand() {
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        Task task = binaryManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20)));
+        Epic epic = binaryManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Subtask subtask1 = binaryManager.addSubtask(new Subtask("Пролетное строение", "Начертить пролетное строение",
+                epic.getId(), Duration.ofDays(14), LocalDateTime.of(2024, 10, 13, 8, 0)));
+        Subtask subtask2 = binaryManager.addSubtask(new Subtask("Опоры", "Начертить опоры",
+                epic.getId(), Duration.ofDays(8), LocalDateTime.of(2024, 10, 28, 8, 0)));
+        binaryManager.updateSubtask(new Subtask(subtask2.getId(), subtask2.getName(), subtask2.getDescription(),
+                Status.DONE, epic.getId(), subtask2.getDuration(), subtask2.getStartTime()));
+
+        FileBackedTaskManager mappedManager = FileBackedTaskManager.loadMapped(file);
+
+        assertEquals(subtask1, mappedManager.getSubtaskById(subtask1.getId()).orElseThrow());
+        Epic loadedEpic = mappedManager.getEpic(epic.getId()).orElseThrow();
+        assertEquals(2, loadedEpic.getSubtasks().size(), "Эпик должен загружаться вместе со всеми подзадачами");
+        assertEquals(Status.INPROGRESS, loadedEpic.getStatus());
+        assertEquals(true, mappedManager.getTask(epic.getId()).isEmpty(), "Эпик не должен возвращаться как задача");
+        assertEquals(task, mappedManager.getTask(task.getId()).orElseThrow());
+
+        Task added = mappedManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofHours(3),
+                LocalDateTime.of(2024, 9, 24, 17, 0)));
+        assertEquals(subtask2.getId() + 1, added.getId(), "Новые id не должны пересекаться с id из снимка");
+        assertEquals(2, mappedManager.getTasks().size());
+        assertEquals(2, mappedManager.getSubtasks().size());
+    }
+
+    @Test
+    public void queryShouldSeeTasksOfMappedSnapshot() {
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        binaryManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20)));
+        Task done = binaryManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofHours(3),
+                LocalDateTime.of(2024, 9, 24, 17, 0)));
+        binaryManager.updateTask(new Task(done.getId(), done.getName(), done.getDescription(), Status.DONE,
+                done.getDuration(), done.getStartTime()));
+
+        FileBackedTaskManager mappedManager = FileBackedTaskManager.loadMapped(file);
+
+        assertEquals(List.of(done.getId()), mappedManager.query(TaskType.TASK,
+                        task -> task.getStatus() == Status.DONE, Collectors.mapping(Task::getId, Collectors.toList())),
+                "Запрос должен видеть задачи снимка, которые ещё не загружены в память");
+        assertEquals(2L, mappedManager.query(TaskType.TASK, task -> true, Collectors.counting()));
+    }
+
+    @Test
+    public void loadShouldRestoreSubtasksListedBeforeTheirEpicWithoutRewritingFile() throws IOException {
+        String fileContent = "Список сохраненных задач:\n" +
+                "7,SUBTASK,Опоры,DONE,Начертить опоры,5,11520,08:00 28.10.2024\n" +
+                "3,TASK,Переезд,NEW,Собрать вещи,60,10:20 23.09.2024\n" +
+                "5,EPIC,Чертежи моста,NEW,Сделать проект моста через реку Волга\n" +
+                "6,SUBTASK,Пролетное строение,NEW,Начертить пролетное строение,5,20160,08:00 13.10.2024\n";
+        Files.writeString(file.toPath(), fileContent);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals(fileContent, Files.readString(file.toPath()), "Загрузка не должна перезаписывать файл");
+        assertEquals(2, loadedManager.getSubtasks().size());
+        Epic epic = loadedManager.getEpic(5).orElseThrow();
+        assertEquals(Status.INPROGRESS, epic.getStatus());
+        assertEquals(LocalDateTime.of(2024, 10, 13, 8, 0), epic.getStartTime());
+        assertEquals(List.of(3, 6, 7), loadedManager.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Расписание должно быть упорядочено по времени начала");
+        assertEquals(8, loadedManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofHours(3),
+                LocalDateTime.of(2024, 9, 24, 17, 0))).getId(), "Новые id должны продолжать сохраненные");
+    }
+
+    @Test
+    public void applyBatchShouldPersistOnceAndReplayEpicDeletion() throws IOException {
+        File journalFile = new File(file.getPath() + ".journal");
+        try (FileBackedTaskManager journaledManager = new FileBackedTaskManager(file, true)) {
+            Epic epic = journaledManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+            Subtask subtask = new Subtask("Пролетное строение", "Начертить пролетное строение", epic.getId(),
+                    Duration.ofDays(14), LocalDateTime.of(2024, 10, 13, 8, 0));
+            Task task = new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                    LocalDateTime.of(2024, 9, 23, 10, 20));
+            journaledManager.applyBatch(List.of(Change.add(subtask), Change.add(task)));
+            journaledManager.applyBatch(List.of(Change.delete(epic.getId())));
+        }
+
+        assertEquals(4, Files.readAllLines(journalFile.toPath()).size(), "Каждое изменение пакета — одна запись");
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+        assertEquals(1, loadedManager.getTasks().size());
+        assertEquals(0, loadedManager.getEpics().size());
+        assertEquals(0, loadedManager.getSubtasks().size(), "Подзадачи удаленного эпика должны удаляться");
+    }
+
+    @Test
+    public void idsOfDeletedTasksShouldNotBeReusedAfterRestart() throws IOException {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            FileBackedTaskManager manager = new FileBackedTaskManager(file, format);
+            Task kept = manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(1)));
+            Task removed = manager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(2)));
+            manager.deleteTask(removed.getId());
+
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+            assertEquals(List.of(kept), loadedManager.getTasks());
+            Task added = loadedManager.addTask(new Task("Уборка", "Пропылесосить", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(3)));
+            assertEquals(removed.getId() + 1, added.getId(),
+                    "Id удаленной задачи не должен выдаваться повторно: " + format);
+        }
+
+        try (FileBackedTaskManager journaledManager = FileBackedTaskManager.loadFromFile(file, true)) {
+            journaledManager.clearTasks();
+            Task removed = journaledManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0).plusHours(4)));
+            journaledManager.deleteTask(removed.getId());
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file, true);
+            assertEquals(removed.getId() + 1, loadedManager.addEpic(new Epic("Ремонт", "Покрасить стены")).getId(),
+                    "Граница id должна восстанавливаться из журнала");
+            loadedManager.close();
+        }
+    }
+
+    @Test
+    public void historyShouldBeRestoredAfterRestart() throws Exception {
+        Task task = new Task("Переезд", "Собрать вещи", Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 9, 23, 10, 0));
+        Epic epic = new Epic("Чертежи моста", "Сделать проект моста через реку Волга");
+        Task removed = new Task("Стрижка", "Сходить в барбершоп", Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 9, 23, 12, 0));
+        try (FileBackedTaskManager manager = new FileBackedTaskManager(file)) {
+            manager.addTask(task);
+            manager.addEpic(epic);
+            manager.addTask(removed);
+            manager.getEpic(epic.getId());
+            manager.getTask(removed.getId());
+            manager.getTask(task.getId());
+            manager.deleteTask(removed.getId());
+        }
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(file);
+        assertEquals(List.of(epic, task), loadedManager.getHistory(),
+                "История должна восстанавливаться в порядке просмотров без удаленных задач");
+        loadedManager.getEpic(epic.getId());
+        loadedManager.sync().get();
+        assertEquals(List.of(task, epic), FileBackedTaskManager.loadFromFile(file).getHistory(),
+                "Новые просмотры должны дописываться к восстановленной истории");
+        loadedManager.close();
+    }
+
+    @Test
+    public void historyFileShouldStayBounded() throws Exception {
+        File historyFile = new File(file.getPath() + ".history");
+        try (FileBackedTaskManager manager = new FileBackedTaskManager(file)) {
+            Task task = manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(30),
+                    LocalDateTime.of(2024, 9, 23, 10, 0)));
+            for (int i = 0; i < 50_000; i++) {
+                manager.getTask(task.getId());
+                if (i % 1_000 == 0) {
+                    manager.sync().get();
+                }
+            }
+            manager.sync().get();
+            assertTrue(Files.readAllLines(historyFile.toPath()).size()
+                            <= 4 * InMemoryHistoryManager.DEFAULT_CAPACITY,
+                    "Файл истории должен уплотняться");
+            assertEquals(List.of(task), FileBackedTaskManager.loadFromFile(file).getHistory());
+        }
+    }
+
+    @Test
+    public void historyWriterShouldStopWhenIdle() throws Exception {
+        String writerName = "history-writer-" + file.getName() + ".history";
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        Task task = manager.addTask(new Task("Переезд", "Собрать вещи"));
+        manager.getTask(task.getId());
+        manager.sync().get();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (hasThread(writerName) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(hasThread(writerName), "Поток записи истории незакрытого менеджера должен завершаться");
+
+        manager.getTask(task.getId());
+        manager.sync().get();
+        assertEquals(List.of(task), FileBackedTaskManager.loadFromFile(file).getHistory(),
+                "После перезапуска потока просмотры должны записываться");
+    }
+
+    @Test
+    public void historyWriteFailureShouldBeReported() throws Exception {
+        File historyFile = new File(file.getPath() + ".history");
+        assertTrue(historyFile.mkdir(), "Файл истории подменяется каталогом, чтобы запись не удалась");
+        try {
+            FileBackedTaskManager manager = new FileBackedTaskManager(file);
+            Task task = manager.addTask(new Task("Переезд", "Собрать вещи"));
+            manager.getTask(task.getId());
+
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> manager.sync().get(10, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof ManagerSaveException, "Ошибка записи истории должна сообщаться");
+            manager.deleteTask(task.getId());
+            assertThrows(ManagerSaveException.class, manager::close);
+            assertTrue(historyFile.delete());
+            assertEquals(List.of(), FileBackedTaskManager.loadFromFile(file).getTasks(),
+                    "Ошибка истории не должна мешать записи удаления");
+        } finally {
+            historyFile.delete();
+        }
+    }
+
+    @Test
+    public void deletingUnviewedTasksShouldNotWriteHistory() throws Exception {
+        File historyFile = new File(file.getPath() + ".history");
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        for (int i = 0; i < 1_000; i++) {
+            manager.addTask(new Task("Задача " + i, "Описание"));
+        }
+        manager.deleteTask(manager.getTasks().get(0).getId());
+        manager.clearTasks();
+        manager.sync().get();
+        assertFalse(historyFile.exists(), "Удаление непросмотренных задач не должно писать историю");
+
+        Task viewed = manager.addTask(new Task("Переезд", "Собрать вещи"));
+        Epic epic = manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        manager.getTask(viewed.getId());
+        manager.getEpic(epic.getId());
+        manager.clearTasks();
+        manager.sync().get();
+        assertEquals(List.of(String.valueOf(epic.getId())), Files.readAllLines(historyFile.toPath()),
+                "Очистка должна переписать файл истории одним событием");
+        assertEquals(List.of(epic), FileBackedTaskManager.loadFromFile(file).getHistory());
+        manager.close();
+    }
+
+    private static boolean hasThread(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals(name) && thread.isAlive());
+    }
+
+    @Test
+    public void tasksWithoutTimeShouldBePersistedInEveryFormat() throws IOException {
+        File binaryFile = File.createTempFile("test", ".bin");
+        File journaledFile = File.createTempFile("test", ".csv");
+        List<FileBackedTaskManager> managers = List.of(fileBackedTaskManager,
+                new FileBackedTaskManager(binaryFile, SnapshotFormat.BINARY),
+                new FileBackedTaskManager(journaledFile, Durability.IMMEDIATE));
+        List<File> files = List.of(file, binaryFile, journaledFile);
+        for (int i = 0; i < managers.size(); i++) {
+            FileBackedTaskManager manager = managers.get(i);
+            Task task = manager.addTask(new Task("Переезд", "Собрать вещи"));
+            Epic epic = manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+            Subtask subtask = manager.addSubtask(new Subtask(0, "Опоры", "Рассчитать опоры", Status.NEW,
+                    epic.getId(), null, null));
+            manager.close();
+
+            FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(files.get(i));
+            assertEquals(List.of(task), loadedManager.getTasks(), "Задача без времени не восстановлена");
+            assertEquals(List.of(subtask), loadedManager.getSubtasks(), "Подзадача без времени не восстановлена");
+            loadedManager.close();
+        }
+    }
+
+    @Test
+    public void failedSaveShouldKeepPreviousSnapshot() throws IOException {
+        fileBackedTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20)));
+        List<String> saved = Files.readAllLines(file.toPath());
+        File blocker = new File(file.getPath() + ".tmp");
+        assertTrue(blocker.mkdir() && new File(blocker, "lock").createNewFile());
+        try {
+            assertThrows(ManagerSaveException.class,
+                    () -> fileBackedTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп")),
+                    "Ошибка записи снимка должна быть сообщена");
+            assertEquals(saved, Files.readAllLines(file.toPath()), "Прежний снимок должен остаться целым");
+        } finally {
+            new File(blocker, "lock").delete();
+            blocker.delete();
+        }
+    }
+
+    @Test
+    public void compactionFailureShouldNotBeLostOnRotation() throws IOException {
+        File blocker = new File(file.getPath() + ".tmp");
+        assertTrue(blocker.mkdir() && new File(blocker, "lock").createNewFile());
+        FileBackedTaskManager journaledManager = new FileBackedTaskManager(file, Durability.IMMEDIATE, 10, 2);
+        for (int i = 0; i < 5; i++) {
+            journaledManager.addTask(new Task("Задача " + i, "Описание"));
+        }
+        assertThrows(ManagerSaveException.class, journaledManager::compact,
+                "Ошибка свёртки должна быть сообщена, даже если после неё журнал ротировался");
+
+        new File(blocker, "lock").delete();
+        blocker.delete();
+        journaledManager.compact();
+        journaledManager.close();
+        assertEquals(5, FileBackedTaskManager.loadFromFile(file).getTasks().size());
+    }
 }
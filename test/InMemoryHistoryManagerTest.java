@@ -1,3 +1,7 @@
+import history.CallerHistories;
+import history.EvictionPolicy;
+import history.InMemoryHistoryManager;
+import managers.InMemoryTaskManager;
 import managers.Managers;
 import managers.TaskManager;
 import tasks.Epic;
@@ -7,7 +11,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
 
 public class InMemoryHistoryManagerTest {
     TaskManager inMemoryTaskManager = Managers.getDefault();
@@ -87,4 +94,120 @@ public class InMemoryHistoryManagerTest {
         Assertions.assertEquals(1, finalHistory.size(), "History should contain 1 element after epic deletion.");
         Assertions.assertEquals(task2, finalHistory.get(0), "Only remaining element should be task2.");
     }
+
+    @Test
+    public void boundedHistoryShouldEvictByPolicy() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Task task = new Task("Задача " + i, "Описание");
+            task.setId(i);
+            tasks.add(task);
+        }
+
+        InMemoryHistoryManager lru = new InMemoryHistoryManager(3, EvictionPolicy.LRU);
+        InMemoryHistoryManager fifo = new InMemoryHistoryManager(3, EvictionPolicy.FIFO);
+        for (InMemoryHistoryManager history : List.of(lru, fifo)) {
+            history.add(tasks.get(0));
+            history.add(tasks.get(1));
+            history.add(tasks.get(2));
+            history.add(tasks.get(0));
+            history.add(tasks.get(3));
+        }
+
+        Assertions.assertEquals(List.of(tasks.get(2), tasks.get(0), tasks.get(3)), lru.getHistory(),
+                "LRU должна вытеснить задачу, которую дольше всех не просматривали");
+        Assertions.assertEquals(List.of(tasks.get(1), tasks.get(2), tasks.get(3)), fifo.getHistory(),
+                "FIFO должна вытеснить задачу, просмотренную первой");
+    }
+
+    @Test
+    public void callerHistoriesShouldBeSeparateAndBounded() {
+        CallerHistories histories = new CallerHistories(10, EvictionPolicy.LRU, 2);
+        TaskManager taskManager = new InMemoryTaskManager(histories);
+        Task task1 = taskManager.addTask(new Task("Переезд", "Собрать вещи"));
+        Task task2 = taskManager.addTask(new Task("Стрижка", "Сходить в барбершоп"));
+
+        histories.withCaller("anna", () -> taskManager.getTask(task1.getId()));
+        histories.withCaller("boris", () -> taskManager.getTask(task2.getId()));
+
+        Assertions.assertEquals(List.of(task1), histories.getHistory("anna"), "История пользователя смешалась");
+        Assertions.assertEquals(List.of(task2), histories.withCaller("boris", taskManager::getHistory));
+        Assertions.assertEquals(List.of(), taskManager.getHistory(), "Общая история должна быть пустой");
+
+        taskManager.deleteTask(task1.getId());
+        Assertions.assertEquals(List.of(), histories.getHistory("anna"), "Удаленная задача осталась в истории");
+
+        histories.withCaller("vera", () -> taskManager.getTask(task2.getId()));
+        Assertions.assertEquals(2, histories.size(), "Число историй должно быть ограничено");
+        Assertions.assertEquals(List.of(), histories.getHistory("anna"), "Самая старая история должна вытесняться");
+    }
+
+    @Test
+    public void historySnapshotShouldBeImmutableAndPaged() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager(100);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Task task = new Task("Задача " + i, "Описание");
+            task.setId(i);
+            tasks.add(task);
+            history.add(task);
+        }
+
+        List<Task> snapshot = history.getHistory();
+        Assertions.assertSame(snapshot, history.getHistory(), "Без изменений история не должна копироваться");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(tasks.get(0)));
+        Assertions.assertEquals(tasks.subList(1, 3), history.getHistory(1, 2), "Неверная страница истории");
+        Assertions.assertEquals(List.of(), history.getHistory(10, 2), "Страница за концом истории должна быть пустой");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> history.getHistory(-1, 2));
+
+        history.add(tasks.get(0));
+        Assertions.assertEquals(tasks, snapshot, "Выданный список не должен меняться вместе с историей");
+        Assertions.assertEquals(tasks.get(0), history.getHistory().get(4));
+    }
+
+    @Test
+    public void historyShouldKeepOrderThroughCompaction() {
+        InMemoryHistoryManager history = new InMemoryHistoryManager(50);
+        LinkedHashMap<Integer, Task> expected = new LinkedHashMap<>();
+        Random random = new Random(42);
+        Task[] tasks = new Task[200];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task("Задача " + i, "Описание");
+            tasks[i].setId(i + 1);
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            Task task = tasks[random.nextInt(tasks.length)];
+            if (random.nextInt(4) == 0) {
+                history.remove(task.getId());
+                expected.remove(task.getId());
+            } else {
+                history.add(task);
+                expected.remove(task.getId());
+                expected.put(task.getId(), task);
+                if (expected.size() > 50) {
+                    expected.remove(expected.keySet().iterator().next());
+                }
+            }
+            if (step % 1_000 == 0) {
+                Assertions.assertEquals(new ArrayList<>(expected.values()), history.getHistory(),
+                        "Порядок истории нарушен на шаге " + step);
+            }
+        }
+        Assertions.assertEquals(new ArrayList<>(expected.values()), history.getHistory());
+    }
+
+    @Test
+    public void viewedTaskShouldStayInHistoryAfterReplacement() {
+        Task task = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи"));
+        inMemoryTaskManager.getTask(task.getId());
+        inMemoryTaskManager.updateTask(new Task(task.getId(), "Переезд", "Собрать и упаковать вещи",
+                task.getStatus(), null, null));
+        task = null;
+        System.gc();
+
+        List<Task> history = inMemoryTaskManager.getHistory();
+        Assertions.assertEquals(1, history.size(), "Просмотр не должен пропадать после замены задачи");
+        Assertions.assertEquals("Собрать вещи", history.get(0).getDescription());
+    }
 }
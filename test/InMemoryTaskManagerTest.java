@@ -1,5 +1,10 @@
+import managers.Change;
+import managers.ConcurrentTaskManager;
 import managers.InMemoryTaskManager;
+import managers.ManagerSnapshot;
 import managers.Managers;
+import managers.TaskManager;
+import managers.TaskType;
 import status.Status;
 import tasks.Epic;
 import tasks.Subtask;
@@ -10,7 +15,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 public class InMemoryTaskManagerTest {
     private InMemoryTaskManager inMemoryTaskManager;
@@ -201,4 +216,382 @@ public class InMemoryTaskManagerTest {
             inMemoryTaskManager.addSubtask(subtask2);
         }, "Исключение выброшено");
     }
+
+    @Test
+    public void applyBatchShouldApplyAllChangesAndRecalculateEpics() {
+        Epic epic1 = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Task task1 = inMemoryTaskManager.addTask(new Task("Переезд",
+                "Собрать вещи",
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20)));
+        Subtask subtask1 = new Subtask("Пролетное строение",
+                "Начертить пролетное строение",
+                epic1.getId(),
+                Duration.ofDays(14),
+                LocalDateTime.of(2024, 10, 13, 8, 0));
+        Subtask subtask2 = new Subtask("Опоры",
+                "Начертить опоры",
+                epic1.getId(),
+                Duration.ofDays(8),
+                LocalDateTime.of(2024, 10, 28, 8, 0));
+        // Новое время задачи занимает слот, освобождаемый ею самой в этом же пакете
+        Task movedTask = new Task("Переезд", "Собрать вещи", task1.getId(), Status.DONE,
+                Duration.ofMinutes(90), LocalDateTime.of(2024, 9, 23, 10, 0));
+
+        inMemoryTaskManager.applyBatch(List.of(
+                Change.add(subtask1),
+                Change.add(subtask2),
+                Change.update(movedTask)));
+
+        Assertions.assertEquals(2, epic1.getSubtasks().size(), "Подзадачи не добавлены в эпик");
+        Assertions.assertEquals(subtask1.getStartTime(), epic1.getStartTime(), "Время эпика не пересчитано");
+        Assertions.assertEquals(movedTask, inMemoryTaskManager.getTask(task1.getId()).orElseThrow(),
+                "Задача не обновлена");
+
+        Subtask doneSubtask = new Subtask(subtask1.getId(), subtask1.getName(), subtask1.getDescription(),
+                Status.DONE, epic1.getId(), subtask1.getDuration(), subtask1.getStartTime());
+        inMemoryTaskManager.applyBatch(List.of(
+                Change.update(doneSubtask),
+                Change.delete(subtask2.getId())));
+
+        Assertions.assertEquals(Status.DONE, epic1.getStatus(), "Статус эпика не пересчитан");
+        Assertions.assertEquals(List.of(movedTask, doneSubtask), inMemoryTaskManager.getPrioritizedTasks(),
+                "Расписание не соответствует итоговому состоянию");
+    }
+
+    @Test
+    public void applyBatchShouldRejectConflictsInsideBatchWithoutChanges() {
+        Epic epic1 = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Task task1 = new Task("Переезд",
+                "Собрать вещи",
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+        Subtask subtask1 = new Subtask("Пролетное строение",
+                "Начертить пролетное строение",
+                epic1.getId(),
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 11, 0));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            inMemoryTaskManager.applyBatch(List.of(Change.add(task1), Change.add(subtask1)));
+        }, "Исключение не выброшено");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            inMemoryTaskManager.applyBatch(List.of(Change.delete(epic1.getId()), Change.add(subtask1)));
+        }, "Подзадача удаляемого эпика должна отклоняться");
+
+        Assertions.assertTrue(inMemoryTaskManager.getTasks().isEmpty(), "Пакет применен частично");
+        Assertions.assertTrue(inMemoryTaskManager.getSubtasks().isEmpty(), "Пакет применен частично");
+        Assertions.assertTrue(inMemoryTaskManager.getEpic(epic1.getId()).isPresent(), "Пакет применен частично");
+        Assertions.assertDoesNotThrow(() -> {
+            inMemoryTaskManager.addTask(task1);
+        }, "Отклоненный пакет не должен занимать время");
+    }
+
+    @Test
+    public void managersShouldAllocateIdsIndependently() {
+        InMemoryTaskManager otherManager = new InMemoryTaskManager();
+        Task task = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи"));
+        inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп"));
+        Task otherTask = otherManager.addTask(new Task("Уборка", "Пропылесосить"));
+
+        Assertions.assertEquals(1, task.getId(), "Первая задача менеджера должна получить id 1");
+        Assertions.assertEquals(1, otherTask.getId(), "Менеджеры не должны делить счетчик id");
+
+        inMemoryTaskManager.applyBatch(List.of(Change.add(new Task("Ремонт", "Покрасить стены")),
+                Change.add(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"))));
+        Assertions.assertEquals(List.of(1, 2, 3), inMemoryTaskManager.getTasks().stream().map(Task::getId).sorted()
+                .toList(), "Пакет должен получить непрерывный диапазон id");
+        Assertions.assertEquals(5, inMemoryTaskManager.addTask(new Task("Обед", "Приготовить")).getId());
+    }
+
+    @Test
+    public void statusIndexesShouldFollowEveryChange() {
+        Task task = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", 0, Status.NEW));
+        Task done = inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп", 0, Status.NEW));
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Subtask subtask = inMemoryTaskManager.addSubtask(new Subtask("Пролетное строение",
+                "Начертить пролетное строение", epic.getId(), Duration.ofDays(1),
+                LocalDateTime.of(2024, 10, 13, 8, 0)));
+
+        // Статус меняется прямо в объекте, индекс узнает об этом из update
+        done.setStatus(Status.DONE);
+        inMemoryTaskManager.updateTask(done);
+        Assertions.assertEquals(List.of(task), inMemoryTaskManager.getTasks(Status.NEW));
+        Assertions.assertEquals(List.of(done), inMemoryTaskManager.getTasks(Status.DONE));
+        Assertions.assertEquals(1, inMemoryTaskManager.count(TaskType.TASK, Status.DONE));
+
+        inMemoryTaskManager.updateSubtask(new Subtask(subtask.getId(), "Пролетное строение",
+                "Начертить пролетное строение", Status.INPROGRESS, epic.getId(), Duration.ofDays(1),
+                LocalDateTime.of(2024, 10, 13, 8, 0)));
+        Assertions.assertEquals(List.of(epic), inMemoryTaskManager.getEpics(Status.INPROGRESS),
+                "Эпик должен переходить в колонку статуса подзадач");
+        Assertions.assertEquals(0, inMemoryTaskManager.count(TaskType.EPIC, Status.NEW));
+        List<Task> inProgress = new ArrayList<>();
+        inMemoryTaskManager.forEach(TaskType.SUBTASK, Status.INPROGRESS, inProgress::add);
+        Assertions.assertEquals(List.of(subtask.getId()), inProgress.stream().map(Task::getId).toList());
+
+        inMemoryTaskManager.applyBatch(List.of(Change.delete(done.getId()),
+                Change.add(new Task("Уборка", "Пропылесосить", 0, Status.NEW))));
+        Assertions.assertEquals(0, inMemoryTaskManager.count(TaskType.TASK, Status.DONE));
+        Assertions.assertEquals(2, inMemoryTaskManager.getTasks(Status.NEW).size());
+
+        inMemoryTaskManager.clearSubtasks();
+        Assertions.assertEquals(0, inMemoryTaskManager.count(TaskType.SUBTASK, Status.INPROGRESS));
+        Assertions.assertEquals(0, inMemoryTaskManager.count(TaskType.EPIC, Status.INPROGRESS),
+                "Эпик без подзадач должен покинуть колонку IN PROGRESS");
+        inMemoryTaskManager.deleteEpic(epic.getId());
+        inMemoryTaskManager.clearTasks();
+        for (TaskType type : TaskType.values()) {
+            for (Status status : Status.values()) {
+                Assertions.assertEquals(0, inMemoryTaskManager.count(type, status));
+            }
+        }
+    }
+
+    @Test
+    public void scheduleShouldAnswerTimeRangeQueries() {
+        LocalDateTime monday = LocalDateTime.of(2024, 9, 23, 10, 0);
+        Task first = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(2), monday));
+        Task second = inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп",
+                Duration.ofHours(1), monday.plusDays(1)));
+        Task nextWeek = inMemoryTaskManager.addTask(new Task("Уборка", "Пропылесосить",
+                Duration.ofHours(1), monday.plusWeeks(1)));
+        Task unscheduled = inMemoryTaskManager.addTask(new Task("Ремонт", "Покрасить стены"));
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Subtask subtask = inMemoryTaskManager.addSubtask(new Subtask("Пролетное строение",
+                "Начертить пролетное строение", epic.getId(), Duration.ofHours(1), monday.plusDays(2)));
+
+        Assertions.assertEquals(List.of(first, second, subtask),
+                inMemoryTaskManager.getTasksStartingBetween(monday, monday.plusWeeks(1)),
+                "Конец диапазона не должен включаться");
+        Assertions.assertEquals(List.of(first), inMemoryTaskManager.getTasksActiveAt(monday.plusHours(1)));
+        Assertions.assertEquals(List.of(), inMemoryTaskManager.getTasksActiveAt(monday.plusHours(2)),
+                "Задача не активна в момент своего окончания");
+        Assertions.assertEquals(List.of(second, subtask),
+                inMemoryTaskManager.getNextTasks(monday.plusMinutes(1), 2));
+        Assertions.assertEquals(List.of(subtask, nextWeek),
+                inMemoryTaskManager.getNextTasks(monday.plusDays(2), 10));
+        Assertions.assertEquals(List.of(unscheduled), inMemoryTaskManager.getUnscheduledTasks());
+
+        inMemoryTaskManager.deleteTask(second.getId());
+        Assertions.assertEquals(List.of(first, subtask),
+                inMemoryTaskManager.getTasksStartingBetween(monday, monday.plusWeeks(1)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inMemoryTaskManager.getTasksStartingBetween(monday.plusDays(1), monday));
+    }
+
+    @Test
+    public void freeSlotsShouldBeFoundAndPackedBetweenScheduledTasks() {
+        LocalDateTime morning = LocalDateTime.of(2024, 9, 23, 9, 0);
+        inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1), morning));
+        inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofHours(1),
+                morning.plusMinutes(90)));
+        inMemoryTaskManager.addTask(new Task("Обед", "Приготовить", Duration.ofHours(1), morning.plusHours(3)));
+
+        Assertions.assertEquals(morning.plusHours(1), inMemoryTaskManager.findFreeSlot(morning, Duration.ofMinutes(30)));
+        Assertions.assertEquals(morning.plusHours(4),
+                inMemoryTaskManager.findFreeSlot(morning.plusMinutes(30), Duration.ofMinutes(31)),
+                "Окно короче задачи должно пропускаться");
+        Assertions.assertEquals(morning.plusMinutes(150),
+                inMemoryTaskManager.findFreeSlot(morning.plusMinutes(75), Duration.ofMinutes(30)),
+                "Окно ровно по длительности задачи подходит");
+
+        Task placed = inMemoryTaskManager.addToFirstFreeSlot(new Task("Уборка", "Пропылесосить",
+                Duration.ofMinutes(30), null), morning);
+        Assertions.assertEquals(morning.plusHours(1), placed.getStartTime());
+
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Task report = new Task("Отчет", "Написать отчет", Duration.ofMinutes(20), null);
+        Subtask drawing = new Subtask("Пролетное строение", "Начертить пролетное строение", epic.getId(),
+                Duration.ofMinutes(30), null);
+        List<Task> packed = inMemoryTaskManager.packTasks(List.of(report, drawing), morning);
+        Assertions.assertEquals(List.of(morning.plusMinutes(150), morning.plusHours(4)),
+                packed.stream().map(Task::getStartTime).toList(),
+                "Задачи должны занимать окна по порядку");
+        Assertions.assertEquals(morning.plusHours(4), epic.getStartTime());
+        Assertions.assertEquals(6, inMemoryTaskManager.getPrioritizedTasks().size());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inMemoryTaskManager.addToFirstFreeSlot(new Epic("Ремонт", "Покрасить стены"), morning));
+    }
+
+    @Test
+    public void rejectedPlacementShouldNotChangeCallerTasks() {
+        LocalDateTime morning = LocalDateTime.of(2024, 9, 23, 9, 0);
+        for (TaskManager manager : List.of(Managers.getDefault(), new ConcurrentTaskManager(),
+                Managers.getColumnar())) {
+            Task report = new Task("Отчет", "Написать отчет", Duration.ofMinutes(20), null);
+            Subtask orphan = new Subtask("Опоры", "Рассчитать опоры", 999, Duration.ofMinutes(30), null);
+
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> manager.packTasks(List.of(report, orphan), morning));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.addToFirstFreeSlot(orphan, morning));
+            Assertions.assertNull(report.getStartTime(), "Отклонённый пакет не должен менять задачи вызывающего");
+            Assertions.assertNull(orphan.getStartTime(), "Отклонённая задача не должна получать время начала");
+            Assertions.assertEquals(0, report.getId());
+            Assertions.assertTrue(manager.getPrioritizedTasks().isEmpty());
+
+            List<Task> packed = manager.packTasks(List.of(report), morning);
+            Assertions.assertEquals(morning, report.getStartTime(), "Принятая задача получает время начала");
+            Assertions.assertEquals(packed.get(0).getId(), report.getId());
+        }
+    }
+
+    @Test
+    public void viewsShouldReflectChangesWithoutCopying() {
+        Collection<Task> tasks = inMemoryTaskManager.getTasksView();
+        Collection<Subtask> subtasks = inMemoryTaskManager.getSubtasksView();
+        Collection<Task> schedule = inMemoryTaskManager.getPrioritizedTasksView();
+        Task task = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 10, 0)));
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Subtask subtask = inMemoryTaskManager.addSubtask(new Subtask("Пролетное строение",
+                "Начертить пролетное строение", epic.getId(), Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 8, 0)));
+
+        Assertions.assertEquals(List.of(task), List.copyOf(tasks), "Представление должно видеть новые задачи");
+        Assertions.assertEquals(List.of(subtask), List.copyOf(subtasks));
+        Assertions.assertEquals(List.of(subtask, task), List.copyOf(schedule), "Порядок как у getPrioritizedTasks()");
+        Assertions.assertEquals(List.of(subtask), List.copyOf(epic.getSubtasksView()));
+        Assertions.assertSame(epic.getSubtasksView(), epic.getSubtasksView(), "Представление эпика не создается заново");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> tasks.remove(task));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> epic.getSubtasksView().clear());
+
+        inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп"));
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> {
+            for (Task viewed : tasks) {
+                inMemoryTaskManager.deleteTask(viewed.getId());
+            }
+        }, "Изменение во время обхода должно обнаруживаться");
+        inMemoryTaskManager.clearTasks();
+        Assertions.assertTrue(tasks.isEmpty());
+        inMemoryTaskManager.deleteEpic(epic.getId());
+        Assertions.assertTrue(subtasks.isEmpty());
+        Assertions.assertTrue(schedule.isEmpty());
+    }
+
+    @Test
+    public void snapshotsShouldStayUnchangedAfterWrites() {
+        Task task = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 10, 0)));
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        ManagerSnapshot before = inMemoryTaskManager.getSnapshot();
+
+        Subtask subtask = inMemoryTaskManager.addSubtask(new Subtask("Пролетное строение",
+                "Начертить пролетное строение", epic.getId(), Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 8, 0)));
+        inMemoryTaskManager.deleteTask(task.getId());
+        ManagerSnapshot after = inMemoryTaskManager.getSnapshot();
+
+        Assertions.assertEquals(List.of(task), List.copyOf(before.getTasks()), "Старая версия не должна меняться");
+        Assertions.assertEquals(List.of(task), List.copyOf(before.getPrioritizedTasks()));
+        Assertions.assertTrue(before.getSubtasks().isEmpty());
+        Assertions.assertTrue(after.getTasks().isEmpty());
+        Assertions.assertEquals(Optional.of(subtask), after.getSubtask(subtask.getId()));
+        Assertions.assertEquals(List.of(subtask), List.copyOf(after.getPrioritizedTasks()));
+        Assertions.assertEquals(before.getVersion() + 2, after.getVersion(), "Каждая операция — одна версия");
+
+        inMemoryTaskManager.getTask(subtask.getId());
+        inMemoryTaskManager.deleteTask(task.getId());
+        Assertions.assertSame(after, inMemoryTaskManager.getSnapshot(), "Операция без изменений не создает версию");
+    }
+
+    @Test
+    public void snapshotShouldKeepEpicAsOfItsVersion() {
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        Subtask subtask = inMemoryTaskManager.addSubtask(new Subtask("Пролетное строение",
+                "Начертить пролетное строение", epic.getId(), Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 8, 0)));
+        ManagerSnapshot before = inMemoryTaskManager.getSnapshot();
+
+        inMemoryTaskManager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(), subtask.getDescription(),
+                Status.DONE, epic.getId(), subtask.getDuration(), subtask.getStartTime()));
+        inMemoryTaskManager.addSubtask(new Subtask("Опоры", "Начертить опоры", epic.getId(), Duration.ofHours(2),
+                LocalDateTime.of(2024, 9, 24, 8, 0)));
+
+        Epic old = before.getEpic(epic.getId()).orElseThrow();
+        Assertions.assertEquals(Status.NEW, old.getStatus(), "Статус эпика в старой версии не должен меняться");
+        Assertions.assertEquals(Duration.ofHours(1), old.getDuration());
+        Assertions.assertEquals(LocalDateTime.of(2024, 9, 23, 9, 0), old.getEndTime());
+        Assertions.assertEquals(List.of(subtask), old.getSubtasks());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> old.setStatus(Status.DONE),
+                "Эпик из снимка не должен изменяться");
+
+        Epic current = inMemoryTaskManager.getSnapshot().getEpic(epic.getId()).orElseThrow();
+        Assertions.assertEquals(Status.INPROGRESS, current.getStatus());
+        Assertions.assertEquals(2, current.getSubtasks().size());
+        Assertions.assertEquals(epic, current, "Замороженная копия должна совпадать с эпиком на момент версии");
+    }
+
+    @Test
+    public void readersShouldSeeConsistentSnapshotsWhileManagerChanges() throws Exception {
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                ManagerSnapshot snapshot = inMemoryTaskManager.getSnapshot();
+                // Подзадачи и задачи добавляются и удаляются парами, поэтому в любой версии их поровну
+                if (snapshot.getTasks().size() != snapshot.getSubtasks().size()
+                        || snapshot.getPrioritizedTasks().size() != 2 * snapshot.getTasks().size()) {
+                    failure.set("Несогласованная версия " + snapshot.getVersion());
+                }
+            }
+        });
+        reader.start();
+        LocalDateTime start = LocalDateTime.of(2024, 9, 23, 10, 0);
+        for (int i = 0; i < 2_000; i++) {
+            Task task = new Task("Задача " + i, "Описание", Duration.ofMinutes(10), start.plusHours(i));
+            Subtask subtask = new Subtask("Подзадача " + i, "Описание", epic.getId(), Duration.ofMinutes(10),
+                    start.plusHours(i).plusMinutes(30));
+            inMemoryTaskManager.applyBatch(List.of(Change.add(task), Change.add(subtask)));
+            if (i % 2 == 1) {
+                inMemoryTaskManager.applyBatch(List.of(Change.delete(task.getId()), Change.delete(subtask.getId())));
+            }
+        }
+        done.set(true);
+        reader.join();
+        Assertions.assertNull(failure.get());
+        Assertions.assertEquals(1_000, inMemoryTaskManager.getSnapshot().getSubtasks().size());
+    }
+
+    @Test
+    public void queryShouldAggregateInParallelInStorageOrder() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 0);
+        Epic epic = inMemoryTaskManager.addEpic(new Epic("Отчёт", "Квартальный отчёт"));
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            changes.add(Change.add(new Subtask(0, "Раздел " + i, "Описание", Status.values()[i % 3], epic.getId(),
+                    Duration.ofMinutes(i % 50 + 1), start.plusHours(i))));
+        }
+        inMemoryTaskManager.applyBatch(changes);
+        LocalDateTime now = start.plusHours(10_000);
+        Map<Status, Long> expectedMinutes = new EnumMap<>(Status.class);
+        long expectedOverdue = 0;
+        for (Subtask subtask : inMemoryTaskManager.getSubtasks()) {
+            expectedMinutes.merge(subtask.getStatus(), subtask.getDuration().toMinutes(), Long::sum);
+            if (subtask.getStatus() != Status.DONE && subtask.getEndTime().isBefore(now)) {
+                expectedOverdue++;
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assertions.assertEquals(expectedMinutes, inMemoryTaskManager.query(TaskType.SUBTASK, task -> true,
+                    Collectors.groupingBy(Task::getStatus, () -> new EnumMap<>(Status.class),
+                            Collectors.summingLong(task -> task.getDuration().toMinutes())), pool),
+                    "Неверная сумма длительностей по статусам");
+            Assertions.assertEquals(expectedOverdue, inMemoryTaskManager.query(TaskType.SUBTASK,
+                    task -> task.getStatus() != Status.DONE && task.getEndTime().isBefore(now),
+                    Collectors.counting(), pool), "Неверное число просроченных подзадач");
+            Assertions.assertEquals(new ArrayList<>(inMemoryTaskManager.getSubtasksView()),
+                    inMemoryTaskManager.query(TaskType.SUBTASK, task -> true, Collectors.toList(), pool),
+                    "Части должны объединяться в порядке обхода хранилища");
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(List.of(epic), inMemoryTaskManager.query(TaskType.EPIC, task -> true,
+                Collectors.toList()), "Запрос в общем пуле вернул не те эпики");
+        Assertions.assertEquals(0L, inMemoryTaskManager.query(TaskType.TASK, task -> true, Collectors.counting()),
+                "Запрос по пустому хранилищу должен вернуть пустую свёртку");
+    }
 }
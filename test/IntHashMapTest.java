@@ -0,0 +1,99 @@
+import managers.IntHashMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class IntHashMapTest {
+
+    @Test
+    public void shouldBehaveLikeHashMapUnderRandomOperations() {
+        IntHashMap<String> intHashMap = new IntHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000) - 100;
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(key), intHashMap.remove(key), "Удален другой элемент");
+            } else {
+                String value = "value" + i;
+                Assertions.assertEquals(expected.put(key, value), intHashMap.put(key, value),
+                        "Возвращено другое предыдущее значение");
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), intHashMap.size(), "Размеры не совпадают");
+        for (int key = -100; key < 1_900; key++) {
+            Assertions.assertEquals(expected.get(key), intHashMap.get(key), "Значения по ключу " + key + " не равны");
+        }
+        Assertions.assertEquals(expected.size(), new ArrayList<>(intHashMap.values()).size(),
+                "Обход значений вернул другое количество элементов");
+    }
+
+    @Test
+    public void shouldIterateEverySequentialIdOnce() {
+        IntHashMap<Integer> intHashMap = new IntHashMap<>();
+        for (int id = 1; id <= 10; id++) {
+            intHashMap.put(id, id);
+        }
+        intHashMap.remove(5);
+
+        List<Integer> values = new ArrayList<>(intHashMap.values());
+        values.sort(null);
+        Assertions.assertEquals(List.of(1, 2, 3, 4, 6, 7, 8, 9, 10), values, "Обход вернул не те значения");
+        Assertions.assertNull(intHashMap.replace(5, 5), "Отсутствующий ключ не должен заменяться");
+        Assertions.assertFalse(intHashMap.containsKey(5), "Отсутствующий ключ добавлен при замене");
+
+        intHashMap.clear();
+        Assertions.assertTrue(intHashMap.isEmpty(), "Карта не очищена");
+        Assertions.assertNull(intHashMap.get(1), "Значение осталось после очистки");
+    }
+
+    @Test
+    public void sequentialIdsBeyondCapacityShouldNotCollideWithLiveIds() {
+        // Живые младшие id и поток новых id, которые добавляются и удаляются, как при addTask + deleteTask:
+        // новые id многократно проходят по всей таблице
+        IntHashMap<Integer> intHashMap = new IntHashMap<>();
+        for (int id = 1; id <= 1_000; id++) {
+            intHashMap.put(id, id);
+        }
+        for (int id = 1_001; id <= 1_000_000; id++) {
+            intHashMap.put(id, id);
+            Assertions.assertEquals(id, intHashMap.remove(id), "Удалён другой элемент");
+        }
+
+        Assertions.assertEquals(1_000, intHashMap.size(), "Размер изменился после добавлений и удалений");
+        for (int id = 1; id <= 1_000; id++) {
+            Assertions.assertEquals(id, intHashMap.get(id), "Живой id " + id + " потерян");
+        }
+        Assertions.assertNull(intHashMap.get(1_000_000), "Удалённый id остался в таблице");
+    }
+
+    @Test
+    public void spliteratorShouldVisitEveryValueOnceAfterSplitting() {
+        IntHashMap<Integer> intHashMap = new IntHashMap<>();
+        long expected = 0;
+        for (int key = 0; key < 50_000; key++) {
+            intHashMap.put(key, key);
+            expected += key;
+        }
+        for (int key = 0; key < 50_000; key += 3) {
+            intHashMap.remove(key);
+            expected -= key;
+        }
+
+        Assertions.assertEquals(expected,
+                StreamSupport.stream(intHashMap.values().spliterator(), true).mapToLong(Integer::longValue).sum(),
+                "Параллельный обход потерял или повторил значения");
+        Assertions.assertEquals(new ArrayList<>(intHashMap.values()),
+                StreamSupport.stream(intHashMap.values().spliterator(), true).collect(Collectors.toList()),
+                "Параллельный обход нарушил порядок значений");
+    }
+}
@@ -0,0 +1,124 @@
+import history.CallerHistories;
+import history.EvictionPolicy;
+import managers.FileBackedTaskManager;
+import managers.InMemoryTaskManager;
+import managers.LatencyHistogram;
+import managers.ManagerMetrics;
+import managers.Managers;
+import managers.SnapshotFormat;
+import managers.TaskManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.Task;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class MeteredTaskManagerTest {
+
+    @Test
+    public void shouldCountOperationsAndReportStoreSizes() {
+        ManagerMetrics metrics = new ManagerMetrics();
+        TaskManager manager = Managers.getMetered(new InMemoryTaskManager(), metrics);
+        Task task = manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 10, 0)));
+        manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        for (int i = 0; i < 10; i++) {
+            manager.getTask(task.getId());
+        }
+        manager.isOverlapping(task);
+
+        ManagerMetrics.Snapshot snapshot = metrics.snapshot();
+        Assertions.assertEquals(1, snapshot.operations().get("addTask").count());
+        Assertions.assertEquals(10, snapshot.operations().get("getTask").count());
+        Assertions.assertEquals(1, snapshot.operations().get("isOverlapping").count());
+        Assertions.assertEquals(Map.of("tasks", 1L, "epics", 1L, "subtasks", 0L, "schedule", 1L, "history", 1L),
+                snapshot.gauges(), "Показатели должны отражать текущие размеры");
+
+        metrics.setEnabled(false);
+        manager.getTask(task.getId());
+        Assertions.assertEquals(10, metrics.snapshot().operations().get("getTask").count(),
+                "Выключенные метрики не должны собираться");
+    }
+
+    @Test
+    public void historyGaugeShouldCountHistoriesOfAllCallers() {
+        ManagerMetrics metrics = new ManagerMetrics();
+        CallerHistories histories = new CallerHistories(10, EvictionPolicy.LRU, 2);
+        TaskManager manager = Managers.getMetered(new InMemoryTaskManager(histories), metrics);
+        Task task1 = manager.addTask(new Task("Переезд", "Собрать вещи"));
+        Task task2 = manager.addTask(new Task("Стрижка", "Сходить в барбершоп"));
+
+        histories.withCaller("anna", () -> {
+            manager.getTask(task1.getId());
+            return manager.getTask(task2.getId());
+        });
+        histories.withCaller("boris", () -> manager.getTask(task2.getId()));
+        Assertions.assertEquals(3L, metrics.snapshot().gauges().get("history"),
+                "Показатель истории должен учитывать историю каждого пользователя");
+
+        manager.deleteTask(task2.getId());
+        Assertions.assertEquals(1L, metrics.snapshot().gauges().get("history"), "Удаленная задача осталась в показателе");
+
+        histories.withCaller("vera", () -> manager.getTask(task1.getId()));
+        Assertions.assertEquals(1L, metrics.snapshot().gauges().get("history"),
+                "Вытесненная история не должна учитываться");
+    }
+
+    @Test
+    public void fileBackedManagerShouldReportPersistedBytesAndFsync() throws IOException {
+        File file = File.createTempFile("metrics", ".bin");
+        ManagerMetrics metrics = new ManagerMetrics();
+        FileBackedTaskManager fileBacked = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        TaskManager manager = Managers.getMetered(fileBacked, metrics);
+        manager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofHours(1),
+                LocalDateTime.of(2024, 9, 23, 10, 0)));
+
+        ManagerMetrics.Snapshot snapshot = metrics.snapshot();
+        Assertions.assertEquals(file.length(), snapshot.persistedBytes(), "Учтены байты записанного снимка");
+        Assertions.assertEquals(1, snapshot.fsync().count());
+        Assertions.assertEquals(1, snapshot.operations().get("save").count());
+
+        TaskManager loaded = Managers.loadMetered(file, metrics);
+        Assertions.assertEquals(1, loaded.getTasks().size());
+        Assertions.assertEquals(1, metrics.snapshot().operations().get("loadFromFile").count());
+    }
+
+    @Test
+    public void metricsShouldBeReadableThroughJmx() throws Exception {
+        ManagerMetrics metrics = new ManagerMetrics();
+        TaskManager manager = Managers.getMetered(new InMemoryTaskManager(), metrics);
+        manager.addEpic(new Epic("Чертежи моста", "Сделать проект моста через реку Волга"));
+        ObjectName name = metrics.registerMBean("test-" + System.nanoTime());
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            Assertions.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+            Assertions.assertNotNull(server.getAttribute(name, "OperationCounts"));
+            Assertions.assertEquals(0L, server.getAttribute(name, "PersistedBytes"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void histogramPercentilesShouldStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        Assertions.assertEquals(100_000, histogram.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            long actual = histogram.getPercentile(percentile);
+            Assertions.assertTrue(Math.abs(actual - expected) / expected < 0.04,
+                    "Перцентиль " + percentile + " вне точности корзин: " + actual);
+        }
+        Assertions.assertTrue(histogram.getMax() >= 100_000_000L);
+    }
+}
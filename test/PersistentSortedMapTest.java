@@ -0,0 +1,58 @@
+import managers.PersistentSortedMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PersistentSortedMapTest {
+
+    @Test
+    public void shouldBehaveLikeTreeMapAndKeepOldVersions() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.empty(Comparator.naturalOrder());
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        List<PersistentSortedMap<Integer, String>> versions = new ArrayList<>();
+        List<List<String>> expectedVersions = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                String value = "value" + i;
+                expected.put(key, value);
+                map = map.put(key, value);
+            }
+            if (i % 5_000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new ArrayList<>(expected.values()));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size(), "Размеры не совпадают");
+        for (int key = 0; key < 2_000; key++) {
+            Assertions.assertEquals(expected.get(key), map.get(key), "Значения по ключу " + key + " не равны");
+        }
+        Assertions.assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()),
+                "Обход должен идти в порядке ключей");
+        for (int i = 0; i < versions.size(); i++) {
+            Assertions.assertEquals(expectedVersions.get(i), new ArrayList<>(versions.get(i).values()),
+                    "Старая версия " + i + " изменилась");
+        }
+    }
+
+    @Test
+    public void unchangedMapShouldReturnSameVersion() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.<Integer, String>empty(Comparator.naturalOrder())
+                .put(1, "a").put(2, "b");
+        Assertions.assertSame(map, map.remove(3), "Удаление отсутствующего ключа не должно копировать дерево");
+        Assertions.assertSame(map, map.put(1, map.get(1)), "Запись того же значения не должна копировать дерево");
+        Assertions.assertTrue(map.clear().isEmpty());
+        Assertions.assertEquals(2, map.size(), "clear() не должен менять исходную версию");
+    }
+}
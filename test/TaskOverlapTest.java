@@ -1,3 +1,4 @@
+import managers.Change;
 import managers.Managers;
 import managers.TaskManager;
 import org.junit.jupiter.api.Assertions;
@@ -8,6 +9,8 @@ import tasks.Task;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TaskOverlapTest {
     TaskManager inMemoryTaskManager = Managers.getDefault();
@@ -115,4 +118,110 @@ public class TaskOverlapTest {
             inMemoryTaskManager.addSubtask(overlappingSubtask);
         }, "Подзадача, пересекающаяся с обычной задачей, должна вызывать исключение");
     }
+
+    @Test
+    public void shouldAllowTaskStartingExactlyWhenAnotherEnds() {
+        Task task1 = new Task("Переезд",
+                "Собрать вещи",
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+        inMemoryTaskManager.addTask(task1);
+
+        Task adjacentTask = new Task("Переезд 2",
+                "Другая задача",
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 11, 20));
+
+        Assertions.assertDoesNotThrow(() -> {
+            inMemoryTaskManager.addTask(adjacentTask);
+        }, "Задача, начинающаяся в момент окончания другой, не пересекается с ней");
+    }
+
+    @Test
+    public void shouldFreeTimeSlotAfterDeletion() {
+        Task task1 = new Task("Переезд",
+                "Собрать вещи",
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+        inMemoryTaskManager.addTask(task1);
+        inMemoryTaskManager.deleteTask(task1.getId());
+
+        Epic epic = new Epic("Эпик", "Эпик задачи");
+        inMemoryTaskManager.addEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1",
+                "Описание подзадачи",
+                epic.getId(),
+                Duration.ofMinutes(60),
+                LocalDateTime.of(2024, 9, 23, 10, 20));
+
+        Assertions.assertDoesNotThrow(() -> {
+            inMemoryTaskManager.addSubtask(subtask);
+        }, "Время удаленной задачи должно освобождаться");
+        Assertions.assertEquals(List.of(subtask), inMemoryTaskManager.getPrioritizedTasks(),
+                "Удаленная задача осталась в списке приоритетных задач");
+
+        inMemoryTaskManager.clearSubtasks();
+        Assertions.assertTrue(inMemoryTaskManager.getPrioritizedTasks().isEmpty(),
+                "Подзадачи должны удаляться из списка приоритетных задач");
+        Assertions.assertFalse(inMemoryTaskManager.isOverlapping(subtask),
+                "Время удаленных подзадач должно освобождаться");
+    }
+
+    @Test
+    public void overlapCheckShouldTouchLogarithmicNumberOfScheduledTasks() {
+        int count = 50_000;
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Change> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(Change.add(new CountingTask("Задача " + i, start.plusHours(i))));
+        }
+        inMemoryTaskManager.applyBatch(changes);
+
+        // Линейная проверка пересечений прочитала бы время каждой из count задач доски
+        CountingTask.reads = 0;
+        inMemoryTaskManager.addTask(new Task("Новая", "Описание", Duration.ofMinutes(30),
+                start.plusHours(count / 2).plusMinutes(30)));
+        Assertions.assertTrue(CountingTask.reads < 500,
+                "Вставка прочитала время " + CountingTask.reads + " задач доски вместо O(log n)");
+        Assertions.assertEquals(count + 1, inMemoryTaskManager.getPrioritizedTasks().size());
+    }
+
+    // Считает чтения времени начала задач, уже лежащих в расписании
+    private static class CountingTask extends Task {
+        static long reads;
+
+        CountingTask(String name, LocalDateTime startTime) {
+            super(name, "Описание", Duration.ofMinutes(30), startTime);
+        }
+
+        @Override
+        public LocalDateTime getStartTime() {
+            reads++;
+            return super.getStartTime();
+        }
+    }
+
+    @Test
+    public void batchMovingTaskOntoStartOfLaterMovedTaskShouldKeepItsSlot() {
+        LocalDateTime morning = LocalDateTime.of(2024, 9, 23, 10, 0);
+        Task first = inMemoryTaskManager.addTask(new Task("Переезд", "Собрать вещи", Duration.ofMinutes(60), morning));
+        Task second = inMemoryTaskManager.addTask(new Task("Стрижка", "Сходить в барбершоп", Duration.ofMinutes(60),
+                morning.plusHours(2)));
+
+        // Первая задача занимает начало второй, вторая сдвигается позже в том же пакете
+        inMemoryTaskManager.applyBatch(List.of(
+                Change.update(new Task(first.getId(), "Переезд", "Собрать вещи", first.getStatus(),
+                        Duration.ofMinutes(60), morning.plusHours(2))),
+                Change.update(new Task(second.getId(), "Стрижка", "Сходить в барбершоп", second.getStatus(),
+                        Duration.ofMinutes(60), morning.plusHours(4)))));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> inMemoryTaskManager.addTask(new Task("Уборка", "Пропылесосить", Duration.ofMinutes(30),
+                        morning.plusHours(2))),
+                "Интервал перенесённой задачи должен остаться занятым после пакета");
+        Assertions.assertDoesNotThrow(
+                () -> inMemoryTaskManager.addTask(new Task("Уборка", "Пропылесосить", Duration.ofMinutes(30),
+                        morning)),
+                "Освободившийся интервал должен быть доступен");
+    }
 }
@@ -71,4 +71,33 @@ public class TaskTest {
         epic4.setStatus(Status.INPROGRESS);
         Assertions.assertEquals(epic1, epic4, "Эпики не равны");
     }
+
+    @Test
+    public void epicShouldMaintainAggregatesIncrementally() {
+        Epic epic1 = new Epic("Чертежи моста", "Сделать проект моста через реку Волга");
+        Subtask subtask1 = new Subtask(1, "Пролетное строение", "Начертить пролетное строение", Status.NEW, 0,
+                Duration.ofDays(14), LocalDateTime.of(2024, 10, 13, 8, 0));
+        Subtask subtask2 = new Subtask(2, "Опоры", "Начертить опоры", Status.DONE, 0,
+                Duration.ofDays(1), LocalDateTime.of(2024, 10, 1, 8, 0));
+        epic1.addSubtask(subtask1);
+        epic1.addSubtask(subtask2);
+
+        Assertions.assertEquals(Status.INPROGRESS, epic1.getStatus(), "Статус эпика не пересчитан");
+        Assertions.assertEquals(LocalDateTime.of(2024, 10, 1, 8, 0), epic1.getStartTime(), "Неверное начало эпика");
+        Assertions.assertEquals(Duration.ofDays(15), epic1.getDuration(), "Неверная длительность эпика");
+        Assertions.assertEquals(LocalDateTime.of(2024, 10, 27, 8, 0), epic1.getEndTime(),
+                "Окончание эпика должно совпадать с самым поздним окончанием подзадач");
+
+        // Подзадачу изменили на месте: эпик должен вычесть прежний вклад, а не новый
+        subtask1.setStatus(Status.DONE);
+        subtask1.setDuration(Duration.ofDays(2));
+        epic1.updateSubtask(subtask1);
+        Assertions.assertEquals(Status.DONE, epic1.getStatus(), "Статус эпика не пересчитан");
+        Assertions.assertEquals(Duration.ofDays(3), epic1.getDuration(), "Неверная длительность эпика");
+        Assertions.assertEquals(LocalDateTime.of(2024, 10, 15, 8, 0), epic1.getEndTime(), "Неверное окончание эпика");
+
+        epic1.removeSubtask(subtask2.getId());
+        Assertions.assertEquals(LocalDateTime.of(2024, 10, 13, 8, 0), epic1.getStartTime(), "Неверное начало эпика");
+        Assertions.assertEquals(Duration.ofDays(2), epic1.getDuration(), "Неверная длительность эпика");
+    }
 }